@@ -0,0 +1,162 @@
+package com.tss.portwatch.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tss.portwatch.core.diff.IncrementalComparator;
+import com.tss.portwatch.core.diff.SnapshotComparator;
+import com.tss.portwatch.core.io.Compactor;
+import com.tss.portwatch.core.io.RetentionPolicy;
+import com.tss.portwatch.core.io.SnapshotIO;
+import com.tss.portwatch.core.model.DiffFile;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.PortWatchMetadata;
+import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retention of a 40-day history (one run every 20 minutes, snapshot plus diff) under the default
+ * policy, applied in passes of {@code budget} files until nothing is left to do.
+ * <p>
+ * Each iteration starts from a freshly written history, as delta snapshots ({@code keyframes},
+ * one keyframe in five) or deduplicated blobs ({@code dedup}). After the iteration, the remaining
+ * files are checked: delta snapshots must still rebuild the state they recorded, the latest
+ * snapshot must be intact, and replaying the remaining diffs must lead through the recorded
+ * states.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompactorBenchmark {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 16, 12, 0);
+
+    @Param({"keyframes", "dedup"})
+    public String layout;
+
+    @Param({"16", "256"})
+    public int budget;
+
+    private final ObjectMapper om = new ObjectMapper();
+    private Path base;
+    private Path snapshots;
+    private Path diffs;
+    private TreeMap<String, List<ListeningSocket>> recorded;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        boolean dedup = "dedup".equals(layout);
+        SnapshotIO.setDedup(dedup);
+        SnapshotIO.setKeyframeInterval(dedup ? 1 : 5);
+
+        base = Files.createTempDirectory("portwatch-retention");
+        snapshots = base.resolve("snapshots").resolve("bench");
+        diffs = base.resolve("diffs").resolve("bench");
+        recorded = new TreeMap<>();
+
+        Random r = new Random(1);
+        List<ListeningSocket> state = new ArrayList<>();
+        for (LocalDateTime t = NOW.minusDays(40); !t.isAfter(NOW); t = t.plusMinutes(20)) {
+            List<ListeningSocket> next = new ArrayList<>();
+            for (ListeningSocket s : state) {
+                if (r.nextInt(30) != 0) next.add(s);
+            }
+            if (r.nextInt(3) == 0) {
+                ListeningSocket s = new ListeningSocket();
+                s.LocalAddress = "0.0.0.0";
+                s.LocalPort = r.nextInt(200);
+                s.ProcessId = r.nextInt(5);
+                s.ProcessName = "p";
+                next.removeIf(x -> x.LocalPort.equals(s.LocalPort));
+                next.add(s);
+            }
+            next = SortedSockets.sort(next);
+
+            String ts = t.format(TIMESTAMP);
+            PortWatchMetadata meta = new PortWatchMetadata("bench", "Linux", ts);
+            SnapshotIO.writeSnapshot(snapshots, "snapshot-bench-" + ts + ".json", om, new SnapshotFile(meta, true, next));
+            SnapshotIO.writeDiff(diffs, "diff-bench-" + ts + ".json", om, new DiffFile(meta, SnapshotComparator.compare(state, next)));
+            recorded.put(ts, next);
+            state = next;
+        }
+    }
+
+    @Benchmark
+    public int compact() throws IOException {
+        Compactor compactor = new Compactor(snapshots, diffs, RetentionPolicy.defaults(), om, budget);
+        int passes = 1;
+        while (!compactor.runPass(NOW).complete()) passes++;
+        return passes;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        try {
+            check();
+        } finally {
+            try (var w = Files.walk(base)) {
+                for (Path p : (Iterable<Path>) w.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+            }
+            SnapshotIO.setDedup(false);
+            SnapshotIO.setKeyframeInterval(1);
+        }
+    }
+
+    private void check() throws IOException {
+        try (var s = Files.list(snapshots)) {
+            for (Path f : (Iterable<Path>) s::iterator) {
+                String name = f.getFileName().toString();
+                if (!name.startsWith("snapshot-") || !name.endsWith(".json")) continue;
+                String stem = name.substring(0, name.length() - ".json".length());
+                String ts = stem.substring(stem.length() - "yyyyMMdd-HHmmss".length());
+                if (!new ArrayList<>(SnapshotIO.read(f, om)).equals(recorded.get(ts))) {
+                    throw new IllegalStateException("Snapshot rebuilt wrong after compaction: " + f);
+                }
+            }
+        }
+
+        List<ListeningSocket> last = recorded.lastEntry().getValue();
+        if (!new ArrayList<>(SnapshotIO.read(SnapshotIO.latestSnapshot(snapshots), om)).equals(last)) {
+            throw new IllegalStateException("Latest snapshot changed by compaction");
+        }
+
+        IncrementalComparator replay = new IncrementalComparator(List.of());
+        for (Map.Entry<String, List<ListeningSocket>> e : recorded.entrySet()) {
+            Path diff = diffs.resolve("diff-bench-" + e.getKey() + ".json");
+            if (!Files.exists(diff)) continue;
+
+            replay.applyDiff(SnapshotIO.readDiff(diff, om).diff());
+            if (!new ArrayList<>(replay.sockets()).equals(e.getValue())) {
+                throw new IllegalStateException("Replaying the remaining diffs diverges at " + e.getKey());
+            }
+        }
+    }
+}
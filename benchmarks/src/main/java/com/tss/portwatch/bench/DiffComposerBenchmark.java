@@ -0,0 +1,198 @@
+package com.tss.portwatch.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tss.portwatch.core.diff.DiffComposer;
+import com.tss.portwatch.core.diff.SnapshotComparator;
+import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.io.SnapshotIO;
+import com.tss.portwatch.core.model.DiffFile;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.PortWatchMetadata;
+import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Net change over a range of runs ({@code --range}), on two days of 1-minute runs of a host with
+ * a few dozen listeners opening, closing and changing owner.
+ * <ul>
+ *   <li>{@code compose}: the diffs of the range composed in memory</li>
+ *   <li>{@code rangeDiff}: the same range read from the diff files</li>
+ *   <li>{@code rangeDiffWithGap}: the same range on a history where one run of the range wrote a
+ *       snapshot without diff, so the bounding snapshots are compared instead</li>
+ * </ul>
+ * The setup checks the composition of random windows of diffs against a comparison of the states
+ * bounding them, composition of partial results against composition of the whole history, and
+ * both file-based paths against a comparison of the bounding states.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffComposerBenchmark {
+
+    /**
+     * Runs written: two days of one run per minute.
+     */
+    private static final int RUNS = 2880;
+
+    /**
+     * Random windows of diffs checked by the setup.
+     */
+    private static final int CHECKED_WINDOWS = 1000;
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    /**
+     * Runs in the range: one hour or one day.
+     */
+    @Param({"60", "1440"})
+    public int window;
+
+    private final ObjectMapper om = new ObjectMapper();
+    private Path base;
+    private List<SnapshotDiff> diffs;
+    private String from;
+    private String to;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random r = new Random(7);
+        List<List<ListeningSocket>> states = new ArrayList<>();
+        diffs = new ArrayList<>();
+        List<ListeningSocket> state = List.of();
+        states.add(state);
+        for (int i = 0; i < RUNS; i++) {
+            List<ListeningSocket> next = next(state, r);
+            diffs.add(SnapshotComparator.compare(state, next));
+            states.add(next);
+            state = next;
+        }
+
+        for (int t = 0; t < CHECKED_WINDOWS; t++) {
+            int i = r.nextInt(RUNS);
+            int j = i + 1 + r.nextInt(RUNS - i);
+            Sockets.checkSame(SnapshotComparator.compare(states.get(i), states.get(j)),
+                    DiffComposer.compose(diffs.subList(i, j)), "compose of diffs " + i + ".." + j);
+        }
+        SnapshotDiff left = DiffComposer.compose(diffs.subList(0, RUNS / 3));
+        SnapshotDiff right = DiffComposer.compose(diffs.subList(RUNS / 3, RUNS));
+        Sockets.checkSame(DiffComposer.compose(diffs), DiffComposer.compose(List.of(left, right)),
+                "compose of partial compositions");
+
+        // Run i (from 1) writes states[i] and diffs[i - 1]. The range starts at run 2, so that the
+        // gapped history has a snapshot before it to compare against.
+        base = Files.createTempDirectory("portwatch-range");
+        int gapRun = 1 + window / 2;
+        for (int i = 1; i <= RUNS; i++) {
+            String ts = timestamp(i);
+            PortWatchMetadata meta = new PortWatchMetadata("bench", "Linux", ts);
+            SnapshotFile snapshot = new SnapshotFile(meta, true, states.get(i));
+            SnapshotIO.writeSnapshot(dir("snapshots", "bench"), "snapshot-bench-" + ts + ".json", om, snapshot);
+            SnapshotIO.writeSnapshot(dir("snapshots", "gapped"), "snapshot-bench-" + ts + ".json", om, snapshot);
+
+            SnapshotIO.writeDiff(dir("diffs", "bench"), "diff-bench-" + ts + ".json", om,
+                    new DiffFile(meta, diffs.get(i - 1)));
+            if (i != gapRun) {
+                SnapshotIO.writeDiff(dir("diffs", "gapped"), "diff-bench-" + ts + ".json", om,
+                        new DiffFile(meta, diffs.get(i - 1)));
+            }
+        }
+        from = timestamp(2);
+        to = timestamp(1 + window);
+
+        SnapshotDiff expected = SnapshotComparator.compare(states.get(1), states.get(1 + window));
+        Sockets.checkSame(expected, compose(), "compose");
+        SnapshotIO.RangeDiff full = rangeDiff();
+        SnapshotIO.RangeDiff gapped = rangeDiffWithGap();
+        if (full.fromSnapshots() || !gapped.fromSnapshots()) {
+            throw new IllegalStateException("rangeDiff took the wrong path");
+        }
+        Sockets.checkSame(expected, full.diff(), "rangeDiff");
+        Sockets.checkSame(expected, gapped.diff(), "rangeDiff (with gap)");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var w = Files.walk(base)) {
+            for (Path p : (Iterable<Path>) w.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public SnapshotDiff compose() {
+        return DiffComposer.compose(diffs.subList(1, 1 + window));
+    }
+
+    @Benchmark
+    public SnapshotIO.RangeDiff rangeDiff() throws IOException {
+        return SnapshotIO.rangeDiff(dir("snapshots", "bench"), dir("diffs", "bench"), from, to, om);
+    }
+
+    @Benchmark
+    public SnapshotIO.RangeDiff rangeDiffWithGap() throws IOException {
+        return SnapshotIO.rangeDiff(dir("snapshots", "gapped"), dir("diffs", "gapped"), from, to, om);
+    }
+
+    private Path dir(String kind, String machine) {
+        return base.resolve(machine).resolve(kind);
+    }
+
+    private static String timestamp(int run) {
+        return START.plusMinutes(run).format(TIMESTAMP);
+    }
+
+    /**
+     * Next state of the host: about one listener in twenty closed or handed to another process,
+     * up to two opened (replacing any listener on the same endpoint).
+     */
+    private static List<ListeningSocket> next(List<ListeningSocket> state, Random r) {
+        List<ListeningSocket> next = new ArrayList<>();
+        for (ListeningSocket s : state) {
+            int k = r.nextInt(20);
+            if (k == 0) continue;
+            if (k == 1) {
+                ListeningSocket c = Sockets.copy(s);
+                c.ProcessId = r.nextInt(3);
+                next.add(c);
+            } else {
+                next.add(s);
+            }
+        }
+        for (int n = r.nextInt(3); n > 0; n--) {
+            ListeningSocket s = new ListeningSocket();
+            s.LocalAddress = r.nextBoolean() ? "0.0.0.0" : "::";
+            s.LocalPort = r.nextInt(60);
+            s.ProcessId = r.nextInt(3);
+            s.ProcessName = "p" + r.nextInt(2);
+            next.removeIf(x -> x.LocalPort.equals(s.LocalPort) && x.LocalAddress.equals(s.LocalAddress));
+            next.add(s);
+        }
+        return SortedSockets.sort(next);
+    }
+}
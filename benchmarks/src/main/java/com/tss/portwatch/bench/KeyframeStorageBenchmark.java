@@ -0,0 +1,183 @@
+package com.tss.portwatch.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tss.portwatch.core.io.SnapshotIO;
+import com.tss.portwatch.core.io.StorageFormat;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.PortWatchMetadata;
+import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delta snapshot storage ({@code --keyframe-interval}) over a simulated month of 1-minute polls
+ * of a 200-listener host, where about one poll in ten opens or closes a listener.
+ * <p>
+ * The setup writes the month once per keyframe interval (1 being the full-snapshot format) and
+ * prints its size on disk; the benchmark reads snapshots spread over the month, each one rebuilt
+ * from its keyframe. The setup checks a sample of reconstructed snapshots against the polls
+ * that produced them, and that a snapshot rewritten with the same timestamp (two changes within
+ * one second) stays readable in every format and compression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyframeStorageBenchmark {
+
+    /**
+     * Checked polls (and read targets): one poll out of this many.
+     */
+    private static final int SAMPLE = 97;
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * Polls written: 30 days of one poll per minute.
+     */
+    @Param({"43200"})
+    public int polls;
+
+    @Param({"1", "10", "60"})
+    public int keyframeInterval;
+
+    private final ObjectMapper om = new ObjectMapper();
+    private Path dir;
+    private List<Path> samples;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        SnapshotIO.setKeyframeInterval(keyframeInterval);
+        checkRewrite();
+        dir = Files.createTempDirectory("portwatch-keyframes");
+
+        Random r = new Random(7);
+        Map<Integer, ListeningSocket> live = new TreeMap<>();
+        for (int i = 0; i < 200; i++) live.put(i, socket(i, r));
+
+        samples = new ArrayList<>();
+        List<List<ListeningSocket>> expected = new ArrayList<>();
+        LocalDateTime t = LocalDateTime.of(2026, 1, 1, 0, 0);
+        for (int p = 0; p < polls; p++, t = t.plusMinutes(1)) {
+            if (r.nextInt(10) == 0) {
+                int k = r.nextInt(260);
+                if (live.remove(k) == null) live.put(k, socket(k, r));
+            }
+            List<ListeningSocket> current = SortedSockets.sort(new ArrayList<>(live.values()));
+            String ts = t.format(TIMESTAMP);
+            Path file = SnapshotIO.writeSnapshot(dir, "snapshot-bench-" + ts + ".json", om,
+                    new SnapshotFile(new PortWatchMetadata("bench", "Linux", ts), true, current));
+
+            if (p % SAMPLE == SAMPLE - 1) {
+                samples.add(file);
+                expected.add(current);
+            }
+        }
+
+        for (int i = 0; i < samples.size(); i++) {
+            if (!new ArrayList<>(SnapshotIO.read(samples.get(i), om)).equals(expected.get(i))) {
+                throw new IllegalStateException("Snapshot rebuilt wrong: " + samples.get(i));
+            }
+        }
+
+        long bytes = 0;
+        long files = 0;
+        try (var s = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) s::iterator) {
+                bytes += Files.size(f);
+                files++;
+            }
+        }
+        System.out.println("keyframe-interval=" + keyframeInterval + ": " + files + " files, " + bytes + " bytes on disk");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var w = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) w.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+        SnapshotIO.setKeyframeInterval(1);
+    }
+
+    @Benchmark
+    public List<ListeningSocket> read() throws IOException {
+        Path file = samples.get(next);
+        next = (next + 1) % samples.size();
+        return SnapshotIO.read(file, om);
+    }
+
+    /**
+     * Writes a snapshot, then another one twice under the same name, in every format and
+     * compression: the rewrite must not become a delta of the file it replaces.
+     */
+    private void checkRewrite() throws IOException {
+        Random r = new Random(11);
+        List<ListeningSocket> first = List.of(socket(1, r));
+        List<ListeningSocket> second = List.of(socket(1, r), socket(2, r));
+        List<ListeningSocket> rewritten = List.of(socket(3, r));
+
+        for (StorageFormat format : StorageFormat.values()) {
+            for (boolean gzip : new boolean[]{false, true}) {
+                SnapshotIO.setFormat(format);
+                SnapshotIO.setCompression(gzip);
+                Path d = Files.createTempDirectory("portwatch-rewrite");
+                try {
+                    write(d, "20260101-101000", first);
+                    write(d, "20260101-101010", second);
+                    Path file = write(d, "20260101-101010", rewritten);
+                    if (!new ArrayList<>(SnapshotIO.read(file, om)).equals(rewritten)) {
+                        throw new IllegalStateException("Rewritten snapshot read wrong: " + file);
+                    }
+                } finally {
+                    try (var w = Files.walk(d)) {
+                        for (Path p : (Iterable<Path>) w.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+                    }
+                }
+            }
+        }
+        SnapshotIO.setFormat(null);
+        SnapshotIO.setCompression(false);
+    }
+
+    private Path write(Path d, String ts, List<ListeningSocket> sockets) throws IOException {
+        return SnapshotIO.writeSnapshot(d, "snapshot-bench-" + ts + ".json", om,
+                new SnapshotFile(new PortWatchMetadata("bench", "Linux", ts), true, sockets));
+    }
+
+    private static ListeningSocket socket(int i, Random r) {
+        ListeningSocket s = new ListeningSocket();
+        s.LocalAddress = "10.0." + (i / 250) + "." + (i % 250);
+        s.LocalPort = 1000 + i;
+        s.ProcessId = r.nextInt(5000);
+        s.ProcessName = "proc" + (i % 17);
+        s.Path = "/usr/bin/proc" + (i % 17);
+        return s;
+    }
+}
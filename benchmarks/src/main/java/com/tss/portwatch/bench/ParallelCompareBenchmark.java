@@ -0,0 +1,66 @@
+package com.tss.portwatch.bench;
+
+import com.tss.portwatch.core.diff.SnapshotComparator;
+import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.model.ListeningSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link SnapshotComparator#compareParallel} from 1 to 32 pool threads, on two
+ * aggregated inventories of 1M sockets with 1% of the endpoints changed. Thread counts above the
+ * number of cores of the machine only measure the partitioning overhead.
+ * <p>
+ * The setup checks the parallel diff against a plain {@code HashMap<SocketKey, ...>} diff.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelCompareBenchmark {
+
+    @Param({"1000000"})
+    public int sockets;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    private List<ListeningSocket> before;
+    private List<ListeningSocket> after;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        before = Sockets.table(sockets, 3);
+        after = Sockets.next(before, 0.01, 4);
+        pool = new ForkJoinPool(threads);
+
+        Sockets.checkSame(Sockets.reference(before, after), compareParallel(), "compareParallel");
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public SnapshotDiff compareParallel() {
+        return SnapshotComparator.compareParallel(before, after, pool);
+    }
+}
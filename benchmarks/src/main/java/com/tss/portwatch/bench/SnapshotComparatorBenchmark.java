@@ -0,0 +1,77 @@
+package com.tss.portwatch.bench;
+
+import com.tss.portwatch.core.diff.SnapshotComparator;
+import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.SortedSockets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diff of two consecutive polls (0.1% of the endpoints changed) at 1k, 100k and 1M sockets.
+ * <ul>
+ *   <li>{@code compare}: the path the application takes for two collected lists (hashed with
+ *       packed keys, on all cores from {@link SnapshotComparator#PARALLEL_THRESHOLD})</li>
+ *   <li>{@code compareStreamed}: the previous snapshot streamed into the open-addressing index of
+ *       the current one, single-threaded (as when diffing against a snapshot file)</li>
+ *   <li>{@code compareSorted}: both sides in canonical order, merged in one pass</li>
+ * </ul>
+ * The setup checks every path against a plain {@code HashMap<SocketKey, ...>} diff.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotComparatorBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int sockets;
+
+    private List<ListeningSocket> before;
+    private List<ListeningSocket> after;
+    private SortedSockets sortedBefore;
+    private SortedSockets sortedAfter;
+
+    @Setup
+    public void setUp() throws IOException {
+        before = Sockets.table(sockets, 1);
+        after = Sockets.next(before, 0.001, 2);
+        sortedBefore = SortedSockets.sort(before);
+        sortedAfter = SortedSockets.sort(after);
+
+        SnapshotDiff expected = Sockets.reference(before, after);
+        Sockets.checkSame(expected, compare(), "compare");
+        Sockets.checkSame(expected, compareStreamed(), "compare (streamed)");
+        Sockets.checkSame(expected, compareSorted(), "compareSorted");
+    }
+
+    @Benchmark
+    public SnapshotDiff compare() {
+        return SnapshotComparator.compare(before, after);
+    }
+
+    @Benchmark
+    public SnapshotDiff compareStreamed() throws IOException {
+        return SnapshotComparator.compare(sink -> before.forEach(sink), after);
+    }
+
+    @Benchmark
+    public SnapshotDiff compareSorted() throws IOException {
+        return SnapshotComparator.compareSorted(sink -> sortedBefore.forEach(sink), sortedAfter);
+    }
+}
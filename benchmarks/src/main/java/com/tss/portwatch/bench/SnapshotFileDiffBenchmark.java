@@ -0,0 +1,143 @@
+package com.tss.portwatch.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tss.portwatch.core.diff.SnapshotComparator;
+import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.io.SnapshotIO;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.PortWatchMetadata;
+import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diff of a fresh collection against the previous snapshot file, at 100k and 1M sockets, with a
+ * current collection nearly identical to the file (0.1% of the endpoints changed) or empty
+ * (every row removed).
+ * <ul>
+ *   <li>{@code loaded}: the file read as a list, then compared (the path before streaming)</li>
+ *   <li>{@code streamed}: the file streamed row by row into the index of the collection</li>
+ *   <li>{@code merged}: a file flagged as sorted streamed through a merge against the sorted
+ *       collection, as the default and {@code --diff} runs do</li>
+ * </ul>
+ * The setup checks every path against a plain {@code HashMap<SocketKey, ...>} diff and prints the
+ * peak heap of one run of each (on top of what the benchmark state holds).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotFileDiffBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int sockets;
+
+    /**
+     * Current collection: {@code similar} to the file, or {@code empty}.
+     */
+    @Param({"similar", "empty"})
+    public String current;
+
+    private final ObjectMapper om = new ObjectMapper();
+    private Path base;
+    private Path plainFile;
+    private Path sortedFile;
+    private List<ListeningSocket> after;
+    private SortedSockets sortedAfter;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<ListeningSocket> before = Sockets.table(sockets, 1);
+        after = "empty".equals(current) ? List.of() : Sockets.next(before, 0.001, 2);
+        sortedAfter = SortedSockets.sort(after);
+
+        base = Files.createTempDirectory("portwatch-filediff");
+        PortWatchMetadata meta = new PortWatchMetadata("bench", "Linux", "20260101-000000");
+        plainFile = SnapshotIO.writeSnapshot(base.resolve("plain"), "snapshot-bench-20260101-000000.json", om,
+                new SnapshotFile(meta, false, before));
+        sortedFile = SnapshotIO.writeSnapshot(base.resolve("sorted"), "snapshot-bench-20260101-000000.json", om,
+                new SnapshotFile(meta, true, SortedSockets.sort(before)));
+        if (SnapshotIO.isSorted(plainFile, om) || !SnapshotIO.isSorted(sortedFile, om)) {
+            throw new IllegalStateException("snapshot files carry the wrong sorted flag");
+        }
+
+        SnapshotDiff expected = Sockets.reference(before, after);
+        before = null;
+        Sockets.checkSame(expected, loaded(), "loaded");
+        Sockets.checkSame(expected, streamed(), "streamed");
+        Sockets.checkSame(expected, merged(), "merged");
+
+        System.out.println(sockets + " sockets, " + current + ", file of " + Files.size(plainFile) + " bytes:"
+                + " peak heap loaded=" + peakHeap(this::loaded)
+                + " streamed=" + peakHeap(this::streamed)
+                + " merged=" + peakHeap(this::merged));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var w = Files.walk(base)) {
+            for (Path p : (Iterable<Path>) w.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public SnapshotDiff loaded() throws IOException {
+        return SnapshotComparator.compare(SnapshotIO.read(plainFile, om), after);
+    }
+
+    @Benchmark
+    public SnapshotDiff streamed() throws IOException {
+        return SnapshotComparator.compare(sink -> SnapshotIO.readSockets(plainFile, om, sink), after);
+    }
+
+    @Benchmark
+    public SnapshotDiff merged() throws IOException {
+        return SnapshotComparator.compareSorted(sink -> SnapshotIO.readSockets(sortedFile, om, sink), sortedAfter);
+    }
+
+    /**
+     * Runs the task once after a full GC and returns the peak heap growth over the heap in use
+     * before it, in MB (sum of the peaks of the heap pools, so an upper bound).
+     */
+    private static String peakHeap(Callable<?> task) throws Exception {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean p : pools) {
+            used += p.getUsage().getUsed();
+            p.resetPeakUsage();
+        }
+
+        task.call();
+
+        long peak = 0;
+        for (MemoryPoolMXBean p : pools) peak += p.getPeakUsage().getUsed();
+        return ((peak - used) >> 20) + " MB";
+    }
+}
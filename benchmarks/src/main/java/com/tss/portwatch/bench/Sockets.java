@@ -0,0 +1,154 @@
+package com.tss.portwatch.bench;
+
+import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.SocketKey;
+import com.tss.portwatch.core.model.SortedSockets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Synthetic listener tables shared by the benchmarks, and the reference results their setup
+ * checks the code under test against.
+ */
+final class Sockets {
+
+    /**
+     * Ports used per address: large tables spread over several IPv4 and IPv6 addresses.
+     */
+    private static final int PORTS_PER_ADDRESS = 50_000;
+
+    private Sockets() {
+        // Utility class: no instances allowed.
+    }
+
+    /**
+     * Builds a table of distinct endpoints, in no particular order (as collectors return them).
+     *
+     * @param n    number of sockets
+     * @param seed random seed (same seed, same table)
+     */
+    static List<ListeningSocket> table(int n, long seed) {
+        Random r = new Random(seed);
+        List<ListeningSocket> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(socket(i, r.nextInt(5000)));
+        }
+        Collections.shuffle(out, r);
+        return out;
+    }
+
+    /**
+     * Returns the next poll of a table: a fraction of the endpoints closed, opened or taken over
+     * by another process, the rest unchanged (copied: a real parse returns equal but distinct
+     * instances).
+     *
+     * @param before table of the previous poll
+     * @param rate   fraction of endpoints affected, e.g. 0.001
+     * @param seed   random seed
+     */
+    static List<ListeningSocket> next(List<ListeningSocket> before, double rate, long seed) {
+        Random r = new Random(seed);
+        List<ListeningSocket> out = new ArrayList<>(before.size());
+        for (ListeningSocket s : before) {
+            if (r.nextDouble() >= rate) {
+                out.add(copy(s));
+                continue;
+            }
+            switch (r.nextInt(3)) {
+                case 0 -> { } // closed
+                case 1 -> {
+                    ListeningSocket c = copy(s);
+                    c.ProcessId = s.ProcessId + 1;
+                    out.add(c);
+                }
+                default -> {
+                    out.add(copy(s));
+                    out.add(socket(before.size() + out.size(), r.nextInt(5000)));
+                }
+            }
+        }
+        Collections.shuffle(out, r);
+        return out;
+    }
+
+    /**
+     * Straightforward diff: both sides in hash maps keyed by {@link SocketKey}, output in canonical
+     * order. Slow, but obviously correct; used to check the optimized paths.
+     */
+    static SnapshotDiff reference(List<ListeningSocket> before, List<ListeningSocket> after) {
+        Map<SocketKey, ListeningSocket> b = index(before);
+        Map<SocketKey, ListeningSocket> a = index(after);
+
+        List<ListeningSocket> added = new ArrayList<>();
+        List<ListeningSocket> removed = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+        for (Map.Entry<SocketKey, ListeningSocket> e : a.entrySet()) {
+            ListeningSocket old = b.get(e.getKey());
+            if (old == null) {
+                added.add(e.getValue());
+            } else if (!Objects.equals(old.ProcessId, e.getValue().ProcessId)
+                    || !Objects.equals(old.ProcessName, e.getValue().ProcessName)
+                    || !Objects.equals(old.Path, e.getValue().Path)) {
+                changed.add(new SnapshotDiff.Changed(old, e.getValue()));
+            }
+        }
+        for (Map.Entry<SocketKey, ListeningSocket> e : b.entrySet()) {
+            if (!a.containsKey(e.getKey())) removed.add(e.getValue());
+        }
+
+        added.sort(SortedSockets.CANONICAL_ORDER);
+        removed.sort(SortedSockets.CANONICAL_ORDER);
+        changed.sort((x, y) -> SortedSockets.CANONICAL_ORDER.compare(x.after(), y.after()));
+        return new SnapshotDiff(added, removed, changed);
+    }
+
+    /**
+     * Fails the benchmark setup if two diffs differ (same entries, same order).
+     */
+    static void checkSame(SnapshotDiff expected, SnapshotDiff actual, String what) {
+        boolean same = expected.added().equals(actual.added())
+                && expected.removed().equals(actual.removed())
+                && expected.changed().size() == actual.changed().size();
+        for (int i = 0; same && i < expected.changed().size(); i++) {
+            same = expected.changed().get(i).before().equals(actual.changed().get(i).before())
+                    && expected.changed().get(i).after().equals(actual.changed().get(i).after());
+        }
+        if (!same) {
+            throw new IllegalStateException(what + " differs from the reference diff");
+        }
+    }
+
+    private static Map<SocketKey, ListeningSocket> index(List<ListeningSocket> sockets) {
+        Map<SocketKey, ListeningSocket> out = new LinkedHashMap<>();
+        for (ListeningSocket s : sockets) out.put(SocketKey.tcp(s.LocalAddress, s.LocalPort), s);
+        return out;
+    }
+
+    private static ListeningSocket socket(int i, int pid) {
+        int block = i / PORTS_PER_ADDRESS;
+        ListeningSocket s = new ListeningSocket();
+        s.LocalAddress = (block % 2 == 0) ? "10.0." + (block / 256) + "." + (block % 256) : "fd00::" + Integer.toHexString(block);
+        s.LocalPort = 1024 + i % PORTS_PER_ADDRESS;
+        s.ProcessId = pid;
+        s.ProcessName = "proc" + (pid % 97);
+        s.Path = "/usr/bin/proc" + (pid % 97);
+        return s;
+    }
+
+    static ListeningSocket copy(ListeningSocket s) {
+        ListeningSocket c = new ListeningSocket();
+        c.LocalAddress = s.LocalAddress;
+        c.LocalPort = s.LocalPort;
+        c.ProcessId = s.ProcessId;
+        c.ProcessName = s.ProcessName;
+        c.Path = s.Path;
+        return c;
+    }
+}
@@ -0,0 +1,168 @@
+package com.tss.portwatch.core.collector;
+
+import com.tss.portwatch.core.model.ListeningSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one watch poll on Linux, procfs against {@code ss}, as the TCP table grows while the
+ * number of listeners stays at {@value #LISTENERS}: what {@link LinuxProcNetCollector#LARGE_TABLE_THRESHOLD}
+ * and {@link LinuxProcNetCollector#SMALL_TABLE_THRESHOLD} trade off.
+ * <ul>
+ *   <li>{@code procfs}: {@link LinuxProcNetCollector} reading recorded tables of {@code tableSize}
+ *       sockets (a quarter of them IPv6), with an unchanged fingerprint, so the cost is reading and
+ *       filtering every row</li>
+ *   <li>{@code ssParse}: the user-space side of {@link LinuxSsCollector}, parsing the same
+ *       listeners as {@code ss -lntpHn} prints them (the kernel only hands over listeners)</li>
+ *   <li>{@code ss}: a real {@code ss} run on this host (fork, netlink dump, fingerprint), which
+ *       does not depend on {@code tableSize}; it fails if {@code ss} is not installed</li>
+ * </ul>
+ * The benchmark sits in the collector package to reach the package-private table constructor
+ * and line parser. The setup checks that both collectors report the same listeners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectorBenchmark {
+
+    private static final int LISTENERS = 200;
+
+    @Param({"1000", "50000", "200000"})
+    public int tableSize;
+
+    private Path dir;
+    private LinuxProcNetCollector procfs;
+    private long procfsFingerprint;
+    private char[] ssOutput;
+    private int[] lineStarts;
+    private int[] lineEnds;
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("portwatch-proc");
+        Random r = new Random(5);
+        int pid = (int) ProcessHandle.current().pid();
+
+        StringBuilder ss = new StringBuilder();
+        int v6 = tableSize / 4;
+        int stride = tableSize / LISTENERS;
+        try (Writer tcp4 = Files.newBufferedWriter(dir.resolve("tcp"), StandardCharsets.US_ASCII);
+             Writer tcp6 = Files.newBufferedWriter(dir.resolve("tcp6"), StandardCharsets.US_ASCII)) {
+            tcp4.write("  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode\n");
+            tcp6.write("  sl  local_address                         remote_address                        st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode\n");
+            for (int i = 0; i < tableSize; i++) {
+                boolean ipv6 = i < v6;
+                boolean listener = i % stride == 0;
+                int port = listener ? 1000 + i / stride : 30000 + r.nextInt(30000);
+                String local = (ipv6 ? "00000000000000000000000001000000" : "0100007F") + ":" + String.format("%04X", port);
+                String remote = listener
+                        ? (ipv6 ? "00000000000000000000000000000000:0000" : "00000000:0000")
+                        : (ipv6 ? "0000000000000000FFFF00000A000002" : "0200000A") + ":" + String.format("%04X", 1024 + r.nextInt(60000));
+                String row = String.format("%4d: %s %s %s 00000000:00000000 00:00000000 00000000  1000        0 %d 1 0000000000000000 100 0 0 10 0%n",
+                        i, local, remote, listener ? "0A" : "01", 100_000 + i);
+                (ipv6 ? tcp6 : tcp4).write(row);
+
+                if (listener) {
+                    ss.append("LISTEN 0      4096   ").append(ipv6 ? "[::1]" : "127.0.0.1").append(':').append(port)
+                            .append("      ").append(ipv6 ? "[::]:*" : "0.0.0.0:*")
+                            .append("    users:((\"java\",pid=").append(pid).append(",fd=").append(100 + i).append("))\n");
+                }
+            }
+        }
+
+        procfs = new LinuxProcNetCollector(dir.resolve("tcp"), dir.resolve("tcp6"));
+        ListenerCollector.Collected first = procfs.collectTcpListenersIfChanged(ListenerCollector.NO_FINGERPRINT);
+        procfsFingerprint = first.fingerprint();
+
+        ssOutput = ss.toString().toCharArray();
+        List<int[]> lines = new ArrayList<>();
+        for (int start = 0, i = 0; i < ssOutput.length; i++) {
+            if (ssOutput[i] == '\n') {
+                lines.add(new int[]{start, i});
+                start = i + 1;
+            }
+        }
+        lineStarts = lines.stream().mapToInt(l -> l[0]).toArray();
+        lineEnds = lines.stream().mapToInt(l -> l[1]).toArray();
+
+        // Same endpoints from both collectors (owners differ: the recorded inodes belong to no process).
+        List<ListeningSocket> parsed = new ArrayList<>();
+        LinuxSsCollector.SsLineParser parser = new LinuxSsCollector.SsLineParser(parsed::add);
+        for (int i = 0; i < lineStarts.length; i++) parser.line(ssOutput, lineStarts[i], lineEnds[i]);
+        if (!endpoints(first.sockets()).equals(endpoints(parsed)) || parsed.size() != lineStarts.length) {
+            throw new IllegalStateException("procfs and ss report different listeners");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(dir.resolve("tcp"));
+        Files.delete(dir.resolve("tcp6"));
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public ListenerCollector.Collected procfs() throws Exception {
+        return procfs.collectTcpListenersIfChanged(procfsFingerprint);
+    }
+
+    @Benchmark
+    public void ssParse(Blackhole bh) {
+        LinuxSsCollector.SsLineParser parser = new LinuxSsCollector.SsLineParser(bh::consume);
+        for (int i = 0; i < lineStarts.length; i++) parser.line(ssOutput, lineStarts[i], lineEnds[i]);
+    }
+
+    @Benchmark
+    public ListenerCollector.Collected ss(LiveSs live) throws Exception {
+        return live.collector.collectTcpListenersIfChanged(live.fingerprint);
+    }
+
+    /**
+     * {@code ss} on this host, with the fingerprint of its first run.
+     */
+    @State(Scope.Benchmark)
+    public static class LiveSs {
+        LinuxSsCollector collector;
+        long fingerprint;
+
+        @Setup
+        public void setUp() throws Exception {
+            if (!LinuxSsCollector.isAvailable()) {
+                throw new IllegalStateException("ss is not installed: the ss benchmark needs it");
+            }
+            collector = new LinuxSsCollector();
+            fingerprint = collector.collectTcpListenersIfChanged(ListenerCollector.NO_FINGERPRINT).fingerprint();
+        }
+    }
+
+    private static List<String> endpoints(List<ListeningSocket> sockets) {
+        List<String> out = new ArrayList<>();
+        for (ListeningSocket s : sockets) out.add(s.LocalAddress + " " + s.LocalPort);
+        out.sort(null);
+        return out;
+    }
+}
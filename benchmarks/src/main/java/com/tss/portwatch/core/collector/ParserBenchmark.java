@@ -0,0 +1,294 @@
+package com.tss.portwatch.core.collector;
+
+import com.tss.portwatch.core.exec.CommandRunner;
+import com.tss.portwatch.core.model.ListeningSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing of recorded {@code ss -lntpHn} and {@code lsof -nP -iTCP -sTCP:LISTEN} outputs of
+ * {@code lines} listeners: the {@link FieldTokenizer}-based line parsers of {@link LinuxSsCollector}
+ * and {@link MacOsLsofCollector} against the split/regex parsers they replaced (kept below as
+ * {@link Legacy}).
+ * <p>
+ * The legacy parsers take the whole output as one String, as they did; the current ones get the
+ * output as a char buffer and are handed one line at a time, the line scan being part of the
+ * measurement (as in {@code CommandRunner}). The current ss parser also reads the executable
+ * path of each pid once, which the legacy one did not do; all rows share one pid, so this is a
+ * single readlink per parse.
+ * <p>
+ * The benchmark sits in the collector package to reach the package-private line parsers. The
+ * setup checks that both generations report the same listeners (the legacy ss parser kept the
+ * interface scope, which is stripped before comparing).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"1000", "100000"})
+    public int lines;
+
+    private String ssText;
+    private char[] ssChars;
+    private String lsofText;
+    private char[] lsofChars;
+
+    @Setup
+    public void setUp() {
+        Random r = new Random(9);
+        // Every row owned by this JVM: the current ss parser reads one real executable link per parse.
+        int pid = (int) ProcessHandle.current().pid();
+
+        StringBuilder ss = new StringBuilder();
+        StringBuilder lsof = new StringBuilder("COMMAND     PID   USER   FD   TYPE             DEVICE SIZE/OFF NODE NAME\n");
+        for (int i = 0; i < lines; i++) {
+            int port = 1024 + i % 60000;
+            String name = "proc" + r.nextInt(40);
+            String ssLocal;
+            String lsofLocal;
+            switch (i % 4) {
+                case 0 -> {
+                    ssLocal = "0.0.0.0:" + port;
+                    lsofLocal = "*:" + port;
+                }
+                case 1 -> {
+                    ssLocal = "127.0.0." + (1 + i % 250) + ":" + port;
+                    lsofLocal = "127.0.0." + (1 + i % 250) + ":" + port;
+                }
+                case 2 -> {
+                    ssLocal = "[::1]:" + port;
+                    lsofLocal = "[::1]:" + port;
+                }
+                default -> {
+                    ssLocal = "127.0.0.53%lo:" + port;
+                    lsofLocal = "[fe80::1]:" + port;
+                }
+            }
+            String users = (i % 7 == 0) ? "" : "users:((\"" + name + "\",pid=" + pid + ",fd=" + (3 + i % 100) + "))";
+            ss.append("LISTEN 0      ").append(4096).append("   ").append(ssLocal)
+                    .append("      0.0.0.0:*    ").append(users).append('\n');
+            lsof.append(String.format("%-9s %6d %6s %4du  %-4s 0x%016x      0t0  TCP %s (LISTEN)%n",
+                    name, pid, "user", 3 + i % 100, (i % 4 >= 2) ? "IPv6" : "IPv4", r.nextLong(), lsofLocal));
+        }
+        ssText = ss.toString();
+        ssChars = ssText.toCharArray();
+        lsofText = lsof.toString();
+        lsofChars = lsofText.toCharArray();
+
+        List<ListeningSocket> legacySs = new ArrayList<>();
+        List<ListeningSocket> currentSs = new ArrayList<>();
+        Legacy.parseSs(ssText, legacySs::add);
+        feed(ssChars, new LinuxSsCollector.SsLineParser(currentSs::add));
+        for (ListeningSocket s : legacySs) {
+            int scope = s.LocalAddress.indexOf('%');
+            if (scope >= 0) s.LocalAddress = s.LocalAddress.substring(0, scope);
+        }
+        checkSame(legacySs, currentSs, "ss");
+
+        List<ListeningSocket> legacyLsof = new ArrayList<>();
+        List<ListeningSocket> currentLsof = new ArrayList<>();
+        Legacy.parseLsof(lsofText, legacyLsof::add);
+        feed(lsofChars, new MacOsLsofCollector.LsofLineParser(currentLsof::add));
+        checkSame(legacyLsof, currentLsof, "lsof");
+    }
+
+    @Benchmark
+    public void ssLegacy(Blackhole bh) {
+        Legacy.parseSs(ssText, bh::consume);
+    }
+
+    @Benchmark
+    public void ssTokenizer(Blackhole bh) {
+        feed(ssChars, new LinuxSsCollector.SsLineParser(bh::consume));
+    }
+
+    @Benchmark
+    public void lsofLegacy(Blackhole bh) {
+        Legacy.parseLsof(lsofText, bh::consume);
+    }
+
+    @Benchmark
+    public void lsofTokenizer(Blackhole bh) {
+        feed(lsofChars, new MacOsLsofCollector.LsofLineParser(bh::consume));
+    }
+
+    /**
+     * Hands each line of the buffer to the parser, as {@code CommandRunner.streamLines} does.
+     */
+    private static void feed(char[] buf, CommandRunner.LineHandler parser) {
+        int start = 0;
+        for (int i = 0; i < buf.length; i++) {
+            if (buf[i] == '\n') {
+                parser.line(buf, start, i);
+                start = i + 1;
+            }
+        }
+        if (start < buf.length) parser.line(buf, start, buf.length);
+    }
+
+    private static void checkSame(List<ListeningSocket> legacy, List<ListeningSocket> current, String what) {
+        boolean same = legacy.size() == current.size();
+        for (int i = 0; same && i < legacy.size(); i++) {
+            ListeningSocket a = legacy.get(i);
+            ListeningSocket b = current.get(i);
+            same = Objects.equals(a.LocalAddress, b.LocalAddress) && Objects.equals(a.LocalPort, b.LocalPort)
+                    && Objects.equals(a.ProcessId, b.ProcessId) && Objects.equals(a.ProcessName, b.ProcessName);
+        }
+        if (!same) {
+            throw new IllegalStateException(what + ": tokenizer parser differs from the legacy parser");
+        }
+    }
+
+    /**
+     * The ss and lsof parsers as they were before {@link FieldTokenizer}: the output split into
+     * lines, each line trimmed and split on whitespace, the ss users block matched by a regex.
+     */
+    static final class Legacy {
+
+        private static final Pattern USERS_PATTERN =
+                Pattern.compile("users:\\(\\(\"(?<name>[^\"]+)\",pid=(?<pid>\\d+),fd=\\d+\\)\\)");
+
+        private Legacy() {
+        }
+
+        static void parseSs(String stdout, Consumer<ListeningSocket> out) {
+            if (stdout == null || stdout.isBlank()) return;
+
+            for (String raw : stdout.split("\\R")) {
+                String line = raw.trim();
+                if (line.isEmpty()) continue;
+
+                String[] parts = line.split("\\s+");
+                if (parts.length < 5) continue;
+
+                HostPort hp = parseHostPort(parts[3]);
+                if (hp == null) continue;
+
+                ListeningSocket row = new ListeningSocket();
+                row.LocalAddress = hp.host;
+                row.LocalPort = hp.port;
+
+                Matcher m = USERS_PATTERN.matcher(line);
+                if (m.find()) {
+                    row.ProcessName = m.group("name");
+                    row.ProcessId = safeParseInt(m.group("pid"));
+                } else {
+                    row.ProcessName = null;
+                    row.ProcessId = null;
+                }
+                row.Path = null;
+
+                out.accept(row);
+            }
+        }
+
+        static void parseLsof(String stdout, Consumer<ListeningSocket> out) {
+            if (stdout == null || stdout.isBlank()) return;
+
+            boolean first = true;
+            for (String raw : stdout.split("\\R")) {
+                String line = raw.trim();
+                if (line.isEmpty()) continue;
+
+                if (first) {
+                    first = false;
+                    if (line.toUpperCase().startsWith("COMMAND ")) continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                if (parts.length < 2) continue;
+
+                String command = parts[0];
+                Integer pid = safeParseInt(parts[1]);
+                String name = "(LISTEN)".equals(parts[parts.length - 1]) ? parts[parts.length - 2] : parts[parts.length - 1];
+
+                HostPort hp = parseHostPortFromName(name);
+                if (hp == null) continue;
+
+                ListeningSocket row = new ListeningSocket();
+                row.LocalAddress = hp.host;
+                row.LocalPort = hp.port;
+                row.ProcessName = command;
+                row.ProcessId = pid;
+                row.Path = null;
+
+                out.accept(row);
+            }
+        }
+
+        private static HostPort parseHostPort(String local) {
+            if (local == null || local.isBlank()) return null;
+
+            String s = local.trim();
+            if (s.startsWith("[") && s.contains("]")) {
+                s = s.substring(1, s.indexOf(']')) + s.substring(s.indexOf(']') + 1);
+            }
+
+            int idx = s.lastIndexOf(':');
+            if (idx <= 0 || idx >= s.length() - 1) return null;
+            String host = s.substring(0, idx);
+            if ("*".equals(host)) host = "0.0.0.0";
+            Integer port = safeParseInt(s.substring(idx + 1));
+            if (port == null) return null;
+            return new HostPort(host, port);
+        }
+
+        private static HostPort parseHostPortFromName(String name) {
+            if (name == null || name.isBlank()) return null;
+
+            String s = name.trim();
+            if (s.endsWith("(LISTEN)")) {
+                s = s.substring(0, s.length() - "(LISTEN)".length()).trim();
+            }
+            int arrow = s.indexOf("->");
+            if (arrow >= 0) s = s.substring(0, arrow).trim();
+
+            if (s.startsWith("[") && s.contains("]")) {
+                int end = s.indexOf(']');
+                s = s.substring(1, end) + s.substring(end + 1);
+            }
+
+            int idx = s.lastIndexOf(':');
+            if (idx <= 0 || idx >= s.length() - 1) return null;
+            String host = s.substring(0, idx);
+            if ("*".equals(host)) host = "0.0.0.0";
+            Integer port = safeParseInt(s.substring(idx + 1));
+            if (port == null) return null;
+            return new HostPort(host, port);
+        }
+
+        private static Integer safeParseInt(String s) {
+            try {
+                return Integer.parseInt(s);
+            } catch (Exception ignore) {
+                return null;
+            }
+        }
+
+        private record HostPort(String host, int port) {
+        }
+    }
+}
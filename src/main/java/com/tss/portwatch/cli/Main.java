@@ -3,14 +3,26 @@ package com.tss.portwatch.cli;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tss.portwatch.core.PortWatchApp;
 import com.tss.portwatch.core.PortWatchApp.OutputMode;
+import com.tss.portwatch.core.collector.LinuxProcNetCollector;
 import com.tss.portwatch.core.collector.LinuxSsCollector;
 import com.tss.portwatch.core.collector.ListenerCollector;
 import com.tss.portwatch.core.collector.MacOsLsofCollector;
 import com.tss.portwatch.core.collector.WindowsPowerShellCollector;
+import com.tss.portwatch.core.io.RetentionPolicy;
 import com.tss.portwatch.core.io.SnapshotIO;
+import com.tss.portwatch.core.io.StorageFormat;
 import com.tss.portwatch.core.os.OsDetector;
+import com.tss.portwatch.core.watch.WatchOptions;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 
 /**
  * CLI entry point for PortWatch.
@@ -26,6 +38,14 @@ import java.nio.file.Path;
  */
 public final class Main {
 
+    /**
+     * Suffix of the file recording the Linux collector in use on a machine ({@value #COLLECTOR_SS}
+     * or {@value #COLLECTOR_PROCFS}), next to its snapshot directory, see {@link #wireLinuxCollector}.
+     */
+    private static final String COLLECTOR_SUFFIX = ".collector";
+    private static final String COLLECTOR_SS = "ss";
+    private static final String COLLECTOR_PROCFS = "procfs";
+
     private Main() {
         // Utility class: no instances.
     }
@@ -39,7 +59,31 @@ public final class Main {
             SnapshotIO.setBaseDataDir(Path.of(opt.outputDir));
         }
 
-        ListenerCollector collector = wireCollector();
+        // Append to a per-machine binary journal instead of writing one JSON file per run.
+        SnapshotIO.setJournalMode(opt.journal);
+
+        // Store only every Nth snapshot in full, deltas in between.
+        SnapshotIO.setKeyframeInterval(opt.keyframeInterval);
+
+        // Store each distinct socket list once, referenced from a per-machine timeline.
+        SnapshotIO.setDedup(opt.dedup);
+
+        // Write snapshot and diff files gzip-compressed (readers detect compression themselves).
+        SnapshotIO.setCompression(opt.compress);
+
+        // Also write each snapshot in the memory-mapped columnar format (for historical queries).
+        SnapshotIO.setColumnar(opt.columnar);
+
+        // Encoding of written files: JSON or binary Smile (null => PORTWATCH_FORMAT or JSON).
+        if (opt.format != null) {
+            SnapshotIO.setFormat(opt.format);
+        }
+
+        // Thin out old snapshots and diffs after writing (null => keep everything).
+        SnapshotIO.setRetention(opt.retention);
+
+        // Modes that only read stored data neither need a collector nor revise the collector choice.
+        ListenerCollector collector = collects(opt) ? wireCollector(PortWatchApp.resolveMachineId()) : null;
         PortWatchApp app = new PortWatchApp(new ObjectMapper(), collector);
 
         dispatch(app, opt);
@@ -58,11 +102,39 @@ public final class Main {
      * - --output=console|file
      * - --output-dir=<path>
      * - --report=md|html
+     * - --watch=<interval>
+     * - --watch-max=<interval>
+     * - --cpu-budget=<percent>
+     * - --debounce=<polls|interval>
+     * - --journal
+     * - --export-journal
+     * - --keyframe-interval=<n>
+     * - --dedup
+     * - --compress=gzip
+     * - --columnar
+     * - --format=json|smile
+     * - --migrate
+     * - --retention=default|<policy>
+     * - --range=<from>..<to>
+     * - --find-port=<port>
+     * - --find-address=<address>
      * <p>
      * Validation rules:
      * - No duplicated flags.
-     * - --report requires --diff.
+     * - --watch cannot be combined with --snapshot or --diff.
+     * - --watch-max, --cpu-budget and --debounce require --watch; --watch-max must not be below --watch.
+     * - --report requires --diff or --range.
      * - --report requires persistence (cannot be used with --output=console).
+     * - --journal requires persistence (cannot be used with --output=console).
+     * - --export-journal is its own mode and only accepts --output-dir, --format and --compress.
+     * - --journal, --keyframe-interval and --dedup are mutually exclusive storage layouts.
+     * - --columnar cannot be combined with --journal.
+     * - --migrate is its own mode and only accepts --output-dir, --format and --compress.
+     * - --retention requires file output and cannot be combined with --journal.
+     * - --range is its own mode and only accepts --output-dir and --report, or bounds a
+     *   --find-port/--find-address lookup (see below).
+     * - --find-port and --find-address are mutually exclusive; a lookup is its own mode and only
+     *   accepts --output-dir and --range (which then bounds the snapshots searched).
      */
     private static CliOptions parseArgs(String[] args) {
         int outputDirCount = 0;
@@ -79,6 +151,65 @@ public final class Main {
         // null => no report requested
         String reportFormat = null;
 
+        int watchCount = 0;
+
+        // null => single run (no watch mode)
+        Duration watchInterval = null;
+
+        int watchMaxCount = 0;
+
+        // null => fixed interval (no backoff)
+        Duration watchMax = null;
+
+        int cpuBudgetCount = 0;
+
+        // 0 => no CPU budget
+        double cpuBudget = 0;
+
+        int debounceCount = 0;
+
+        // Both unused => no debouncing
+        int debouncePolls = 0;
+        Duration debounceWindow = Duration.ZERO;
+
+        int journalCount = 0;
+        int exportJournalCount = 0;
+
+        int dedupCount = 0;
+        int compressCount = 0;
+        int columnarCount = 0;
+
+        // false => plain pretty-printed JSON
+        boolean compress = false;
+
+        int formatCount = 0;
+        int migrateCount = 0;
+
+        // null => PORTWATCH_FORMAT or JSON
+        StorageFormat format = null;
+
+        int retentionCount = 0;
+
+        // null => keep every file
+        RetentionPolicy retention = null;
+
+        int rangeCount = 0;
+
+        // null => no range query; otherwise {from, to} as yyyyMMdd-HHmmss
+        String[] range = null;
+
+        int findPortCount = 0;
+        int findAddressCount = 0;
+
+        // null => no lookup by port / by address
+        Integer findPort = null;
+        String findAddress = null;
+
+        int keyframeIntervalCount = 0;
+
+        // 1 => every snapshot written in full
+        int keyframeInterval = 1;
+
         for (String arg : args) {
             if (arg == null || arg.isBlank()) continue;
 
@@ -92,6 +223,134 @@ public final class Main {
                 continue;
             }
 
+            if ("--journal".equals(arg)) {
+                journalCount++;
+                continue;
+            }
+
+            if ("--export-journal".equals(arg)) {
+                exportJournalCount++;
+                continue;
+            }
+
+            if (arg.startsWith("--compress=")) {
+                compressCount++;
+                String value = arg.substring("--compress=".length()).trim().toLowerCase();
+
+                if (!"gzip".equals(value)) {
+                    System.err.println("Invalid --compress value: " + value + " (allowed: gzip)");
+                    printUsage();
+                    return null;
+                }
+
+                compress = true;
+                continue;
+            }
+
+            if ("--columnar".equals(arg)) {
+                columnarCount++;
+                continue;
+            }
+
+            if (arg.startsWith("--format=")) {
+                formatCount++;
+                String value = arg.substring("--format=".length()).trim();
+                format = StorageFormat.parse(value);
+
+                if (format == null) {
+                    System.err.println("Invalid --format value: " + value + " (allowed: json, smile)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if ("--migrate".equals(arg)) {
+                migrateCount++;
+                continue;
+            }
+
+            if (arg.startsWith("--range=")) {
+                rangeCount++;
+                String value = arg.substring("--range=".length()).trim();
+                range = parseRange(value);
+
+                if (range == null) {
+                    System.err.println("Invalid --range value: " + value
+                            + " (expected <from>..<to>, each yyyyMMdd or yyyyMMdd-HHmmss, from <= to)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if (arg.startsWith("--find-port=")) {
+                findPortCount++;
+                String value = arg.substring("--find-port=".length()).trim();
+
+                try {
+                    findPort = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    findPort = -1;
+                }
+
+                if (findPort < 0 || findPort > 65535) {
+                    System.err.println("Invalid --find-port value: " + value + " (allowed: integer 0-65535)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if (arg.startsWith("--find-address=")) {
+                findAddressCount++;
+                findAddress = arg.substring("--find-address=".length()).trim();
+
+                if (findAddress.isEmpty()) {
+                    System.err.println("Invalid --find-address value: (expected an address, e.g. 0.0.0.0 or ::1)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if (arg.startsWith("--retention=")) {
+                retentionCount++;
+                String value = arg.substring("--retention=".length()).trim();
+                retention = RetentionPolicy.parse(value);
+
+                if (retention == null) {
+                    System.err.println("Invalid --retention value: " + value
+                            + " (expected default or <age>:<all|period>,..., e.g. " + RetentionPolicy.DEFAULT_SPEC + ")");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if ("--dedup".equals(arg)) {
+                dedupCount++;
+                continue;
+            }
+
+            if (arg.startsWith("--keyframe-interval=")) {
+                keyframeIntervalCount++;
+                String value = arg.substring("--keyframe-interval=".length()).trim();
+
+                try {
+                    keyframeInterval = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    keyframeInterval = 0;
+                }
+
+                if (keyframeInterval < 1) {
+                    System.err.println("Invalid --keyframe-interval value: " + value + " (allowed: integer >= 1)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
             if (arg.startsWith("--output=")) {
                 outputCount++;
                 String value = arg.substring("--output=".length()).trim().toLowerCase();
@@ -142,6 +401,75 @@ public final class Main {
                 continue;
             }
 
+            if (arg.startsWith("--watch=")) {
+                watchCount++;
+                String value = arg.substring("--watch=".length()).trim();
+
+                watchInterval = parseInterval(value);
+                if (watchInterval == null) {
+                    System.err.println("Invalid --watch value: " + value + " (examples: 30, 30s, 5m, 1h, 500ms)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if (arg.startsWith("--watch-max=")) {
+                watchMaxCount++;
+                String value = arg.substring("--watch-max=".length()).trim();
+
+                watchMax = parseInterval(value);
+                if (watchMax == null) {
+                    System.err.println("Invalid --watch-max value: " + value + " (examples: 30, 30s, 5m, 1h, 500ms)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if (arg.startsWith("--cpu-budget=")) {
+                cpuBudgetCount++;
+                String value = arg.substring("--cpu-budget=".length()).trim();
+                if (value.endsWith("%")) value = value.substring(0, value.length() - 1);
+
+                try {
+                    cpuBudget = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    cpuBudget = -1;
+                }
+
+                if (!(cpuBudget > 0 && cpuBudget <= 100)) {
+                    System.err.println("Invalid --cpu-budget value: " + value + " (allowed: percent in (0, 100])");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
+            if (arg.startsWith("--debounce=")) {
+                debounceCount++;
+                String value = arg.substring("--debounce=".length()).trim();
+
+                // A plain number counts polls; a number with a unit is a time window.
+                if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+                    try {
+                        debouncePolls = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        debouncePolls = 0;
+                    }
+                } else {
+                    Duration window = parseInterval(value);
+                    debounceWindow = (window == null) ? Duration.ZERO : window;
+                }
+
+                if (debouncePolls <= 0 && debounceWindow.isZero()) {
+                    System.err.println("Invalid --debounce value: " + value + " (examples: 3 polls, 30s, 2m)");
+                    printUsage();
+                    return null;
+                }
+                continue;
+            }
+
             System.err.println("Unknown flag: " + arg);
             printUsage();
             return null;
@@ -173,10 +501,153 @@ public final class Main {
             printUsage();
             return null;
         }
+        if (watchCount > 1) {
+            System.err.println("Duplicate flag: --watch");
+            printUsage();
+            return null;
+        }
+        if (watchMaxCount > 1) {
+            System.err.println("Duplicate flag: --watch-max");
+            printUsage();
+            return null;
+        }
+        if (cpuBudgetCount > 1) {
+            System.err.println("Duplicate flag: --cpu-budget");
+            printUsage();
+            return null;
+        }
+        if (debounceCount > 1) {
+            System.err.println("Duplicate flag: --debounce");
+            printUsage();
+            return null;
+        }
+
+        if (journalCount > 1) {
+            System.err.println("Duplicate flag: --journal");
+            printUsage();
+            return null;
+        }
+        if (exportJournalCount > 1) {
+            System.err.println("Duplicate flag: --export-journal");
+            printUsage();
+            return null;
+        }
+        if (compressCount > 1) {
+            System.err.println("Duplicate flag: --compress");
+            printUsage();
+            return null;
+        }
+        if (columnarCount > 1) {
+            System.err.println("Duplicate flag: --columnar");
+            printUsage();
+            return null;
+        }
+        if (formatCount > 1) {
+            System.err.println("Duplicate flag: --format");
+            printUsage();
+            return null;
+        }
+        if (migrateCount > 1) {
+            System.err.println("Duplicate flag: --migrate");
+            printUsage();
+            return null;
+        }
+        if (retentionCount > 1) {
+            System.err.println("Duplicate flag: --retention");
+            printUsage();
+            return null;
+        }
+        if (rangeCount > 1) {
+            System.err.println("Duplicate flag: --range");
+            printUsage();
+            return null;
+        }
+        if (findPortCount > 1) {
+            System.err.println("Duplicate flag: --find-port");
+            printUsage();
+            return null;
+        }
+        if (findAddressCount > 1) {
+            System.err.println("Duplicate flag: --find-address");
+            printUsage();
+            return null;
+        }
+        if (dedupCount > 1) {
+            System.err.println("Duplicate flag: --dedup");
+            printUsage();
+            return null;
+        }
+        if (keyframeIntervalCount > 1) {
+            System.err.println("Duplicate flag: --keyframe-interval");
+            printUsage();
+            return null;
+        }
+
+        // Journal export is its own execution mode: it only reads the journal and writes JSON files.
+        if (exportJournalCount == 1 && (snapshotCount == 1 || diffCount == 1 || watchInterval != null
+                || outputCount == 1 || reportCount == 1 || journalCount == 1 || keyframeIntervalCount == 1
+                || dedupCount == 1 || columnarCount == 1 || migrateCount == 1 || retentionCount == 1)) {
+            System.err.println("--export-journal can only be combined with --output-dir, --format and --compress.");
+            printUsage();
+            return null;
+        }
+
+        // Migration is its own execution mode: it re-encodes existing files and collects nothing.
+        if (migrateCount == 1 && (snapshotCount == 1 || diffCount == 1 || watchInterval != null
+                || outputCount == 1 || reportCount == 1 || journalCount == 1 || keyframeIntervalCount == 1
+                || dedupCount == 1 || columnarCount == 1 || retentionCount == 1)) {
+            System.err.println("--migrate can only be combined with --output-dir, --format and --compress.");
+            printUsage();
+            return null;
+        }
+
+        // Range queries are their own execution mode: they only read existing diff files.
+        if (rangeCount == 1 && (snapshotCount == 1 || diffCount == 1 || watchInterval != null
+                || outputCount == 1 || journalCount == 1 || exportJournalCount == 1 || migrateCount == 1
+                || keyframeIntervalCount == 1 || dedupCount == 1 || compressCount == 1 || columnarCount == 1
+                || formatCount == 1 || retentionCount == 1)) {
+            System.err.println("--range can only be combined with --output-dir, --report, --find-port and --find-address.");
+            printUsage();
+            return null;
+        }
+
+        // Lookups are their own execution mode: they only read existing columnar files.
+        if (findPortCount + findAddressCount > 1) {
+            System.err.println("--find-port and --find-address cannot be combined.");
+            printUsage();
+            return null;
+        }
+        if (findPortCount + findAddressCount == 1 && (snapshotCount == 1 || diffCount == 1 || watchInterval != null
+                || outputCount == 1 || reportCount == 1 || journalCount == 1 || exportJournalCount == 1
+                || migrateCount == 1 || keyframeIntervalCount == 1 || dedupCount == 1 || compressCount == 1
+                || columnarCount == 1 || formatCount == 1 || retentionCount == 1)) {
+            System.err.println("--find-port and --find-address can only be combined with --output-dir and --range.");
+            printUsage();
+            return null;
+        }
+
+        // Watch tuning flags are only meaningful in watch mode.
+        if ((watchMax != null || cpuBudgetCount == 1 || debounceCount == 1) && watchInterval == null) {
+            System.err.println("--watch-max, --cpu-budget and --debounce require --watch.");
+            printUsage();
+            return null;
+        }
+        if (watchMax != null && watchMax.compareTo(watchInterval) < 0) {
+            System.err.println("--watch-max must not be shorter than --watch.");
+            printUsage();
+            return null;
+        }
 
-        // Report requires a diff to interpret.
-        if (reportFormat != null && diffCount != 1) {
-            System.err.println("--report requires --diff.");
+        // Watch mode is its own execution mode.
+        if (watchInterval != null && (snapshotCount == 1 || diffCount == 1)) {
+            System.err.println("--watch cannot be combined with --snapshot or --diff.");
+            printUsage();
+            return null;
+        }
+
+        // Report requires a diff to interpret: the one computed by --diff, or the net diff of --range.
+        if (reportFormat != null && diffCount != 1 && rangeCount != 1) {
+            System.err.println("--report requires --diff or --range.");
             printUsage();
             return null;
         }
@@ -188,29 +659,214 @@ public final class Main {
             return null;
         }
 
-        return new CliOptions(snapshotCount == 1, diffCount == 1, outputMode, outputDir, reportFormat);
+        // The journal is a persistence format. Console mode is non-persistent.
+        if (journalCount == 1 && outputMode == OutputMode.CONSOLE) {
+            System.err.println("--journal requires file output (use --output=file or omit --output).");
+            printUsage();
+            return null;
+        }
+
+        // Storage layouts are alternatives: journal, delta snapshot files or deduplicated blobs.
+        if (journalCount + keyframeIntervalCount + dedupCount > 1) {
+            System.err.println("--journal, --keyframe-interval and --dedup cannot be combined.");
+            printUsage();
+            return null;
+        }
+
+        // Columnar copies are written alongside snapshot files, which the journal does not produce.
+        if (columnarCount == 1 && journalCount == 1) {
+            System.err.println("--columnar cannot be combined with --journal.");
+            printUsage();
+            return null;
+        }
+
+        // Retention deletes persisted files; the journal is a single file and is not compacted.
+        if (retentionCount == 1 && outputMode == OutputMode.CONSOLE) {
+            System.err.println("--retention requires file output (use --output=file or omit --output).");
+            printUsage();
+            return null;
+        }
+        if (retentionCount == 1 && journalCount == 1) {
+            System.err.println("--retention cannot be combined with --journal.");
+            printUsage();
+            return null;
+        }
+
+        WatchOptions watch = (watchInterval == null)
+                ? null
+                : new WatchOptions(watchInterval, (watchMax == null) ? watchInterval : watchMax, cpuBudget,
+                debouncePolls, debounceWindow);
+
+        return new CliOptions(snapshotCount == 1, diffCount == 1, outputMode, outputDir, reportFormat, watch,
+                journalCount == 1, exportJournalCount == 1, keyframeInterval, dedupCount == 1, compress, columnarCount == 1,
+                format, migrateCount == 1, retention, range, findPort, findAddress);
+    }
+
+    /**
+     * Parses a range of timestamps "&lt;from&gt;..&lt;to&gt;".
+     * <p>
+     * Each bound is a full timestamp (yyyyMMdd-HHmmss) or a date (yyyyMMdd), which stands for the
+     * start of the day as {@code from} and for its end as {@code to}.
+     *
+     * @return {from, to} as yyyyMMdd-HHmmss, or null if the value is invalid or from is after to
+     */
+    private static String[] parseRange(String value) {
+        int sep = value.indexOf("..");
+        if (sep < 0) return null;
+
+        String from = parseRangeBound(value.substring(0, sep).trim(), "000000");
+        String to = parseRangeBound(value.substring(sep + 2).trim(), "235959");
+        if (from == null || to == null || from.compareTo(to) > 0) return null;
+
+        return new String[]{from, to};
+    }
+
+    private static String parseRangeBound(String v, String defaultTime) {
+        String ts = (v.length() == "yyyyMMdd".length()) ? v + "-" + defaultTime : v;
+        try {
+            LocalDateTime.parse(ts, DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            return ts;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a polling interval.
+     * <p>
+     * Accepted forms: plain seconds ("30") or a number with unit suffix
+     * "ms", "s", "m" or "h" ("500ms", "30s", "5m", "1h").
+     *
+     * @return positive duration, or null if the value is invalid
+     */
+    private static Duration parseInterval(String value) {
+        String v = value.trim().toLowerCase();
+        if (v.isEmpty()) return null;
+
+        ChronoUnit unit = ChronoUnit.SECONDS;
+        String number = v;
+
+        if (v.endsWith("ms")) {
+            unit = ChronoUnit.MILLIS;
+            number = v.substring(0, v.length() - 2);
+        } else if (v.endsWith("s")) {
+            number = v.substring(0, v.length() - 1);
+        } else if (v.endsWith("m")) {
+            unit = ChronoUnit.MINUTES;
+            number = v.substring(0, v.length() - 1);
+        } else if (v.endsWith("h")) {
+            unit = ChronoUnit.HOURS;
+            number = v.substring(0, v.length() - 1);
+        }
+
+        try {
+            long amount = Long.parseLong(number);
+            return (amount > 0) ? Duration.of(amount, unit) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     // ----------------- Collector wiring -----------------
 
+    /**
+     * Returns false for the modes that only read stored data (journal export, migration, range and
+     * lookup), true for the modes that collect listeners.
+     */
+    private static boolean collects(CliOptions opt) {
+        return !opt.exportJournal && !opt.migrate && opt.range == null
+                && opt.findPort == null && opt.findAddress == null;
+    }
+
     /**
      * Wires an OS-specific {@link ListenerCollector}.
      * <p>
      * OS detection is centralized via {@link OsDetector}.
      * Each collector is responsible for obtaining TCP listening sockets on its target OS.
+     * <p>
+     * On Linux, see {@link #wireLinuxCollector}.
      *
+     * @param machineId identifier of this machine (see {@link PortWatchApp#resolveMachineId()})
      * @return collector implementation for the current OS
      */
-    private static ListenerCollector wireCollector() {
+    private static ListenerCollector wireCollector(String machineId) {
         var os = OsDetector.detect();
         return switch (os) {
             case WINDOWS -> new WindowsPowerShellCollector();
-            case LINUX -> new LinuxSsCollector();
+            case LINUX -> wireLinuxCollector(machineId);
             case MAC -> new MacOsLsofCollector();
             default -> throw new IllegalStateException("Unsupported OS for now: " + os);
         };
     }
 
+    /**
+     * Chooses the Linux collector.
+     * <p>
+     * The procfs collector is preferred when /proc/net/tcp is readable, since it avoids forking
+     * {@code ss} on every run. On hosts with very large connection tables, {@code ss} is used
+     * instead (if installed): it lets the kernel filter LISTEN sockets via NETLINK_SOCK_DIAG,
+     * while procfs exposes every socket.
+     * <p>
+     * Both collectors report the same fields, so a switch does not show up as changes; still, a
+     * table hovering around the threshold should not switch collectors on every run. The choice
+     * is therefore kept per machine ({@code snapshots/<machine>}{@value #COLLECTOR_SUFFIX},
+     * since several hosts may share the data directory) and only revised with hysteresis: procfs
+     * switches to {@code ss} above {@link LinuxProcNetCollector#LARGE_TABLE_THRESHOLD} sockets,
+     * and {@code ss} switches back below {@link LinuxProcNetCollector#SMALL_TABLE_THRESHOLD}.
+     *
+     * @param machineId identifier of this machine
+     * @return Linux collector implementation
+     */
+    private static ListenerCollector wireLinuxCollector(String machineId) {
+        if (!LinuxProcNetCollector.isAvailable()) {
+            return new LinuxSsCollector();
+        }
+        if (!LinuxSsCollector.isAvailable()) {
+            return new LinuxProcNetCollector();
+        }
+
+        Path choiceFile = SnapshotIO.snapshotsDir().resolve(machineId + COLLECTOR_SUFFIX);
+        String previous = readCollectorChoice(choiceFile);
+        long size = LinuxProcNetCollector.tcpTableSize();
+
+        boolean useSs;
+        if (size < 0) {
+            useSs = COLLECTOR_SS.equals(previous); // counters unreadable: keep the previous choice
+        } else if (COLLECTOR_SS.equals(previous)) {
+            useSs = size >= LinuxProcNetCollector.SMALL_TABLE_THRESHOLD;
+        } else {
+            useSs = size > LinuxProcNetCollector.LARGE_TABLE_THRESHOLD;
+        }
+
+        String choice = useSs ? COLLECTOR_SS : COLLECTOR_PROCFS;
+        if (!choice.equals(previous)) writeCollectorChoice(choiceFile, choice);
+
+        return useSs ? new LinuxSsCollector() : new LinuxProcNetCollector();
+    }
+
+    /**
+     * Reads the Linux collector chosen by the previous run, or null if none was recorded.
+     */
+    private static String readCollectorChoice(Path file) {
+        try {
+            return Files.isRegularFile(file) ? Files.readString(file, StandardCharsets.US_ASCII).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the Linux collector choice for the next run. Failures only cost the hysteresis.
+     */
+    private static void writeCollectorChoice(Path file, String choice) {
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, choice + System.lineSeparator(), StandardCharsets.US_ASCII);
+        } catch (IOException ignore) {
+            // Next run decides again from the table size alone
+        }
+    }
+
     // ----------------- Dispatch -----------------
 
     /**
@@ -219,8 +875,13 @@ public final class Main {
      * Selection rules:
      * - --snapshot and --diff are mutually exclusive.
      * - No mode flags => default mode.
+     * - --watch => continuous watch mode.
      * - --snapshot => snapshot-only mode.
      * - --diff => diff-only mode, optionally with report generation.
+     * - --export-journal => journal export mode.
+     * - --migrate => storage format migration mode.
+     * - --range => net change over a period, optionally with report generation.
+     * - --find-port / --find-address => lookup in columnar snapshots, optionally bounded by --range.
      */
     private static void dispatch(PortWatchApp app, CliOptions opt) throws Exception {
         if (opt.snapshot && opt.diff) {
@@ -229,6 +890,33 @@ public final class Main {
             return;
         }
 
+        if (opt.exportJournal) {
+            app.runExportJournal();
+            return;
+        }
+
+        if (opt.migrate) {
+            app.runMigrate();
+            return;
+        }
+
+        if (opt.findPort != null || opt.findAddress != null) {
+            String from = (opt.range == null) ? null : opt.range[0];
+            String to = (opt.range == null) ? null : opt.range[1];
+            app.runFind(opt.findPort, opt.findAddress, from, to);
+            return;
+        }
+
+        if (opt.range != null) {
+            app.runRange(opt.range[0], opt.range[1], opt.reportFormat);
+            return;
+        }
+
+        if (opt.watch != null) {
+            app.runWatch(opt.outputMode, opt.watch); // runs until the process is stopped
+            return;
+        }
+
         if (!opt.snapshot && !opt.diff) {
             app.runDefault(opt.outputMode); // null => implicit combined output
             return;
@@ -250,11 +938,33 @@ public final class Main {
      */
     private static void printUsage() {
         System.err.println("Usage:");
-        System.err.println("  portwatch [--snapshot | --diff] [--output=console|file] [--output-dir=<path>] [--report=md|html]");
+        System.err.println("  portwatch [--snapshot | --diff | --watch=<interval>] [--output=console|file] [--output-dir=<path>] [--report=md|html]");
+        System.err.println("            [--watch-max=<interval>] [--cpu-budget=<percent>] [--debounce=<polls|interval>]");
+        System.err.println("            [--journal | --keyframe-interval=<n> | --dedup] [--compress=gzip] [--columnar] [--format=json|smile]");
+        System.err.println("            [--retention=default|<policy>]");
+        System.err.println("  portwatch --export-journal [--output-dir=<path>] [--format=json|smile] [--compress=gzip]");
+        System.err.println("  portwatch --migrate [--output-dir=<path>] [--format=json|smile] [--compress=gzip]");
+        System.err.println("  portwatch --range=<from>..<to> [--output-dir=<path>] [--report=md|html]");
+        System.err.println("  portwatch --find-port=<port> | --find-address=<address> [--range=<from>..<to>] [--output-dir=<path>]");
         System.err.println("Notes:");
         System.err.println("  If no flags are provided, PortWatch runs in default mode.");
         System.err.println("  If --output is omitted, output is combined.");
-        System.err.println("  --report requires --diff.");
+        System.err.println("  --report requires --diff or --range.");
+        System.err.println("  --watch keeps running and reports changes as they happen (e.g. --watch=30s).");
+        System.err.println("  --watch-max lets the interval back off while nothing changes; --cpu-budget caps collection time.");
+        System.err.println("  --debounce holds changes for N polls (e.g. 3) or a time window (e.g. 30s) and drops those that revert.");
+        System.err.println("  --journal appends snapshots and diffs to one binary file per machine instead of JSON files.");
+        System.err.println("  --keyframe-interval=N writes every Nth snapshot in full and deltas against the previous one in between.");
+        System.err.println("  --dedup stores each distinct snapshot once and records every run in a timeline.");
+        System.err.println("  --compress=gzip writes compressed files (*.json.gz); compressed and plain files can be mixed.");
+        System.err.println("  --columnar also writes each snapshot as a memory-mapped columnar file (*.pwc) for fast lookups.");
+        System.err.println("  --format=smile writes binary Smile files (*.smile), faster to reprocess; JSON and Smile files can be mixed.");
+        System.err.println("  --retention thins old files, e.g. " + RetentionPolicy.DEFAULT_SPEC
+                + " (all for 24h, hourly for 30 days, daily forever); empty diffs are dropped.");
+        System.err.println("  --range composes the diffs recorded between two dates (yyyyMMdd[-HHmmss]) into their net change.");
+        System.err.println("  --find-port/--find-address list who listened on a port or address in the columnar snapshots (see --columnar).");
+        System.err.println("  --export-journal rebuilds the snapshot and diff files from the journal.");
+        System.err.println("  --migrate re-encodes existing snapshot and diff files in the selected format and compression.");
     }
 
     // ----------------- Options DTO -----------------
@@ -267,6 +977,31 @@ public final class Main {
      * <p>
      * reportFormat:
      * - null means "no report requested".
+     * <p>
+     * watch:
+     * - null means "single run" (no watch mode).
+     * <p>
+     * journal / exportJournal / keyframeInterval / dedup:
+     * - storage layout and journal export mode (see {@link SnapshotIO#journalMode()}).
+     * - 1 means every snapshot file is written in full (see {@link SnapshotIO#keyframeInterval()}).
+     * - dedup selects content-addressed snapshot storage (see {@link SnapshotIO#dedup()}).
+     * <p>
+     * compress / columnar:
+     * - true means JSON files are written gzip-compressed (see {@link SnapshotIO#compression()}).
+     * - true means snapshots also get a columnar copy (see {@link SnapshotIO#columnar()}).
+     * <p>
+     * format / migrate:
+     * - null means the format comes from PORTWATCH_FORMAT or defaults to JSON (see {@link SnapshotIO#format()}).
+     * - true selects the format migration mode.
+     * <p>
+     * retention:
+     * - null means every file is kept (see {@link SnapshotIO#retention()}).
+     * <p>
+     * range:
+     * - null means no range query; otherwise {from, to} as yyyyMMdd-HHmmss.
+     * <p>
+     * findPort / findAddress:
+     * - null means no lookup; at most one of them is set (see {@link PortWatchApp#runFind}).
      */
     private static final class CliOptions {
         final String outputDir;
@@ -276,13 +1011,43 @@ public final class Main {
 
         final OutputMode outputMode; // null => implicit combined behavior
         final String reportFormat;   // null => no report
+        final WatchOptions watch;    // null => single run
+
+        final boolean journal;
+        final boolean exportJournal;
+        final int keyframeInterval;
+        final boolean dedup;
+        final boolean compress;
+        final boolean columnar;
+        final StorageFormat format; // null => environment or JSON
+        final boolean migrate;
+        final RetentionPolicy retention; // null => keep everything
+        final String[] range;            // null => no range query
+        final Integer findPort;          // null => no lookup by port
+        final String findAddress;        // null => no lookup by address
 
-        private CliOptions(boolean snapshot, boolean diff, OutputMode outputMode, String outputDir, String reportFormat) {
+        private CliOptions(boolean snapshot, boolean diff, OutputMode outputMode, String outputDir, String reportFormat,
+                           WatchOptions watch, boolean journal, boolean exportJournal, int keyframeInterval,
+                           boolean dedup, boolean compress, boolean columnar, StorageFormat format, boolean migrate,
+                           RetentionPolicy retention, String[] range, Integer findPort, String findAddress) {
             this.snapshot = snapshot;
             this.diff = diff;
             this.outputMode = outputMode;
             this.outputDir = outputDir;
             this.reportFormat = reportFormat;
+            this.watch = watch;
+            this.journal = journal;
+            this.exportJournal = exportJournal;
+            this.keyframeInterval = keyframeInterval;
+            this.dedup = dedup;
+            this.compress = compress;
+            this.columnar = columnar;
+            this.format = format;
+            this.migrate = migrate;
+            this.retention = retention;
+            this.range = range;
+            this.findPort = findPort;
+            this.findAddress = findAddress;
         }
     }
 }
@@ -1,22 +1,34 @@
 package com.tss.portwatch.core;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tss.portwatch.core.collector.ListenerCollector;
+import com.tss.portwatch.core.diff.FlapDebouncer;
+import com.tss.portwatch.core.diff.IncrementalComparator;
 import com.tss.portwatch.core.diff.SnapshotComparator;
 import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.io.ColumnarSnapshot;
+import com.tss.portwatch.core.io.Compactor;
+import com.tss.portwatch.core.io.FormatMigration;
+import com.tss.portwatch.core.io.RetentionPolicy;
 import com.tss.portwatch.core.io.SnapshotIO;
+import com.tss.portwatch.core.io.SnapshotJournal;
 import com.tss.portwatch.core.model.DiffFile;
 import com.tss.portwatch.core.model.ListeningSocket;
 import com.tss.portwatch.core.model.PortWatchMetadata;
 import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
+import com.tss.portwatch.core.watch.AdaptivePollScheduler;
+import com.tss.portwatch.core.watch.WatchMetrics;
+import com.tss.portwatch.core.watch.WatchOptions;
 import com.tss.portwatch.report.DiffHtmlReportGenerator;
 import com.tss.portwatch.report.DiffReportGenerator;
 import com.tss.portwatch.report.DiffReporter;
+import com.tss.portwatch.report.ReportMetadata;
 
 import java.net.InetAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -25,7 +37,7 @@ import java.util.List;
  * Core application class for PortWatch.
  * <p>
  * Responsibilities:
- * - Orchestrate execution modes (default, snapshot-only, diff-only)
+ * - Orchestrate execution modes (default, snapshot-only, diff-only, watch, range, lookup)
  * - Coordinate data collection, comparison and persistence
  * - Control output rendering (console / file / implicit)
  * - Trigger report generation (Markdown / HTML) when requested
@@ -41,15 +53,27 @@ public final class PortWatchApp {
      */
     public enum OutputMode {CONSOLE, FILE}
 
+    /**
+     * Diff of a poll that found nothing to compare (unchanged table fingerprint).
+     */
+    private static final SnapshotDiff NO_CHANGES = new SnapshotDiff(List.of(), List.of(), List.of());
+
     private final ObjectMapper om;
     private final ListenerCollector collector;
     private final String machineId;
 
+    // Opened on first use in journal mode (see SnapshotIO#journalMode()).
+    private SnapshotJournal journal;
+
+    // Created on first use when a retention policy is set (see SnapshotIO#retention()).
+    private Compactor compactor;
+
     /**
      * Creates a PortWatch application instance.
      *
      * @param om        Jackson ObjectMapper used for JSON serialization
-     * @param collector OS-specific listener collector
+     * @param collector OS-specific listener collector (null for modes that only read stored data:
+     *                  journal export, migration, range and lookup)
      */
     public PortWatchApp(ObjectMapper om, ListenerCollector collector) {
         this.om = om;
@@ -69,6 +93,7 @@ public final class PortWatchApp {
     public void runDefault(OutputMode mode) throws Exception {
         RunResult r = executeDefaultPipeline(mode);
         render(mode, r);
+        applyRetention();
     }
 
     /**
@@ -77,6 +102,7 @@ public final class PortWatchApp {
     public void runSnapshotOnly(OutputMode mode) throws Exception {
         RunResult r = executeSnapshotOnlyPipeline(mode);
         render(mode, r);
+        applyRetention();
     }
 
     /**
@@ -96,26 +122,327 @@ public final class PortWatchApp {
                 );
             }
 
-            if ("md".equalsIgnoreCase(reportFormat)) {
-                generateMarkdownReport(r.diffPayload);
-            } else if ("html".equalsIgnoreCase(reportFormat)) {
-                generateHtmlReport(r.diffPayload);
+            generateReport(reportFormat, r.diffPayload, null);
+        }
+
+        applyRetention();
+    }
+
+    /**
+     * Range mode.
+     * Composes every diff recorded between two timestamps into their net change, or compares the
+     * bounding snapshots when the range holds a snapshot without diff (see {@link SnapshotIO#rangeDiff}),
+     * prints it, and optionally generates a report for the period.
+     * Nothing is collected or written besides the report.
+     *
+     * @param from         first timestamp included (yyyyMMdd-HHmmss)
+     * @param to           last timestamp included (yyyyMMdd-HHmmss)
+     * @param reportFormat "md", "html", or null for no report
+     */
+    public void runRange(String from, String to, String reportFormat) throws Exception {
+        SnapshotIO.RangeDiff range = SnapshotIO.rangeDiff(snapshotsDirForMachine(), diffsDirForMachine(), from, to, om);
+        SnapshotDiff diff = range.diff();
+
+        System.out.println("Range: " + from + " .. " + to + (range.fromSnapshots()
+                ? " (snapshots without diff in range: bounding snapshots compared)"
+                : " (" + range.diffs() + " diff(s))"));
+        System.out.println("Added: " + diff.added().size());
+        System.out.println("Removed: " + diff.removed().size());
+        System.out.println("Changed: " + diff.changed().size());
+        DiffReporter.printConsole(diff, 10);
+
+        if (reportFormat != null) {
+            DateTimeFormatter f = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+            ReportMetadata period = new ReportMetadata(machineId, LocalDateTime.parse(from, f), LocalDateTime.parse(to, f));
+            generateReport(reportFormat, buildDiffPayload(to, diff), period);
+        }
+    }
+
+    /**
+     * Lookup mode.
+     * Answers "who listened on this port (or address)" from the columnar copies of past snapshots
+     * (see {@link SnapshotIO#setColumnar}): each file is memory-mapped and searched without parsing
+     * the whole snapshot. Nothing is collected or written.
+     *
+     * @param port    port to look up, or null to look up {@code address}
+     * @param address address to look up (exact text, e.g. "0.0.0.0" or "::1"), used when port is null
+     * @param from    first timestamp included (yyyyMMdd-HHmmss), or null for no lower bound
+     * @param to      last timestamp included (yyyyMMdd-HHmmss), or null for no upper bound
+     */
+    public void runFind(Integer port, String address, String from, String to) throws Exception {
+        List<Path> files = SnapshotIO.columnarSnapshots(snapshotsDirForMachine(), from, to);
+        if (files.isEmpty()) {
+            System.out.println("No columnar snapshots found" + ((from == null) ? "" : " between " + from + " and " + to)
+                    + " (snapshots are only written as *.pwc with --columnar).");
+            return;
+        }
+
+        int matches = 0;
+        for (Path f : files) {
+            ColumnarSnapshot snapshot = ColumnarSnapshot.open(f);
+            List<ListeningSocket> found = (port != null) ? snapshot.findByPort(port) : snapshot.findByAddress(address);
+
+            for (ListeningSocket s : found) {
+                System.out.println(snapshot.metadata().timestamp() + "  " + DiffReporter.formatSocket(s));
+            }
+            matches += found.size();
+        }
+
+        System.out.println("Searched " + files.size() + " snapshot(s): " + matches + " match(es) for "
+                + ((port != null) ? "port " + port : "address " + address));
+    }
+
+    /**
+     * Continuous watch mode.
+     * <p>
+     * Loads (or creates) the baseline once, then polls and diffs each collection against the
+     * live socket set kept in memory by an {@link IncrementalComparator}. Collectors that track
+     * rows between polls feed it deltas (O(changes)); the others feed full collections, skipped
+     * entirely when the table fingerprint is unchanged. Nothing is re-read from disk between polls. Snapshot and
+     * diff files are only written when something changed, and each change is reported as soon
+     * as it is detected. File names carry the time to the second, so a change detected in the
+     * same second as the previous write waits for the next second before being written.
+     * <p>
+     * The wait between polls is chosen by an {@link AdaptivePollScheduler}: it tightens after a
+     * change, backs off while nothing changes, and respects the configured CPU budget.
+     * Scheduler metrics are printed with every change and when the process stops.
+     * <p>
+     * With debouncing enabled, changes go through a {@link FlapDebouncer} before being reported:
+     * only changes that survive the window are persisted, and snapshot files reflect that
+     * committed state. Changes still pending when the process stops are not persisted; the next
+     * run detects them again.
+     * <p>
+     * With a retention policy, one bounded compaction pass runs between polls when due (see
+     * {@link Compactor#runIfDue}).
+     * <p>
+     * Runs until the process is stopped (Ctrl+C) or the thread is interrupted.
+     * A failed collection is reported and retried on the next poll.
+     */
+    public void runWatch(OutputMode mode, WatchOptions options) throws Exception {
+        Path snapshotsDir = snapshotsDirForMachine();
+        Path previousFile = latestSnapshot(snapshotsDir);
+
+        // Timestamp of the last files written: names have second resolution, see below.
+        String lastTs = null;
+
+        List<ListeningSocket> previous;
+        if (previousFile == null) {
+            String ts = nowTs();
+            previous = collectCurrent();
+            previousFile = writeSnapshot(snapshotsDir, ts, previous);
+            lastTs = ts;
+            System.out.println("Baseline snapshot created: " + previousFile.toAbsolutePath());
+        } else {
+            previous = readSnapshot(previousFile);
+            System.out.println("Previous: " + previousFile.toAbsolutePath());
+        }
+
+        AdaptivePollScheduler scheduler = new AdaptivePollScheduler(options);
+        WatchMetrics metrics = new WatchMetrics();
+        FlapDebouncer debouncer = options.debounced()
+                ? new FlapDebouncer(options.debouncePolls(), options.debounceWindow())
+                : null;
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> System.out.println("Watch stopped: " + watchSummary(scheduler, metrics, debouncer))
+        ));
+
+        System.out.println("Watching every " + formatInterval(options.minInterval())
+                + (options.maxInterval().equals(options.minInterval())
+                ? "" : " (backing off up to " + formatInterval(options.maxInterval()) + ")")
+                + " (Ctrl+C to stop)");
+
+        // Live socket set, updated from full collections or from collector deltas.
+        IncrementalComparator state = new IncrementalComparator(previous);
+
+        // Fingerprint of the raw listener table at the previous poll: when the collector reports
+        // the same fingerprint, nothing is parsed and the diff is known to be empty.
+        long fingerprint = ListenerCollector.NO_FINGERPRINT;
+
+        Duration wait = scheduler.initialDelay();
+        while (!Thread.currentThread().isInterrupted()) {
+            Thread.sleep(wait.toMillis());
+
+            long started = System.nanoTime();
+            SnapshotDiff diff;
+            try {
+                ListenerCollector.Delta delta = collector.collectTcpListenerDelta();
+                if (delta != null) {
+                    // Collector tracks rows itself: O(changes) update of the live set.
+                    metrics.recordFingerprint(delta.unchanged());
+                    diff = delta.full()
+                            ? state.applySnapshot(SortedSockets.sort(delta.upserts()))
+                            : state.apply(delta.upserts(), delta.deletes());
+                } else {
+                    ListenerCollector.Collected collected = collector.collectTcpListenersIfChanged(fingerprint);
+                    metrics.recordFingerprint(collected.unchanged());
+                    if (collected.unchanged()) {
+                        diff = NO_CHANGES;
+                    } else {
+                        fingerprint = collected.fingerprint();
+                        diff = state.applySnapshot(SortedSockets.sort(collected.sockets()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                System.err.println("Collection failed: " + e.getMessage());
+                wait = scheduler.next(false, Duration.ofNanos(System.nanoTime() - started));
+                continue;
+            }
+
+            wait = scheduler.next(!isEmpty(diff), Duration.ofNanos(System.nanoTime() - started));
+
+            compactIfDue();
+
+            // Debouncing runs on every poll (even unchanged ones) so that pending changes mature.
+            SnapshotDiff stable = (debouncer == null) ? diff : debouncer.offer(diff, System.nanoTime());
+            if (isEmpty(stable)) continue;
+
+            String ts = nowTs();
+            Path snapshotFile = null;
+            Path diffFile = null;
+            if (shouldPersist(mode)) {
+                // At most one write per second: with sub-second intervals, or right after a change,
+                // a second change would otherwise overwrite the files of the first one.
+                while (ts.equals(lastTs)) {
+                    Thread.sleep(1000 - System.currentTimeMillis() % 1000);
+                    ts = nowTs();
+                }
+                lastTs = ts;
+
+                List<ListeningSocket> committed = (debouncer == null)
+                        ? state.sockets()
+                        : debouncer.committedView(state.sockets());
+                snapshotFile = writeSnapshot(snapshotsDir, ts, committed);
+                diffFile = writeDiffFile(ts, buildDiffPayload(ts, stable));
             }
+
+            renderWatchEvent(mode, ts, snapshotFile, diffFile, stable);
+            System.out.println("Watch: " + watchSummary(scheduler, metrics, debouncer));
+        }
+    }
+
+    /**
+     * Journal export mode.
+     * Rebuilds every snapshot and diff stored in this machine's journal and writes them
+     * as regular snapshot and diff files (snapshots/ and diffs/ directories).
+     */
+    public void runExportJournal() throws Exception {
+        SnapshotJournal j = journal();
+        if (!j.exists()) {
+            System.out.println("No journal found: " + j.dir().toAbsolutePath());
+            return;
+        }
+
+        int count = j.exportJson(snapshotsDirForMachine(), diffsDirForMachine(), om);
+        System.out.println("Journal exported: " + count + " snapshot(s) from " + j.dir().toAbsolutePath());
+        System.out.println("Snapshots: " + snapshotsDirForMachine().toAbsolutePath());
+        System.out.println("Diffs: " + diffsDirForMachine().toAbsolutePath());
+    }
+
+    /**
+     * Storage format migration mode.
+     * <p>
+     * Re-encodes every snapshot and diff file of the data directory (all machines) in the
+     * configured format and compression (see {@link FormatMigration}).
+     */
+    public void runMigrate() throws Exception {
+        Path base = SnapshotIO.baseDataDir();
+        FormatMigration.Result r = FormatMigration.migrate(base, om);
+
+        String target = SnapshotIO.format().name().toLowerCase() + (SnapshotIO.compression() ? " (gzip)" : "");
+        System.out.println("Migrated to " + target + ": " + r.converted() + " of " + r.scanned() + " file(s) converted");
+        System.out.println("Data directory: " + base.toAbsolutePath());
+    }
+
+    // -------------------------------------------------------------------------
+    // Retention
+    // -------------------------------------------------------------------------
+
+    /**
+     * One-shot modes: applies the retention policy completely, if one is set.
+     */
+    private void applyRetention() throws Exception {
+        Compactor c = compactor();
+        if (c == null) return;
+
+        Compactor.Result r = c.runAll(LocalDateTime.now());
+        if (!r.isEmpty()) System.out.println(retentionSummary(r));
+    }
+
+    /**
+     * Watch mode: runs one bounded compaction pass if due. Failures are reported and the pass is
+     * retried later; they never stop the watch loop.
+     */
+    private void compactIfDue() {
+        Compactor c = compactor();
+        if (c == null) return;
+
+        try {
+            Compactor.Result r = c.runIfDue(System.nanoTime());
+            if (r != null && !r.isEmpty()) System.out.println(retentionSummary(r));
+        } catch (Exception e) {
+            System.err.println("Retention failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compactor of this machine's directories, or null if no retention policy is set
+     * (retention does not apply to the journal).
+     */
+    private Compactor compactor() {
+        RetentionPolicy policy = SnapshotIO.retention();
+        if (policy == null || SnapshotIO.journalMode()) return null;
+
+        if (compactor == null) {
+            compactor = new Compactor(snapshotsDirForMachine(), diffsDirForMachine(), policy, om,
+                    Compactor.DEFAULT_BUDGET);
         }
+        return compactor;
+    }
+
+    private static String retentionSummary(Compactor.Result r) {
+        return "Retention: removed " + r.snapshotsRemoved() + " snapshot(s), " + r.diffsRemoved() + " diff(s), "
+                + r.blobsRemoved() + " blob(s); merged " + r.diffsMerged() + " diff(s); "
+                + r.keyframesRewritten() + " keyframe(s) rewritten"
+                + (r.complete() ? "" : " (more on next pass)");
     }
 
     // -------------------------------------------------------------------------
     // Report generation
     // -------------------------------------------------------------------------
 
+    /**
+     * Generates a report in the requested format ("md" or "html").
+     *
+     * @param period analyzed period for range reports, or null for a single diff
+     */
+    private void generateReport(String reportFormat, DiffFile diffFile, ReportMetadata period) throws Exception {
+        if ("md".equalsIgnoreCase(reportFormat)) {
+            generateMarkdownReport(diffFile, period);
+        } else if ("html".equalsIgnoreCase(reportFormat)) {
+            generateHtmlReport(diffFile, period);
+        }
+    }
+
+    /**
+     * Report file label: the diff timestamp, or "&lt;from&gt;_&lt;to&gt;" for a range report.
+     */
+    private static String reportLabel(DiffFile diffFile, ReportMetadata period) {
+        if (period == null) return diffFile.metadata().timestamp();
+
+        DateTimeFormatter f = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+        return period.previousAnalysis().format(f) + "_" + period.currentAnalysis().format(f);
+    }
+
     /**
      * Generates an HTML report from a diff payload.
      */
-    private void generateHtmlReport(DiffFile diffFile) throws Exception {
+    private void generateHtmlReport(DiffFile diffFile, ReportMetadata period) throws Exception {
         String machineId = diffFile.metadata().machineId();
-        String timestamp = diffFile.metadata().timestamp();
+        String timestamp = reportLabel(diffFile, period);
 
-        String html = DiffHtmlReportGenerator.generateHtml(diffFile);
+        String html = DiffHtmlReportGenerator.generateHtml(diffFile, period);
 
         Path dir = SnapshotIO.baseDataDir()
                 .resolve("reports")
@@ -132,11 +459,11 @@ public final class PortWatchApp {
     /**
      * Generates a Markdown report from a diff payload.
      */
-    private void generateMarkdownReport(DiffFile diffFile) throws Exception {
+    private void generateMarkdownReport(DiffFile diffFile, ReportMetadata period) throws Exception {
         String machineId = diffFile.metadata().machineId();
-        String timestamp = diffFile.metadata().timestamp();
+        String timestamp = reportLabel(diffFile, period);
 
-        String md = DiffReportGenerator.generateMarkdown(diffFile, null);
+        String md = DiffReportGenerator.generateMarkdown(diffFile, period);
 
         Path dir = SnapshotIO.baseDataDir()
                 .resolve("reports")
@@ -169,7 +496,7 @@ public final class PortWatchApp {
      */
     private RunResult executeDefaultPipeline(OutputMode mode) throws Exception {
         Path snapshotsDir = snapshotsDirForMachine();
-        Path previousFile = SnapshotIO.latestSnapshot(snapshotsDir);
+        Path previousFile = latestSnapshot(snapshotsDir);
 
         if (previousFile == null) {
             Path baselineFile = createBaseline(snapshotsDir);
@@ -177,15 +504,14 @@ public final class PortWatchApp {
         }
 
         List<ListeningSocket> current = collectCurrent();
-        List<ListeningSocket> previous = SnapshotIO.read(previousFile, om);
-        SnapshotDiff diff = SnapshotComparator.compare(previous, current);
+        SnapshotDiff diff = diffAgainst(previousFile, current);
 
         if (!shouldPersist(mode)) {
             return RunResult.diffOnlyInMemory(previousFile, diff);
         }
 
         String ts = nowTs();
-        Path snapshotFile = writeSnapshot(snapshotsDir, ts, current);
+        Path snapshotFile = writeSnapshot(snapshotsDir, ts, current, diff);
         DiffFile diffPayload = buildDiffPayload(ts, diff);
         Path diffFile = writeDiffFile(ts, diffPayload);
 
@@ -208,7 +534,7 @@ public final class PortWatchApp {
         }
 
         Path snapshotsDir = snapshotsDirForMachine();
-        Path previousFile = SnapshotIO.latestSnapshot(snapshotsDir);
+        Path previousFile = latestSnapshot(snapshotsDir);
 
         String ts = nowTs();
         Path snapshotFile = writeSnapshot(snapshotsDir, ts, current);
@@ -225,7 +551,7 @@ public final class PortWatchApp {
      */
     private RunResult executeDiffOnlyPipeline(OutputMode mode) throws Exception {
         Path snapshotsDir = snapshotsDirForMachine();
-        Path previousFile = SnapshotIO.latestSnapshot(snapshotsDir);
+        Path previousFile = latestSnapshot(snapshotsDir);
 
         if (previousFile == null) {
             Path baselineFile = createBaseline(snapshotsDir);
@@ -233,15 +559,14 @@ public final class PortWatchApp {
         }
 
         List<ListeningSocket> current = collectCurrent();
-        List<ListeningSocket> previous = SnapshotIO.read(previousFile, om);
-        SnapshotDiff diff = SnapshotComparator.compare(previous, current);
+        SnapshotDiff diff = diffAgainst(previousFile, current);
 
         if (!shouldPersist(mode)) {
             return RunResult.diffOnlyInMemory(previousFile, diff);
         }
 
         String ts = nowTs();
-        Path snapshotFile = writeSnapshot(snapshotsDir, ts, current);
+        Path snapshotFile = writeSnapshot(snapshotsDir, ts, current, diff);
         DiffFile diffPayload = buildDiffPayload(ts, diff);
         Path diffFile = writeDiffFile(ts, diffPayload);
 
@@ -311,6 +636,29 @@ public final class PortWatchApp {
         DiffReporter.printConsole(r.diff, 10);
     }
 
+    /**
+     * Renders one change detected in watch mode.
+     * FILE mode prints the written paths, CONSOLE mode the diff, implicit mode both.
+     */
+    private void renderWatchEvent(OutputMode mode, String ts, Path snapshotFile, Path diffFile, SnapshotDiff diff) {
+        System.out.println();
+        System.out.println("[" + ts + "] Change detected");
+
+        if (snapshotFile != null) {
+            System.out.println("Snapshot saved: " + snapshotFile.toAbsolutePath());
+        }
+        if (diffFile != null) {
+            System.out.println("Diff saved: " + diffFile.toAbsolutePath());
+        }
+
+        if (mode == OutputMode.FILE) return;
+
+        System.out.println("Added: " + diff.added().size());
+        System.out.println("Removed: " + diff.removed().size());
+        System.out.println("Changed: " + diff.changed().size());
+        DiffReporter.printConsole(diff, 10);
+    }
+
     // -------------------------------------------------------------------------
     // Persistence helpers
     // -------------------------------------------------------------------------
@@ -321,11 +669,72 @@ public final class PortWatchApp {
         return writeSnapshot(snapshotsDir, ts, current);
     }
 
+    /**
+     * Returns the latest snapshot of this machine: the newest snapshot file, or the journal segment
+     * holding the latest record in journal mode. Null if there is none yet.
+     */
+    private Path latestSnapshot(Path snapshotsDir) throws Exception {
+        if (SnapshotIO.journalMode()) {
+            return journal().tail();
+        }
+        return SnapshotIO.latestSnapshot(snapshotsDir);
+    }
+
+    /**
+     * Reads a snapshot returned by {@link #latestSnapshot(Path)}.
+     */
+    private List<ListeningSocket> readSnapshot(Path file) throws Exception {
+        if (SnapshotIO.journalMode()) {
+            return journal().latest();
+        }
+        return SnapshotIO.read(file, om);
+    }
+
+    /**
+     * Diffs the current collection against a snapshot returned by {@link #latestSnapshot(Path)}.
+     * Snapshot files are streamed into the diff row by row instead of being loaded as a list;
+     * files flagged as sorted are merged against the (sorted) collection instead of being hashed.
+     */
+    private SnapshotDiff diffAgainst(Path previousFile, List<ListeningSocket> current) throws Exception {
+        if (SnapshotIO.journalMode()) {
+            return SnapshotComparator.compare(journal().latest(), current);
+        }
+
+        SnapshotComparator.SocketSource previous = sink -> SnapshotIO.readSockets(previousFile, om, sink);
+        if (current instanceof SortedSockets sorted && SnapshotIO.isSorted(previousFile, om)) {
+            return SnapshotComparator.compareSorted(previous, sorted);
+        }
+        return SnapshotComparator.compare(previous, current);
+    }
+
+    /**
+     * Writes a snapshot file. Sockets are persisted in canonical key order and flagged as sorted,
+     * so that later diffs against this file can use the merge path. With a keyframe interval
+     * configured, the file may hold a delta against the previous snapshot instead
+     * (see {@link SnapshotIO#writeSnapshot}).
+     * <p>
+     * In journal mode the snapshot is appended to the journal instead (as a diff record against
+     * the previous state, or a keyframe) and the journal path is returned.
+     */
     private Path writeSnapshot(Path snapshotsDir, String ts, List<ListeningSocket> current) throws Exception {
+        return writeSnapshot(snapshotsDir, ts, current, null);
+    }
+
+    /**
+     * Writes a snapshot whose diff against the latest snapshot is already known, so that journal
+     * mode records it without diffing the same pair again.
+     *
+     * @param diff diff from the latest snapshot to {@code current}, or null if not computed
+     */
+    private Path writeSnapshot(Path snapshotsDir, String ts, List<ListeningSocket> current, SnapshotDiff diff) throws Exception {
         PortWatchMetadata meta = new PortWatchMetadata(machineId, System.getProperty("os.name"), ts);
-        SnapshotFile payload = new SnapshotFile(meta, current);
+        if (SnapshotIO.journalMode()) {
+            return journal().append(meta, current, diff);
+        }
+
+        SnapshotFile payload = new SnapshotFile(meta, true, SortedSockets.sort(current));
 
-        return SnapshotIO.write(
+        return SnapshotIO.writeSnapshot(
                 snapshotsDir,
                 "snapshot-" + machineId + "-" + ts + ".json",
                 om,
@@ -338,8 +747,15 @@ public final class PortWatchApp {
         return new DiffFile(meta, diff);
     }
 
+    /**
+     * Writes a diff file. In journal mode the diff was already recorded by
+     * {@link #writeSnapshot(Path, String, List)}, so only the journal segment path is returned.
+     */
     private Path writeDiffFile(String ts, DiffFile payload) throws Exception {
-        return SnapshotIO.write(
+        if (SnapshotIO.journalMode()) {
+            return journal().tail();
+        }
+        return SnapshotIO.writeDiff(
                 diffsDirForMachine(),
                 "diff-" + machineId + "-" + ts + ".json",
                 om,
@@ -348,26 +764,45 @@ public final class PortWatchApp {
     }
 
     // -------------------------------------------------------------------------
-    // Collection and parsing
+    // Collection
     // -------------------------------------------------------------------------
 
+    /**
+     * Collects the current listeners in canonical key order (see {@link SortedSockets}).
+     * Sorting once here serves both the merge diff and the persisted snapshot.
+     */
     private List<ListeningSocket> collectCurrent() throws Exception {
-        String json = collector.collectTcpListenersJson();
-        return parseSockets(json);
+        return SortedSockets.sort(collector.collectTcpListeners());
     }
 
-    private List<ListeningSocket> parseSockets(String json) throws Exception {
-        String t = json.trim();
-        if (t.isEmpty()) return List.of();
-        return om.readValue(t, new TypeReference<>() {
-        });
+    /**
+     * One-line watch metrics: scheduler, fingerprint and (if enabled) debounce counters.
+     */
+    private static String watchSummary(AdaptivePollScheduler scheduler, WatchMetrics metrics, FlapDebouncer debouncer) {
+        String summary = scheduler.summary() + " " + metrics.summary();
+        if (debouncer != null) {
+            summary += " pending=" + debouncer.pendingChanges() + " suppressedFlaps=" + debouncer.suppressedFlaps();
+        }
+        return summary;
+    }
+
+    private static boolean isEmpty(SnapshotDiff diff) {
+        return diff.added().isEmpty() && diff.removed().isEmpty() && diff.changed().isEmpty();
+    }
+
+    private static String formatInterval(Duration d) {
+        return (d.toMillis() % 1000 == 0) ? d.toSeconds() + "s" : d.toMillis() + "ms";
     }
 
     private String nowTs() {
         return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
     }
 
-    private String resolveMachineId() {
+    /**
+     * Returns the identifier naming this machine's directories: the host name, with characters
+     * unsafe in file names replaced by '_'.
+     */
+    public static String resolveMachineId() {
         String host = null;
 
         try {
@@ -392,6 +827,13 @@ public final class PortWatchApp {
         return SnapshotIO.diffsDir().resolve(machineId);
     }
 
+    private SnapshotJournal journal() {
+        if (journal == null) {
+            journal = new SnapshotJournal(SnapshotIO.journalDir().resolve(machineId));
+        }
+        return journal;
+    }
+
     // -------------------------------------------------------------------------
     // Result carrier
     // -------------------------------------------------------------------------
@@ -0,0 +1,285 @@
+package com.tss.portwatch.core.collector;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-light tokenizer for the line-oriented output of native tools ({@code ss}, {@code lsof}).
+ * <p>
+ * The tokenizer works directly on the {@code char[]} line buffer streamed by
+ * {@link com.tss.portwatch.core.exec.CommandRunner#streamLines} and records field boundaries as offsets
+ * instead of creating one String per line and per field:
+ * <ul>
+ *   <li>{@link #reset(char[], int, int)} splits one line on whitespace (offsets only)</li>
+ *   <li>{@link #parseDecimal(char[], int, int)} parses ports and PIDs without substrings</li>
+ *   <li>{@link #parseEndpoint(char[], int, int, Endpoint)} decodes "host:port" tokens</li>
+ * </ul>
+ * Strings are only materialized for values that end up in a {@code ListeningSocket}
+ * (address and process name).
+ * <p>
+ * Instances are reusable and not thread-safe: each parse keeps one tokenizer for all its lines.
+ */
+final class FieldTokenizer {
+
+    /**
+     * Mutable host/port holder filled by {@link #parseEndpoint(char[], int, int, Endpoint)}.
+     * Reused across lines to avoid one DTO per row.
+     */
+    static final class Endpoint {
+        String host;
+        int port;
+    }
+
+    private char[] buf;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    /**
+     * Splits {@code buf[from, to)} on whitespace. Leading and trailing whitespace is ignored.
+     *
+     * @return this tokenizer, positioned on the new line
+     */
+    FieldTokenizer reset(char[] buf, int from, int to) {
+        this.buf = buf;
+        this.count = 0;
+
+        int i = from;
+        while (i < to) {
+            while (i < to && isSpace(buf[i])) i++;
+            if (i >= to) break;
+
+            int s = i;
+            while (i < to && !isSpace(buf[i])) i++;
+            add(s, i);
+        }
+        return this;
+    }
+
+    /**
+     * @return number of fields in the current line
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return start offset (inclusive) of field {@code i}
+     */
+    int start(int i) {
+        return starts[i];
+    }
+
+    /**
+     * @return end offset (exclusive) of field {@code i}
+     */
+    int end(int i) {
+        return ends[i];
+    }
+
+    /**
+     * Materializes field {@code i} as a String.
+     */
+    String string(int i) {
+        return new String(buf, starts[i], ends[i] - starts[i]);
+    }
+
+    /**
+     * Compares field {@code i} with a literal without allocating.
+     */
+    boolean fieldEquals(int i, String literal) {
+        return regionEquals(buf, starts[i], ends[i], literal, false);
+    }
+
+    /**
+     * Case-insensitive variant of {@link #fieldEquals(int, String)}.
+     */
+    boolean fieldEqualsIgnoreCase(int i, String literal) {
+        return regionEquals(buf, starts[i], ends[i], literal, true);
+    }
+
+    /**
+     * Parses field {@code i} as a non-negative decimal integer.
+     *
+     * @return the value, or -1 if the field is not a valid number
+     */
+    int parseInt(int i) {
+        return parseDecimal(buf, starts[i], ends[i]);
+    }
+
+    /**
+     * Parses {@code buf[from, to)} as a non-negative decimal integer.
+     *
+     * @return the value, or -1 if the range is empty, contains a non-digit or overflows an int
+     */
+    static int parseDecimal(char[] buf, int from, int to) {
+        if (from >= to) return -1;
+
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            char c = buf[i];
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+            if (v > Integer.MAX_VALUE) return -1;
+        }
+        return (int) v;
+    }
+
+    /**
+     * Long variant of {@link #parseDecimal(char[], int, int)}, for values such as socket inodes.
+     *
+     * @return the value, or -1 if the range is empty, contains a non-digit or has more than 18 digits
+     */
+    static long parseDecimalLong(char[] buf, int from, int to) {
+        if (from >= to || to - from > 18) return -1;
+
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            char c = buf[i];
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    /**
+     * Returns the index of the first occurrence of {@code needle} in {@code buf[from, to)}, or -1.
+     */
+    static int indexOf(char[] buf, int from, int to, String needle) {
+        int n = needle.length();
+        for (int i = from; i <= to - n; i++) {
+            if (regionEquals(buf, i, i + n, needle, false)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if {@code buf[from, to)} starts with {@code prefix}.
+     */
+    static boolean startsWith(char[] buf, int from, int to, String prefix) {
+        int n = prefix.length();
+        return to - from >= n && regionEquals(buf, from, from + n, prefix, false);
+    }
+
+    /**
+     * Returns true if {@code buf[from, to)} ends with {@code suffix}.
+     */
+    static boolean endsWith(char[] buf, int from, int to, String suffix) {
+        int n = suffix.length();
+        return to - from >= n && regionEquals(buf, to - n, to, suffix, false);
+    }
+
+    /**
+     * Returns the index of the last {@code c} in {@code buf[from, to)}, or -1.
+     */
+    static int lastIndexOf(char[] buf, int from, int to, char c) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buf[i] == c) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a local endpoint token as printed by {@code ss} / {@code lsof}.
+     * <p>
+     * Examples:
+     * {@code 127.0.0.1:631}, {@code [::1]:631}, {@code [::ffff:127.0.0.1]:63342},
+     * {@code 127.0.0.53%lo:53}, {@code [::]%lo:53}, {@code *:22}
+     * <p>
+     * Normalizations:
+     * <ul>
+     *   <li>IPv6 brackets are removed</li>
+     *   <li>the port is taken after the last ':' (IPv6 contains multiple ':')</li>
+     *   <li>{@code *} becomes {@code 0.0.0.0} (all interfaces)</li>
+     *   <li>a scope suffix such as {@code %lo} is preserved for traceability</li>
+     * </ul>
+     *
+     * @return true if host and port were decoded into {@code out}
+     */
+    static boolean parseEndpoint(char[] buf, int from, int to, Endpoint out) {
+        return parseEndpoint(buf, from, to, out, true);
+    }
+
+    /**
+     * Same as {@link #parseEndpoint(char[], int, int, Endpoint)}, optionally dropping the scope
+     * suffix ({@code 127.0.0.53%lo} becomes {@code 127.0.0.53}), for collectors whose results must
+     * match a source that does not expose it.
+     *
+     * @param keepScope false to drop a {@code %scope} suffix from the host
+     * @return true if host and port were decoded into {@code out}
+     */
+    static boolean parseEndpoint(char[] buf, int from, int to, Endpoint out, boolean keepScope) {
+        int hostFrom = from;
+        int hostTo;
+        int scopeFrom;
+        int scopeTo;
+        int portFrom;
+
+        if (from < to && buf[from] == '[') {
+            int close = -1;
+            for (int i = from + 1; i < to; i++) {
+                if (buf[i] == ']') {
+                    close = i;
+                    break;
+                }
+            }
+            if (close < 0 || close + 1 >= to) return false;
+
+            // "[addr]:port" or, for device-bound sockets, "[addr]%scope:port"
+            int colon = (buf[close + 1] == ':') ? close + 1 : lastIndexOf(buf, close + 1, to, ':');
+            if (colon < 0 || (colon > close + 1 && buf[close + 1] != '%')) return false;
+
+            hostFrom = from + 1;
+            hostTo = close;
+            scopeFrom = close + 1;
+            scopeTo = colon;
+            portFrom = colon + 1;
+        } else {
+            int idx = lastIndexOf(buf, from, to, ':');
+            if (idx <= from) return false;
+
+            int pct = indexOf(buf, from, idx, "%");
+            hostTo = (pct < 0) ? idx : pct;
+            scopeFrom = hostTo;
+            scopeTo = idx;
+            portFrom = idx + 1;
+        }
+
+        if (hostTo <= hostFrom) return false;
+
+        int port = parseDecimal(buf, portFrom, to);
+        if (port < 0) return false;
+
+        String host = (hostTo - hostFrom == 1 && buf[hostFrom] == '*')
+                ? "0.0.0.0"
+                : new String(buf, hostFrom, hostTo - hostFrom);
+        out.host = (keepScope && scopeTo > scopeFrom) ? host + new String(buf, scopeFrom, scopeTo - scopeFrom) : host;
+        out.port = port;
+        return true;
+    }
+
+    private static boolean regionEquals(char[] buf, int from, int to, String literal, boolean ignoreCase) {
+        if (to - from != literal.length()) return false;
+
+        for (int i = 0; i < literal.length(); i++) {
+            char a = buf[from + i];
+            char b = literal.charAt(i);
+            if (a == b) continue;
+            if (!ignoreCase || Character.toUpperCase(a) != Character.toUpperCase(b)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private void add(int s, int e) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = s;
+        ends[count] = e;
+        count++;
+    }
+}
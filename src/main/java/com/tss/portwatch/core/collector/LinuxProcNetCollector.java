@@ -0,0 +1,500 @@
+package com.tss.portwatch.core.collector;
+
+import com.tss.portwatch.core.exec.CommandRunner;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.SocketKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Linux implementation of {@link ListenerCollector} that reads the kernel socket tables directly.
+ * <p>
+ * Instead of forking {@code ss}, this collector parses:
+ * <ul>
+ *   <li>{@code /proc/net/tcp}  (IPv4 sockets)</li>
+ *   <li>{@code /proc/net/tcp6} (IPv6 sockets)</li>
+ * </ul>
+ * Only rows in LISTEN state ({@code st == 0A}) are kept. Addresses and ports are decoded from the
+ * hexadecimal columns in-process and formatted the same way {@code ss -n} prints them, so the
+ * resulting {@link ListeningSocket} entries are interchangeable with the ones produced by
+ * {@link LinuxSsCollector}.
+ * <p>
+ * Process ownership is resolved by matching the socket inode of each LISTEN row against the
+ * {@code socket:[inode]} links under {@code /proc/<pid>/fd}, which is what {@code ss -p} does.
+ * The walk is delegated to a {@link ProcSocketOwnerResolver} kept for the lifetime of the
+ * collector, so repeated collections only rescan new processes. The executable path is read
+ * from {@code /proc/<pid>/exe}, as {@link LinuxSsCollector} does for the pids {@code ss} reports.
+ * Without root/capabilities, other users' processes cannot be inspected; in that case
+ * ProcessName, ProcessId and Path stay null (same behavior as {@code ss}).
+ * <p>
+ * Note: the interface scope shown by {@code ss} for device-bound sockets (e.g. {@code %lo})
+ * is not exposed by procfs and is therefore not part of the address; {@link LinuxSsCollector}
+ * drops it as well, so both collectors report the same address.
+ */
+public class LinuxProcNetCollector implements ListenerCollector {
+
+    private static final Path PROC = Path.of("/proc");
+    private static final Path TCP4 = PROC.resolve("net").resolve("tcp");
+    private static final Path TCP6 = PROC.resolve("net").resolve("tcp6");
+    private static final Path SOCKSTAT4 = PROC.resolve("net").resolve("sockstat");
+    private static final Path SOCKSTAT6 = PROC.resolve("net").resolve("sockstat6");
+
+    /**
+     * Number of TCP sockets above which walking /proc/net/tcp{,6} costs more than asking the
+     * kernel for listeners only (which is what {@code ss} does through NETLINK_SOCK_DIAG).
+     */
+    public static final long LARGE_TABLE_THRESHOLD = 50_000;
+
+    /**
+     * Number of TCP sockets below which a host that switched to {@code ss} comes back to procfs.
+     * Kept below {@link #LARGE_TABLE_THRESHOLD} so that a table hovering around the threshold does
+     * not make successive runs alternate between the two collectors.
+     */
+    public static final long SMALL_TABLE_THRESHOLD = 40_000;
+
+    /**
+     * Kernel TCP state code for LISTEN (see include/net/tcp_states.h).
+     */
+    private static final String STATE_LISTEN = "0A";
+
+    /**
+     * Socket tables read by this instance (the procfs ones, except in benchmarks).
+     */
+    private final Path tcp4;
+    private final Path tcp6;
+
+    /**
+     * Inode to process resolver; its cache is reused across collections.
+     */
+    private final ProcSocketOwnerResolver owners = new ProcSocketOwnerResolver();
+
+    // -------------------------------------------------------------------------
+    // Row tracking for collectTcpListenerDelta() (null until its first call)
+    // -------------------------------------------------------------------------
+
+    /**
+     * Socket built for each LISTEN row reported so far, by inode.
+     */
+    private Map<Long, ListeningSocket> socketsByInode;
+
+    /**
+     * Rows sharing each endpoint (e.g. SO_REUSEPORT listeners), oldest first.
+     * The last one is the endpoint's current socket.
+     */
+    private Map<SocketKey, List<ListeningSocket>> socketsByKey;
+
+    private long deltaFingerprint = NO_FINGERPRINT;
+
+    /**
+     * Creates a collector reading /proc/net/tcp and /proc/net/tcp6.
+     */
+    public LinuxProcNetCollector() {
+        this(TCP4, TCP6);
+    }
+
+    /**
+     * Creates a collector reading socket tables in procfs format from other files (e.g. recorded
+     * tables). Owners are still resolved from /proc.
+     *
+     * @param tcp4 IPv4 table
+     * @param tcp6 IPv6 table (skipped if not readable)
+     */
+    LinuxProcNetCollector(Path tcp4, Path tcp6) {
+        this.tcp4 = tcp4;
+        this.tcp6 = tcp6;
+    }
+
+    /**
+     * Returns true if the procfs socket tables can be read on this host.
+     * <p>
+     * Used by the CLI to prefer this collector over {@link LinuxSsCollector}.
+     */
+    public static boolean isAvailable() {
+        return Files.isReadable(TCP4);
+    }
+
+    /**
+     * Returns the approximate number of rows in /proc/net/tcp and /proc/net/tcp6, without reading them.
+     * <p>
+     * Based on the counters in /proc/net/sockstat{,6}: sockets in use plus TIME-WAIT sockets,
+     * which procfs lists as well. Returns -1 if the counters cannot be read.
+     */
+    public static long tcpTableSize() {
+        long total = 0;
+        try {
+            for (String line : Files.readAllLines(SOCKSTAT4, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("TCP:")) {
+                    total += sockstatValue(line, "inuse") + sockstatValue(line, "tw");
+                }
+            }
+            if (Files.isReadable(SOCKSTAT6)) {
+                for (String line : Files.readAllLines(SOCKSTAT6, StandardCharsets.US_ASCII)) {
+                    if (line.startsWith("TCP6:")) total += sockstatValue(line, "inuse");
+                }
+            }
+            return total;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Extracts the value following a label in a sockstat line, e.g. "TCP: inuse 4 orphan 0 tw 0".
+     */
+    private static long sockstatValue(String line, String label) {
+        String[] parts = line.trim().split("\\s+");
+        for (int i = 1; i < parts.length - 1; i++) {
+            if (label.equals(parts[i])) {
+                try {
+                    return Long.parseLong(parts[i + 1]);
+                } catch (NumberFormatException ignore) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void collectTcpListeners(Consumer<ListeningSocket> sink) throws Exception {
+        emit(readRows(new TableFingerprint()), sink);
+    }
+
+    /**
+     * Fingerprints the LISTEN rows (local address and inode columns) while reading the tables.
+     * When nothing changed, owner resolution and socket creation are skipped.
+     * <p>
+     * The queue columns are left out of the fingerprint: they change with load without
+     * changing the set of listeners. A new listener always gets a new inode, so the
+     * inode column covers a socket being closed and reopened on the same port.
+     * <p>
+     * Limitation: the owner is not part of the fingerprint. A process that exec()s another
+     * program keeps its sockets, so its rows and the fingerprint stay the same and the new
+     * ProcessName/Path is only reported once some LISTEN row changes. Hashing the pid and start
+     * time would not help (exec keeps both); only comm and exe change, and reading them for
+     * every owner on each poll would cost what the fingerprint saves.
+     */
+    @Override
+    public Collected collectTcpListenersIfChanged(long previousFingerprint) throws Exception {
+        TableFingerprint fp = new TableFingerprint();
+        List<ProcRow> rows = readRows(fp);
+
+        long fingerprint = fp.value();
+        if (fingerprint == previousFingerprint) return new Collected(fingerprint, null);
+
+        List<ListeningSocket> out = new ArrayList<>(rows.size());
+        emit(rows, out::add);
+        return new Collected(fingerprint, out);
+    }
+
+    /**
+     * Tracks LISTEN rows by socket inode between calls.
+     * <p>
+     * A socket keeps its inode for its whole life and a new listener always gets a new one, so
+     * comparing inode sets tells which rows appeared and which vanished. Only new rows are decoded
+     * and have their owner resolved. If the table fingerprint is unchanged, the rows are not even
+     * compared.
+     * <p>
+     * Deltas are reported per endpoint: when one of several rows sharing an endpoint vanishes,
+     * the endpoint is only deleted with its last row; if the vanished row was the endpoint's
+     * current socket, the next most recent one is reported as an upsert instead.
+     * <p>
+     * A process that exec()s keeps its sockets (same inodes), so such an ownership change is
+     * only seen by full collections.
+     */
+    @Override
+    public Delta collectTcpListenerDelta() throws Exception {
+        TableFingerprint fp = new TableFingerprint();
+        List<ProcRow> rows = readRows(fp);
+
+        long fingerprint = fp.value();
+        if (socketsByInode != null && fingerprint == deltaFingerprint) {
+            return new Delta(false, List.of(), List.of(), true);
+        }
+
+        boolean full = (socketsByInode == null);
+        Map<Long, ListeningSocket> known = full ? new HashMap<>() : socketsByInode;
+
+        Set<Long> present = new HashSet<>(rows.size() * 2);
+        List<ProcRow> fresh = new ArrayList<>();
+        for (ProcRow r : rows) {
+            present.add(r.inode);
+            if (!known.containsKey(r.inode)) fresh.add(r);
+        }
+
+        // Build sockets for new rows before touching any state, so a failure leaves it intact.
+        Map<Long, ListeningSocket> created = new LinkedHashMap<>();
+        emitRows(fresh, (r, s) -> created.put(r.inode, s));
+
+        if (full) {
+            socketsByInode = known;
+            socketsByKey = new HashMap<>();
+        }
+        deltaFingerprint = fingerprint;
+
+        List<ListeningSocket> upserts = new ArrayList<>();
+        List<ListeningSocket> deletes = new ArrayList<>();
+
+        // Vanished rows
+        for (Iterator<Map.Entry<Long, ListeningSocket>> it = socketsByInode.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, ListeningSocket> e = it.next();
+            if (present.contains(e.getKey())) continue;
+            it.remove();
+
+            ListeningSocket gone = e.getValue();
+            SocketKey key = SocketKey.tcp(gone.LocalAddress, gone.LocalPort);
+            List<ListeningSocket> sharing = socketsByKey.get(key);
+            boolean wasCurrent = sharing.get(sharing.size() - 1) == gone;
+            sharing.remove(gone);
+
+            if (sharing.isEmpty()) {
+                socketsByKey.remove(key);
+                deletes.add(gone);
+            } else if (wasCurrent) {
+                upserts.add(sharing.get(sharing.size() - 1));
+            }
+        }
+
+        // New rows
+        for (Map.Entry<Long, ListeningSocket> e : created.entrySet()) {
+            ListeningSocket s = e.getValue();
+            socketsByInode.put(e.getKey(), s);
+            socketsByKey.computeIfAbsent(SocketKey.tcp(s.LocalAddress, s.LocalPort), k -> new ArrayList<>(1)).add(s);
+            upserts.add(s);
+        }
+
+        return new Delta(full, upserts, deletes, false);
+    }
+
+    /**
+     * Reads the LISTEN rows of both tables.
+     */
+    private List<ProcRow> readRows(TableFingerprint fp) throws IOException {
+        List<ProcRow> rows = new ArrayList<>();
+        readTable(tcp4, false, rows, fp);
+
+        // IPv6 may be disabled on the host: tcp6 is optional.
+        if (Files.isReadable(tcp6)) {
+            readTable(tcp6, true, rows, fp);
+        }
+        return rows;
+    }
+
+    /**
+     * Decodes each row, resolves its owner and passes the resulting sockets to the sink.
+     */
+    private void emit(List<ProcRow> rows, Consumer<ListeningSocket> sink) throws IOException {
+        emitRows(rows, (r, s) -> sink.accept(s));
+    }
+
+    /**
+     * Same as {@link #emit(List, Consumer)}, also handing over the row each socket comes from.
+     * Rows with malformed columns are skipped.
+     */
+    private void emitRows(List<ProcRow> rows, BiConsumer<ProcRow, ListeningSocket> sink) throws IOException {
+        List<Long> inodes = new ArrayList<>(rows.size());
+        for (ProcRow r : rows) inodes.add(r.inode);
+        Map<Long, ProcSocketOwnerResolver.Owner> resolved = owners.resolve(inodes);
+
+        for (ProcRow r : rows) {
+            ListeningSocket s = new ListeningSocket();
+            try {
+                String hex = r.local.substring(0, r.colon);
+                s.LocalAddress = r.ipv6 ? formatIpv6(decodeAddress(hex)) : formatIpv4(decodeAddress(hex));
+                s.LocalPort = Integer.parseInt(r.local.substring(r.colon + 1), 16);
+            } catch (IllegalArgumentException ignore) {
+                // Malformed hex column: skip the row
+                continue;
+            }
+
+            ProcSocketOwnerResolver.Owner o = resolved.get(r.inode);
+            s.ProcessId = (o == null) ? null : o.pid();
+            s.ProcessName = (o == null) ? null : o.name();
+            s.Path = (o == null) ? null : o.path();
+
+            sink.accept(r, s);
+        }
+    }
+
+    /**
+     * Reads one procfs socket table, appends its LISTEN rows and adds them to the fingerprint.
+     * <p>
+     * Expected columns (header line is skipped):
+     * {@code sl local_address rem_address st tx_queue:rx_queue tr:tm->when retrnsmt uid timeout inode ...}
+     * <p>
+     * The table is streamed through one line buffer and each line is split into offsets by a
+     * {@link FieldTokenizer}: rows in other states, nearly all of a large table, are dropped
+     * without creating any object.
+     */
+    private void readTable(Path table, boolean ipv6, List<ProcRow> out, TableFingerprint fp) throws IOException {
+        try (InputStream in = Files.newInputStream(table)) {
+            CommandRunner.readLines(in, new TableParser(ipv6, out, fp));
+        }
+    }
+
+    /**
+     * Line handler of {@link #readTable}.
+     */
+    private static final class TableParser implements CommandRunner.LineHandler {
+        private final FieldTokenizer tokens = new FieldTokenizer();
+        private final boolean ipv6;
+        private final List<ProcRow> out;
+        private final TableFingerprint fp;
+        private boolean header = true;
+
+        TableParser(boolean ipv6, List<ProcRow> out, TableFingerprint fp) {
+            this.ipv6 = ipv6;
+            this.out = out;
+            this.fp = fp;
+        }
+
+        @Override
+        public void line(char[] buf, int start, int end) {
+            if (header) {
+                header = false;
+                return;
+            }
+
+            tokens.reset(buf, start, end);
+            if (tokens.count() < 10) {
+                // Unexpected, malformed or empty line: ignore to avoid crashing
+                return;
+            }
+
+            if (!tokens.fieldEquals(3, STATE_LISTEN)) return;
+
+            int localFrom = tokens.start(1);
+            int localTo = tokens.end(1);
+            int colon = FieldTokenizer.indexOf(buf, localFrom, localTo, ":");
+            if (colon <= localFrom) return;
+
+            // Malformed inode column: skip the row
+            long inode = FieldTokenizer.parseDecimalLong(buf, tokens.start(9), tokens.end(9));
+            if (inode < 0) return;
+
+            ProcRow r = new ProcRow();
+            r.local = tokens.string(1);
+            r.colon = colon - localFrom;
+            r.ipv6 = ipv6;
+            r.inode = inode;
+            out.add(r);
+
+            long h = TableFingerprint.hash(TableFingerprint.start(), buf, localFrom, localTo);
+            fp.addRow(TableFingerprint.hash(h, buf, tokens.start(9), tokens.end(9)));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Address decoding
+    // -------------------------------------------------------------------------
+
+    /**
+     * Decodes the hexadecimal address column into network-order bytes.
+     * <p>
+     * The kernel prints the address as a sequence of 32-bit words in host byte order
+     * ({@code %08X} of each {@code __be32}), so on little-endian hosts every word
+     * has its bytes reversed.
+     */
+    private static byte[] decodeAddress(String hex) {
+        if (hex.length() != 8 && hex.length() != 32) {
+            throw new IllegalArgumentException("Unexpected address length: " + hex);
+        }
+
+        boolean littleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        byte[] bytes = new byte[hex.length() / 2];
+
+        for (int w = 0; w < bytes.length / 4; w++) {
+            long word = Long.parseLong(hex.substring(w * 8, w * 8 + 8), 16);
+            for (int b = 0; b < 4; b++) {
+                int shift = littleEndian ? (b * 8) : (24 - b * 8);
+                bytes[w * 4 + b] = (byte) (word >>> shift);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Formats an IPv4 address in dotted-decimal notation.
+     */
+    private static String formatIpv4(byte[] a) {
+        return (a[0] & 0xff) + "." + (a[1] & 0xff) + "." + (a[2] & 0xff) + "." + (a[3] & 0xff);
+    }
+
+    /**
+     * Formats an IPv6 address the way {@code inet_ntop} does (and therefore the way {@code ss -n} does):
+     * <ul>
+     *   <li>lowercase hex groups without leading zeros</li>
+     *   <li>the longest run (of at least two) zero groups is compressed to {@code ::}</li>
+     *   <li>IPv4-mapped and IPv4-compatible addresses end in dotted-decimal notation</li>
+     * </ul>
+     */
+    private static String formatIpv6(byte[] a) {
+        int[] words = new int[8];
+        for (int i = 0; i < 8; i++) {
+            words[i] = ((a[i * 2] & 0xff) << 8) | (a[i * 2 + 1] & 0xff);
+        }
+
+        // Find the longest run of zero groups.
+        int bestBase = -1, bestLen = 0;
+        int curBase = -1, curLen = 0;
+        for (int i = 0; i < 8; i++) {
+            if (words[i] == 0) {
+                if (curBase < 0) curBase = i;
+                curLen++;
+                if (curLen > bestLen) {
+                    bestBase = curBase;
+                    bestLen = curLen;
+                }
+            } else {
+                curBase = -1;
+                curLen = 0;
+            }
+        }
+        if (bestLen < 2) bestBase = -1;
+
+        StringBuilder sb = new StringBuilder(40);
+        for (int i = 0; i < 8; i++) {
+            if (bestBase >= 0 && i >= bestBase && i < bestBase + bestLen) {
+                if (i == bestBase) sb.append(':');
+                continue;
+            }
+            if (i != 0) sb.append(':');
+
+            // Embedded IPv4 (::a.b.c.d or ::ffff:a.b.c.d)
+            if (i == 6 && bestBase == 0 && (bestLen == 6 || (bestLen == 5 && words[5] == 0xffff))) {
+                sb.append(a[12] & 0xff).append('.').append(a[13] & 0xff).append('.')
+                        .append(a[14] & 0xff).append('.').append(a[15] & 0xff);
+                return sb.toString();
+            }
+            sb.append(Integer.toHexString(words[i]));
+        }
+        if (bestBase >= 0 && bestBase + bestLen == 8) sb.append(':');
+        return sb.toString();
+    }
+
+    /**
+     * LISTEN row of a procfs socket table. The address column is kept in its raw hexadecimal
+     * form and only decoded by {@link #emit}, so unchanged polls never decode it.
+     */
+    private static class ProcRow {
+        String local;
+        int colon;
+        boolean ipv6;
+        long inode;
+    }
+}
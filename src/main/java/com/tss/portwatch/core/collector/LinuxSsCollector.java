@@ -1,13 +1,16 @@
 package com.tss.portwatch.core.collector;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tss.portwatch.core.exec.CommandRunner;
 import com.tss.portwatch.core.model.ListeningSocket;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Linux implementation of ListenerCollector.
@@ -23,7 +26,15 @@ import java.util.regex.Pattern;
  * -H : no header
  * <p>
  * Note: on systems where process inspection is restricted, 'ss' may omit the "users:(...)" block.
- * In that case, ProcessName and ProcessId will be null.
+ * In that case, ProcessName, ProcessId and Path will be null.
+ * <p>
+ * {@code ss} does not print the executable path; it is read from {@code /proc/<pid>/exe} as
+ * {@link LinuxProcNetCollector} does, so both collectors report the same fields and switching
+ * between them does not show up as changes.
+ * <p>
+ * {@code ss} queries the kernel through NETLINK_SOCK_DIAG with a LISTEN state filter, so only
+ * listeners are copied to user space. On hosts with very large connection tables this is cheaper
+ * than {@link LinuxProcNetCollector}, which has to read every row of /proc/net/tcp{,6}.
  */
 public class LinuxSsCollector implements ListenerCollector {
 
@@ -33,25 +44,60 @@ public class LinuxSsCollector implements ListenerCollector {
      * LISTEN 0 4096 127.0.0.53%lo:53 0.0.0.0:* users:(("systemd-resolve",pid=725,fd=13))
      * LISTEN 0 4096 [::1]:631 [::]:* users:(("cupsd",pid=1234,fd=7))
      * <p>
-     * This regex extracts process name and pid from the "users:(())" block.
-     * If multiple processes are reported, only the first match is used.
+     * Process name and pid are extracted from the "users:(())" block, which starts with this prefix.
+     * If multiple processes are reported, only the first one is used.
      */
-    private static final Pattern USERS_PATTERN =
-            Pattern.compile("users:\\(\\(\"(?<name>[^\"]+)\",pid=(?<pid>\\d+),fd=\\d+\\)\\)");
+    private static final String USERS_PREFIX = "users:((\"";
 
     /**
-     * Local ObjectMapper used to serialize the collected sockets to JSON.
+     * Returns true if an executable {@code ss} binary is found on the PATH.
      */
-    private static final ObjectMapper OM = new ObjectMapper();
+    public static boolean isAvailable() {
+        String path = System.getenv("PATH");
+        if (path == null || path.isBlank()) return false;
+
+        for (String dir : path.split(File.pathSeparator)) {
+            if (dir.isBlank()) continue;
+            if (Files.isExecutable(Path.of(dir, "ss"))) return true;
+        }
+        return false;
+    }
 
     @Override
-    public String collectTcpListenersJson() throws Exception {
+    public void collectTcpListeners(Consumer<ListeningSocket> sink) throws Exception {
+        // Output is parsed line by line while ss is still running.
+        runSs(new SsLineParser(sink));
+    }
+
+    /**
+     * Records the ss output and fingerprints it; lines are only parsed if the fingerprint changed.
+     * <p>
+     * The Recv-Q and Send-Q columns are left out of the fingerprint: for listeners they hold
+     * the current and maximum accept queue, which vary with load.
+     */
+    @Override
+    public Collected collectTcpListenersIfChanged(long previousFingerprint) throws Exception {
+        RecordedLines recorded = new RecordedLines(new SsRowHasher());
+        runSs(recorded);
+
+        long fingerprint = recorded.fingerprint();
+        if (fingerprint == previousFingerprint) return new Collected(fingerprint, null);
+
+        List<ListeningSocket> out = new ArrayList<>();
+        recorded.replay(new SsLineParser(out::add));
+        return new Collected(fingerprint, out);
+    }
+
+    /**
+     * Runs ss and hands each output line to the handler.
+     */
+    private static void runSs(CommandRunner.LineHandler handler) throws Exception {
         // -l : listening
         // -n : numeric
         // -t : TCP
         // -p : include process info (may be restricted without permissions)
         // -H : no header
-        var result = CommandRunner.run(List.of("ss", "-lntpHn"));
+        var result = CommandRunner.streamLines(List.of("ss", "-lntpHn"), handler);
 
         // Non-zero exit code usually means a real execution problem
         // (missing binary, permissions, etc.)
@@ -60,120 +106,107 @@ public class LinuxSsCollector implements ListenerCollector {
                     "ss failed: " + result.exitCode() + "\n" + result.stderr()
             );
         }
+    }
+
+    /**
+     * Hashes an ss line without its Recv-Q and Send-Q columns (fields 1 and 2).
+     */
+    private static final class SsRowHasher implements RecordedLines.RowHasher {
+        private final FieldTokenizer tokens = new FieldTokenizer();
+
+        @Override
+        public long hash(char[] buf, int start, int end) {
+            tokens.reset(buf, start, end);
+            if (tokens.count() < 4) return TableFingerprint.hash(TableFingerprint.start(), buf, start, end);
 
-        List<ListeningSocket> rows = parseSsOutput(result.stdout());
-        return OM.writeValueAsString(rows);
+            long h = TableFingerprint.hash(TableFingerprint.start(), buf, tokens.start(0), tokens.end(0));
+            return TableFingerprint.hash(h, buf, tokens.start(3), end);
+        }
     }
 
     /**
-     * Parses the output of the 'ss' command into domain objects.
+     * Parses the output of the 'ss' command into domain objects, one line at a time.
      * <p>
      * Expected columns for "ss -lntpHn" (typical):
      * STATE REC-Q SEND-Q LOCAL_ADDRESS:PORT PEER_ADDRESS:PORT ...
      * <p>
-     * LOCAL_ADDRESS:PORT is taken from parts[3].
+     * LOCAL_ADDRESS:PORT is taken from field 3. The interface scope of device-bound sockets
+     * ({@code 127.0.0.53%lo}) is dropped so that addresses match those of {@link LinuxProcNetCollector}.
+     * Each line is scanned once with a {@link FieldTokenizer}; only the address and process name
+     * become Strings.
      */
-    private List<ListeningSocket> parseSsOutput(String stdout) {
+    static final class SsLineParser implements CommandRunner.LineHandler {
+        private final FieldTokenizer tokens = new FieldTokenizer();
+        private final FieldTokenizer.Endpoint endpoint = new FieldTokenizer.Endpoint();
+        private final Consumer<ListeningSocket> out;
 
-        List<ListeningSocket> out = new ArrayList<>();
-        if (stdout == null || stdout.isBlank()) return out;
+        // Executable path per pid, read once per collection (null when it cannot be read).
+        private final Map<Integer, String> exePaths = new HashMap<>();
 
-        String[] lines = stdout.split("\\R");
-        for (String raw : lines) {
-            String line = raw.trim();
-            if (line.isEmpty()) continue;
+        SsLineParser(Consumer<ListeningSocket> out) {
+            this.out = out;
+        }
 
+        @Override
+        public void line(char[] buf, int start, int end) {
             // Typical structure:
             // STATE REC-Q SEND-Q LOCAL_ADDRESS:PORT PEER_ADDRESS:PORT ...
-            String[] parts = line.split("\\s+");
-            if (parts.length < 5) {
+            tokens.reset(buf, start, end);
+            if (tokens.count() < 5) {
                 // Unexpected or malformed line: ignore to avoid crashing
-                continue;
+                return;
             }
 
-            // LOCAL_ADDRESS:PORT
-            String local = parts[3];
-            HostPort hp = parseHostPort(local);
-            if (hp == null) continue;
+            // LOCAL_ADDRESS:PORT, without the interface scope, which procfs cannot report
+            if (!FieldTokenizer.parseEndpoint(buf, tokens.start(3), tokens.end(3), endpoint, false)) return;
 
             ListeningSocket row = new ListeningSocket();
-            row.LocalAddress = hp.host;
-            row.LocalPort = hp.port;
+            row.LocalAddress = endpoint.host;
+            row.LocalPort = endpoint.port;
 
             // Extract process info if available (may be missing without permissions)
-            Matcher m = USERS_PATTERN.matcher(line);
-            if (m.find()) {
-                row.ProcessName = m.group("name");
-                row.ProcessId = safeParseInt(m.group("pid"));
-            } else {
-                row.ProcessName = null;
-                row.ProcessId = null;
-            }
+            row.ProcessName = null;
+            row.ProcessId = null;
+            parseUsers(buf, tokens.end(4), end, row);
 
-            // Executable path is not reliably available without elevated privileges
-            row.Path = null;
+            // Executable path, as procfs reports it (null without permission on the process)
+            row.Path = (row.ProcessId == null) ? null : exePath(row.ProcessId);
 
-            out.add(row);
+            out.accept(row);
         }
-        return out;
-    }
 
-    /**
-     * Parses host and port from the LOCAL_ADDRESS field of ss output.
-     * <p>
-     * Examples:
-     * 127.0.0.53%lo:53
-     * 127.0.0.1:631
-     * [::1]:631
-     * [::ffff:127.0.0.1]:63342
-     * *:22
-     * <p>
-     * Note: the host part may include a scope (e.g., "%lo"); it is preserved for traceability.
-     */
-    private HostPort parseHostPort(String local) {
-        if (local == null || local.isBlank()) return null;
-
-        String s = local.trim();
-
-        // Remove IPv6 brackets if present: [::1]:631 -> ::1:631
-        if (s.startsWith("[") && s.contains("]")) {
-            s = s.substring(1, s.indexOf(']')) + s.substring(s.indexOf(']') + 1);
+        /**
+         * Returns the executable path of a process, reading each pid's /proc/&lt;pid&gt;/exe once.
+         */
+        private String exePath(int pid) {
+            if (exePaths.containsKey(pid)) return exePaths.get(pid);
+            String path = ProcSocketOwnerResolver.readExe(pid);
+            exePaths.put(pid, path);
+            return path;
         }
 
-        // Port is after the LAST ':' (IPv6 contains multiple ':')
-        int idx = s.lastIndexOf(':');
-        if (idx <= 0 || idx >= s.length() - 1) return null;
+        /**
+         * Reads the first ("name",pid=N,fd=N) entry of the users:((...)) block, if present.
+         */
+        private void parseUsers(char[] buf, int from, int end, ListeningSocket row) {
+            int idx = FieldTokenizer.indexOf(buf, from, end, USERS_PREFIX);
+            if (idx < 0) return;
 
-        String host = s.substring(0, idx);
-        if ("*".equals(host)) host = "0.0.0.0";
+            int nameStart = idx + USERS_PREFIX.length();
+            int nameEnd = nameStart;
+            while (nameEnd < end && buf[nameEnd] != '"') nameEnd++;
+            if (nameEnd == nameStart || !FieldTokenizer.startsWith(buf, nameEnd, end, "\",pid=")) return;
 
-        String portStr = s.substring(idx + 1);
+            int pidStart = nameEnd + "\",pid=".length();
+            int pidEnd = pidStart;
+            while (pidEnd < end && buf[pidEnd] >= '0' && buf[pidEnd] <= '9') pidEnd++;
+            if (!FieldTokenizer.startsWith(buf, pidEnd, end, ",fd=")) return;
 
-        Integer port = safeParseInt(portStr);
-        if (port == null) return null;
+            int pid = FieldTokenizer.parseDecimal(buf, pidStart, pidEnd);
+            if (pid < 0) return;
 
-        HostPort hp = new HostPort();
-        hp.host = host;
-        hp.port = port;
-        return hp;
-    }
-
-    /**
-     * Safe integer parsing. Returns null on failure instead of throwing.
-     */
-    private Integer safeParseInt(String s) {
-        try {
-            return Integer.parseInt(s);
-        } catch (Exception ignore) {
-            return null;
+            row.ProcessName = new String(buf, nameStart, nameEnd - nameStart);
+            row.ProcessId = pid;
         }
     }
-
-    /**
-     * Simple DTO for a host + port pair.
-     */
-    private static class HostPort {
-        String host;
-        int port;
-    }
 }
@@ -1,5 +1,12 @@
 package com.tss.portwatch.core.collector;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tss.portwatch.core.model.ListeningSocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * Strategy interface for collecting TCP listening sockets.
  *
@@ -8,23 +15,127 @@ package com.tss.portwatch.core.collector;
  * (PowerShell, ss, lsof, etc).
  *
  * Implementations are responsible for:
- *  - Executing the appropriate OS-specific command
+ *  - Executing the appropriate OS-specific command (or reading the OS tables)
  *  - Parsing its output
- *  - Returning a JSON representation of the listening sockets
+ *  - Handing each listening socket to the caller as a {@link ListeningSocket}
  *
- * The JSON format must be compatible with List<ListeningSocket> so it can be
- * deserialized by the core application using Jackson.
+ * Sockets are streamed into a sink as they are parsed, so the core application
+ * never needs an intermediate representation (such as a JSON string) between
+ * the collector and the diff engine.
  */
 public interface ListenerCollector {
 
+    /**
+     * Fingerprint value meaning "not computed". It never equals a real table fingerprint,
+     * so passing it to {@link #collectTcpListenersIfChanged(long)} always forces a collection.
+     */
+    long NO_FINGERPRINT = 0L;
+
+    /**
+     * Collects the current set of TCP listening sockets and passes each one to the sink.
+     *
+     * @param sink receives one {@link ListeningSocket} per listening endpoint
+     * @throws Exception if the underlying command fails or output cannot be parsed
+     */
+    void collectTcpListeners(Consumer<ListeningSocket> sink) throws Exception;
+
+    /**
+     * Collects the current set of TCP listening sockets into a list.
+     *
+     * @return listening sockets (never null)
+     * @throws Exception if the underlying command fails or output cannot be parsed
+     */
+    default List<ListeningSocket> collectTcpListeners() throws Exception {
+        List<ListeningSocket> out = new ArrayList<>();
+        collectTcpListeners(out::add);
+        return out;
+    }
+
     /**
      * Collects the current set of TCP listening sockets and returns them
      * as a JSON array.
      *
-     * The returned JSON must represent a List<ListeningSocket>.
+     * Compatibility adapter for callers of the former JSON-based contract;
+     * the application itself uses {@link #collectTcpListeners(Consumer)}.
      *
      * @return JSON array of listening sockets
      * @throws Exception if the underlying command fails or output cannot be parsed
      */
-    String collectTcpListenersJson() throws Exception;
+    default String collectTcpListenersJson() throws Exception {
+        return new ObjectMapper().writeValueAsString(collectTcpListeners());
+    }
+
+    /**
+     * Collects the current TCP listening sockets only if the raw listener table changed.
+     * <p>
+     * Collectors that support change detection compute a cheap 64-bit fingerprint of the
+     * raw table (procfs rows or command output) before parsing it. When the fingerprint equals
+     * {@code previousFingerprint}, parsing and owner resolution are skipped and the result
+     * carries no sockets.
+     * <p>
+     * The default implementation has no fingerprint and always collects.
+     *
+     * @param previousFingerprint fingerprint returned by the previous call, or {@link #NO_FINGERPRINT}
+     * @return fingerprint of the current table plus the sockets, or no sockets if unchanged
+     * @throws Exception if the underlying command fails or output cannot be parsed
+     */
+    default Collected collectTcpListenersIfChanged(long previousFingerprint) throws Exception {
+        return new Collected(NO_FINGERPRINT, collectTcpListeners());
+    }
+
+    /**
+     * Result of {@link #collectTcpListenersIfChanged(long)}.
+     *
+     * @param fingerprint fingerprint of the raw listener table, or {@link #NO_FINGERPRINT} if unsupported
+     * @param sockets     listening sockets, or null when the table is unchanged
+     */
+    record Collected(long fingerprint, List<ListeningSocket> sockets) {
+
+        /**
+         * @return true if the fingerprint matched the previous one and nothing was parsed
+         */
+        public boolean unchanged() {
+            return sockets == null;
+        }
+    }
+
+    /**
+     * Reports per-endpoint changes since the previous call on this collector instance.
+     * <p>
+     * Collectors that can tell cheaply which rows of the listener table appeared or vanished
+     * (e.g. by socket inode) track the table between calls and only build sockets for new rows.
+     * The result is meant for {@link com.tss.portwatch.core.diff.IncrementalComparator#apply}.
+     * <p>
+     * The first call on an instance returns a full delta: {@code upserts} then holds every socket
+     * and must replace the caller's state rather than be merged into it.
+     * <p>
+     * The default implementation does not track rows and returns null; callers then fall back
+     * to {@link #collectTcpListenersIfChanged(long)}.
+     *
+     * @return changes since the previous call, or null if unsupported
+     * @throws Exception if the underlying command fails or output cannot be parsed
+     */
+    default Delta collectTcpListenerDelta() throws Exception {
+        return null;
+    }
+
+    /**
+     * Result of {@link #collectTcpListenerDelta()}.
+     *
+     * @param full      true if {@code upserts} is a full collection rather than a change set
+     * @param upserts   sockets that appeared, or whose endpoint now has another owner
+     * @param deletes   sockets whose endpoint is no longer listening
+     * @param unchanged true if the table fingerprint matched the previous call and no row was
+     *                  compared; rows changing without affecting any endpoint (e.g. one of several
+     *                  rows sharing an endpoint closing) give an empty delta that is not unchanged
+     */
+    record Delta(boolean full, List<ListeningSocket> upserts, List<ListeningSocket> deletes, boolean unchanged) {
+
+        /**
+         * @return true if nothing changed since the previous call
+         */
+        public boolean isEmpty() {
+            return !full && upserts.isEmpty() && deletes.isEmpty();
+        }
+    }
 }
@@ -1,11 +1,11 @@
 package com.tss.portwatch.core.collector;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tss.portwatch.core.exec.CommandRunner;
 import com.tss.portwatch.core.model.ListeningSocket;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * macOS implementation of {@link ListenerCollector}.
@@ -13,8 +13,8 @@ import java.util.List;
  * Uses the native {@code lsof} command to list TCP sockets in LISTEN state:
  * {@code lsof -nP -iTCP -sTCP:LISTEN}
  * <p>
- * The command output is parsed into {@link ListeningSocket} entries and then serialized
- * back to JSON so the rest of the application can treat all collectors uniformly.
+ * The command output is parsed into {@link ListeningSocket} entries that are handed
+ * to the caller's sink as soon as each line is parsed.
  * <p>
  * Notes:
  * <ul>
@@ -26,35 +26,56 @@ import java.util.List;
 public class MacOsLsofCollector implements ListenerCollector {
 
     /**
-     * Local ObjectMapper used to serialize the collected sockets to JSON.
-     * This keeps the collector self-contained.
+     * Executes {@code lsof} and passes each detected listener to the sink.
+     *
+     * @param sink receives one entry per listening endpoint
+     * @throws Exception if {@code lsof} fails or returns a non-zero exit code
      */
-    private static final ObjectMapper OM = new ObjectMapper();
+    @Override
+    public void collectTcpListeners(Consumer<ListeningSocket> sink) throws Exception {
+        // Output is parsed into domain objects line by line while lsof is still running.
+        runLsof(new LsofLineParser(sink));
+    }
 
     /**
-     * Executes {@code lsof} and returns a JSON array with the detected listeners.
-     *
-     * @return JSON array where each element matches the ListeningSocket structure
-     * @throws Exception if {@code lsof} fails or returns a non-zero exit code
+     * Records the lsof output and fingerprints it; lines are only parsed if the fingerprint changed.
+     * <p>
+     * The whole line is hashed: lsof prints no load-dependent columns for listeners
+     * ({@code SIZE/OFF} is always {@code 0t0}).
      */
     @Override
-    public String collectTcpListenersJson() throws Exception {
+    public Collected collectTcpListenersIfChanged(long previousFingerprint) throws Exception {
+        RecordedLines recorded = new RecordedLines((buf, start, end) ->
+                TableFingerprint.hash(TableFingerprint.start(), buf, start, end));
+        runLsof(recorded);
+
+        long fingerprint = recorded.fingerprint();
+        if (fingerprint == previousFingerprint) return new Collected(fingerprint, null);
+
+        List<ListeningSocket> out = new ArrayList<>();
+        recorded.replay(new LsofLineParser(out::add));
+        return new Collected(fingerprint, out);
+    }
+
+    /**
+     * Runs lsof and hands each output line to the handler.
+     */
+    private static void runLsof(CommandRunner.LineHandler handler) throws Exception {
         /*
          * -n : no DNS
          * -P : numeric ports
          * -iTCP : TCP sockets
          * -sTCP:LISTEN : only LISTEN state
          */
-        var result = CommandRunner.run(List.of("lsof", "-nP", "-iTCP", "-sTCP:LISTEN"));
+        var result = CommandRunner.streamLines(
+                List.of("lsof", "-nP", "-iTCP", "-sTCP:LISTEN"),
+                handler
+        );
 
         // Non-zero exit code indicates the command failed (missing binary, permissions, etc.).
         if (result.exitCode() != 0) {
             throw new RuntimeException("lsof failed: " + result.exitCode() + "\n" + result.stderr());
         }
-
-        // Parse lsof stdout into domain objects and serialize as JSON array.
-        List<ListeningSocket> rows = parseLsof(result.stdout());
-        return OM.writeValueAsString(rows);
     }
 
     /**
@@ -71,32 +92,36 @@ public class MacOsLsofCollector implements ListenerCollector {
      * </ul>
      * <p>
      * The parser is tolerant to spacing differences by splitting on whitespace and
-     * extracting the last tokens that represent the NAME field.
+     * extracting the last tokens that represent the NAME field. Each line is scanned once
+     * with a {@link FieldTokenizer}; only the address and command name become Strings.
      */
-    private List<ListeningSocket> parseLsof(String stdout) {
-        List<ListeningSocket> out = new ArrayList<>();
-        if (stdout == null || stdout.isBlank()) return out;
+    static final class LsofLineParser implements CommandRunner.LineHandler {
+        private static final String LISTEN = "(LISTEN)";
 
-        String[] lines = stdout.split("\\R");
-        boolean first = true;
+        private final FieldTokenizer tokens = new FieldTokenizer();
+        private final FieldTokenizer.Endpoint endpoint = new FieldTokenizer.Endpoint();
+        private final Consumer<ListeningSocket> out;
+        private boolean first = true;
 
-        for (String raw : lines) {
-            String line = raw.trim();
-            if (line.isEmpty()) continue;
+        LsofLineParser(Consumer<ListeningSocket> out) {
+            this.out = out;
+        }
+
+        @Override
+        public void line(char[] buf, int start, int end) {
+            tokens.reset(buf, start, end);
+            int n = tokens.count();
+            if (n == 0) return;
 
             // Skip header line: "COMMAND PID USER FD TYPE DEVICE SIZE/OFF NODE NAME"
             if (first) {
                 first = false;
-                if (line.toUpperCase().startsWith("COMMAND ")) continue;
+                if (n > 1 && tokens.fieldEqualsIgnoreCase(0, "COMMAND")) return;
             }
 
             // Example:
             //   ControlCe  123 user  ...  TCP 127.0.0.1:631 (LISTEN)
-            String[] parts = line.split("\\s+");
-            if (parts.length < 2) continue;
-
-            String command = parts[0];
-            Integer pid = safeParseInt(parts[1]);
+            if (n < 2) return;
 
             /*
              * In macOS lsof output, "(LISTEN)" is typically a separate token.
@@ -106,104 +131,49 @@ public class MacOsLsofCollector implements ListenerCollector {
              *  - if last token is "(LISTEN)", host:port is the token before it
              *  - otherwise, fallback to the last token (defensive)
              */
-            String name;
-            if ("(LISTEN)".equals(parts[parts.length - 1])) {
-                name = parts[parts.length - 2];
-            } else {
-                name = parts[parts.length - 1];
-            }
+            int name = tokens.fieldEquals(n - 1, LISTEN) ? n - 2 : n - 1;
+            if (!parseHostPortFromName(buf, tokens.start(name), tokens.end(name))) return;
 
-            HostPort hp = parseHostPortFromName(name);
-            if (hp == null) continue;
+            int pid = tokens.parseInt(1);
 
             ListeningSocket row = new ListeningSocket();
-            row.LocalAddress = hp.host;
-            row.LocalPort = hp.port;
-            row.ProcessName = command;
-            row.ProcessId = pid;
+            row.LocalAddress = endpoint.host;
+            row.LocalPort = endpoint.port;
+            row.ProcessName = tokens.string(0);
+            row.ProcessId = (pid < 0) ? null : pid;
 
             // Path is not collected on macOS in this implementation.
             row.Path = null;
 
-            out.add(row);
+            out.accept(row);
         }
 
-        return out;
-    }
-
-    /**
-     * Extracts host and port from the last part of the lsof NAME column.
-     * <p>
-     * Typical inputs:
-     * <ul>
-     *   <li>{@code *:631}</li>
-     *   <li>{@code 127.0.0.1:8080}</li>
-     *   <li>{@code [::1]:631}</li>
-     * </ul>
-     * <p>
-     * Normalizations:
-     * <ul>
-     *   <li>{@code *} becomes {@code 0.0.0.0} (all interfaces)</li>
-     *   <li>IPv6 brackets are removed before parsing</li>
-     * </ul>
-     *
-     * @param name extracted NAME token from lsof output
-     * @return host/port pair, or null if parsing fails
-     */
-    private HostPort parseHostPortFromName(String name) {
-        if (name == null || name.isBlank()) return null;
-
-        String s = name.trim();
-
-        // Defensive: remove trailing "(LISTEN)" if it arrives attached.
-        if (s.endsWith("(LISTEN)")) {
-            s = s.substring(0, s.length() - "(LISTEN)".length()).trim();
-        }
-
-        // Defensive: if "->" appears, keep only the local endpoint.
-        int arrow = s.indexOf("->");
-        if (arrow >= 0) s = s.substring(0, arrow).trim();
-
-        // IPv6 is usually displayed as [::1]:631. Remove brackets.
-        if (s.startsWith("[") && s.contains("]")) {
-            int end = s.indexOf(']');
-            s = s.substring(1, end) + s.substring(end + 1);
-        }
-
-        // Port is substring after the last ':'.
-        int idx = s.lastIndexOf(':');
-        if (idx <= 0 || idx >= s.length() - 1) return null;
-
-        String host = s.substring(0, idx);
-        if ("*".equals(host)) host = "0.0.0.0";
-
-        String portStr = s.substring(idx + 1);
-        Integer port = safeParseInt(portStr);
-        if (port == null) return null;
+        /**
+         * Extracts host and port from the last part of the lsof NAME column into {@link #endpoint}.
+         * <p>
+         * Typical inputs:
+         * <ul>
+         *   <li>{@code *:631}</li>
+         *   <li>{@code 127.0.0.1:8080}</li>
+         *   <li>{@code [::1]:631}</li>
+         * </ul>
+         * <p>
+         * Normalizations are those of {@link FieldTokenizer#parseEndpoint}
+         * ({@code *} becomes {@code 0.0.0.0}, IPv6 brackets are removed).
+         *
+         * @return true if parsing succeeded
+         */
+        private boolean parseHostPortFromName(char[] buf, int from, int to) {
+            // Defensive: remove trailing "(LISTEN)" if it arrives attached.
+            if (FieldTokenizer.endsWith(buf, from, to, LISTEN)) {
+                to -= LISTEN.length();
+            }
 
-        HostPort hp = new HostPort();
-        hp.host = host;
-        hp.port = port;
-        return hp;
-    }
+            // Defensive: if "->" appears, keep only the local endpoint.
+            int arrow = FieldTokenizer.indexOf(buf, from, to, "->");
+            if (arrow >= 0) to = arrow;
 
-    /**
-     * Parses an integer safely. Returns null if parsing fails.
-     * Used for PID and port parsing to keep the collector tolerant to unexpected formats.
-     */
-    private Integer safeParseInt(String s) {
-        try {
-            return Integer.parseInt(s);
-        } catch (Exception ignore) {
-            return null;
+            return FieldTokenizer.parseEndpoint(buf, from, to, endpoint);
         }
     }
-
-    /**
-     * Simple DTO holding a host and port pair.
-     */
-    private static class HostPort {
-        String host;
-        int port;
-    }
 }
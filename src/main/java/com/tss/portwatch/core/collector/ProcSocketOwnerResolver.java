@@ -0,0 +1,298 @@
+package com.tss.portwatch.core.collector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves Linux socket inodes to the process that owns them.
+ * <p>
+ * The only way to map a socket inode to a process is to walk the {@code /proc/<pid>/fd}
+ * symlinks of every process, which is expensive on busy hosts (thousands of processes,
+ * hundreds of thousands of descriptors). This resolver keeps the socket inodes seen
+ * in each process between calls, keyed by (pid, process start time):
+ * <ul>
+ *   <li>processes whose start time is unchanged are answered from the cache, after checking
+ *       with a single {@code readlink} that the cached descriptor still points to the socket
+ *       (the process may have closed it and reused the number); a stale entry is rescanned</li>
+ *   <li>only new PIDs (or PIDs reused by a new process) have their fd table scanned</li>
+ *   <li>cached processes are rescanned only if some requested inode is still unresolved,
+ *       since a long-running process may have opened a new listener</li>
+ *   <li>inodes still unresolved after such a full rescan (sockets of processes that cannot be
+ *       inspected, typically when not running as root) are remembered and no longer trigger
+ *       rescans while they are requested; new processes are still checked for them</li>
+ *   <li>scanning stops as soon as every requested inode is resolved</li>
+ * </ul>
+ * <p>
+ * The process start time is field 22 of {@code /proc/<pid>/stat} (in clock ticks since boot),
+ * which together with the PID identifies a process instance.
+ * <p>
+ * Processes that cannot be inspected (permissions, process exited during the walk) are
+ * skipped silently, so some inodes may stay unresolved. Instances are not thread-safe.
+ */
+final class ProcSocketOwnerResolver {
+
+    private static final Path PROC = Path.of("/proc");
+
+    /**
+     * Prefix of the symlink target of a socket file descriptor: "socket:[12345]".
+     */
+    private static final String SOCKET_LINK_PREFIX = "socket:[";
+
+    /**
+     * Index of the starttime field counted from the state field (field 3) of /proc/&lt;pid&gt;/stat.
+     */
+    private static final int STARTTIME_INDEX = 22 - 3;
+
+    /**
+     * Socket inodes held by each known process instance, keyed by PID.
+     */
+    private final Map<Integer, ProcEntry> cache = new HashMap<>();
+
+    /**
+     * Requested inodes that a rescan of every known process could not resolve.
+     */
+    private final Set<Long> unresolvable = new HashSet<>();
+
+    /**
+     * Resolves the owner of each requested socket inode.
+     * <p>
+     * If several processes share a socket (e.g. after fork), the first one found wins,
+     * with cached processes visited in ascending PID order.
+     *
+     * @param inodes socket inodes to resolve
+     * @return owners keyed by inode; unresolved inodes are absent
+     * @throws IOException if /proc cannot be listed
+     */
+    Map<Long, Owner> resolve(Collection<Long> inodes) throws IOException {
+        Map<Long, Owner> owners = new HashMap<>();
+        Set<Long> remaining = new HashSet<>(inodes);
+        if (remaining.isEmpty()) return owners;
+        unresolvable.retainAll(remaining);
+
+        List<Integer> pids = listPids();
+        List<ProcEntry> fresh = new ArrayList<>();
+        Set<Integer> live = new HashSet<>(pids.size() * 2);
+
+        // Pass 1: validate cached process instances and answer from the cache.
+        for (int pid : pids) {
+            long startTime = readStartTime(pid);
+            if (startTime < 0) continue;
+            live.add(pid);
+
+            ProcEntry e = cache.get(pid);
+            if (e == null || e.startTime != startTime) {
+                fresh.add(new ProcEntry(pid, startTime));
+            } else if (!claimVerified(e, remaining, owners)) {
+                scan(e);
+                claim(e, remaining, owners);
+            }
+        }
+        cache.keySet().retainAll(live);
+
+        // Pass 2: scan only processes that are new since the last call.
+        for (ProcEntry e : fresh) {
+            if (remaining.isEmpty()) break;
+            scan(e);
+            cache.put(e.pid, e);
+            claim(e, remaining, owners);
+        }
+
+        // Pass 3: a known process may have opened a new listener; rescan until resolved.
+        // Inodes a previous rescan could not resolve do not trigger it again.
+        if (!unresolvable.containsAll(remaining)) {
+            for (int pid : pids) {
+                if (remaining.isEmpty()) break;
+                ProcEntry e = cache.get(pid);
+                if (e == null || e.scanned) continue;
+                scan(e);
+                claim(e, remaining, owners);
+            }
+            unresolvable.addAll(remaining);
+        }
+
+        for (ProcEntry e : cache.values()) e.scanned = false;
+        return owners;
+    }
+
+    /**
+     * Assigns every still-unresolved inode held by the process to that process.
+     */
+    private void claim(ProcEntry e, Set<Long> remaining, Map<Long, Owner> owners) {
+        Owner owner = null;
+        for (long inode : e.socketInodes) {
+            if (!remaining.remove(inode)) continue;
+
+            // Name and path are read lazily: exec() changes them without changing the start time.
+            if (owner == null) owner = new Owner(e.pid, readComm(e.pid), readExe(e.pid));
+            owners.put(inode, owner);
+        }
+    }
+
+    /**
+     * Same as {@link #claim}, for an entry scanned during an earlier call: the descriptor of each
+     * inode is read again before the inode is assigned.
+     *
+     * @return false (and nothing claimed) if a descriptor no longer points to its cached inode
+     */
+    private boolean claimVerified(ProcEntry e, Set<Long> remaining, Map<Long, Owner> owners) {
+        Path fdDir = null;
+        for (int i = 0; i < e.socketInodes.length; i++) {
+            if (!remaining.contains(e.socketInodes[i])) continue;
+
+            if (fdDir == null) fdDir = PROC.resolve(Integer.toString(e.pid)).resolve("fd");
+            if (socketInode(fdDir.resolve(Integer.toString(e.socketFds[i]))) != e.socketInodes[i]) return false;
+        }
+        claim(e, remaining, owners);
+        return true;
+    }
+
+    /**
+     * Reads the socket inodes currently held by a process from its fd directory.
+     */
+    private void scan(ProcEntry e) {
+        List<Long> found = new ArrayList<>();
+        List<Integer> foundFds = new ArrayList<>();
+        Path fdDir = PROC.resolve(Integer.toString(e.pid)).resolve("fd");
+
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(fdDir)) {
+            for (Path fd : fds) {
+                long inode = socketInode(fd);
+                if (inode < 0) continue;
+                try {
+                    foundFds.add(Integer.parseInt(fd.getFileName().toString()));
+                    found.add(inode);
+                } catch (NumberFormatException ignore) {
+                    // Not a descriptor entry
+                }
+            }
+        } catch (IOException | SecurityException ignore) {
+            // Not allowed to inspect this process, or it exited meanwhile
+        }
+
+        long[] inodes = new long[found.size()];
+        int[] fdNumbers = new int[inodes.length];
+        for (int i = 0; i < inodes.length; i++) {
+            inodes[i] = found.get(i);
+            fdNumbers[i] = foundFds.get(i);
+        }
+        e.socketInodes = inodes;
+        e.socketFds = fdNumbers;
+        e.scanned = true;
+    }
+
+    /**
+     * Lists numeric entries of /proc (one per process), sorted ascending.
+     */
+    private List<Integer> listPids() throws IOException {
+        List<Integer> pids = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(PROC)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                if (name.isEmpty() || !Character.isDigit(name.charAt(0))) continue;
+                try {
+                    pids.add(Integer.parseInt(name));
+                } catch (NumberFormatException ignore) {
+                    // Not a process directory
+                }
+            }
+        }
+        pids.sort(null);
+        return pids;
+    }
+
+    /**
+     * Reads the process start time from /proc/&lt;pid&gt;/stat, or -1 if unavailable.
+     * <p>
+     * The command name (field 2) is wrapped in parentheses and may itself contain spaces
+     * or parentheses, so fields are counted from the last ')'.
+     */
+    private long readStartTime(int pid) {
+        try {
+            String stat = Files.readString(PROC.resolve(Integer.toString(pid)).resolve("stat"), StandardCharsets.UTF_8);
+            int close = stat.lastIndexOf(')');
+            if (close < 0) return -1;
+
+            String[] fields = stat.substring(close + 1).trim().split(" ");
+            if (fields.length <= STARTTIME_INDEX) return -1;
+            return Long.parseLong(fields[STARTTIME_INDEX]);
+        } catch (Exception ignore) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the socket inode an fd symlink points to, or -1 if it is not a socket.
+     */
+    private long socketInode(Path fd) {
+        try {
+            String target = Files.readSymbolicLink(fd).toString();
+            if (!target.startsWith(SOCKET_LINK_PREFIX) || !target.endsWith("]")) return -1;
+            return Long.parseLong(target.substring(SOCKET_LINK_PREFIX.length(), target.length() - 1));
+        } catch (Exception ignore) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the process name from /proc/&lt;pid&gt;/comm (same source {@code ss -p} uses).
+     */
+    private String readComm(int pid) {
+        try {
+            return Files.readString(PROC.resolve(Integer.toString(pid)).resolve("comm"), StandardCharsets.UTF_8).trim();
+        } catch (Exception ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the executable path from the /proc/&lt;pid&gt;/exe link (requires same user or root).
+     * Also used by {@link LinuxSsCollector}, so both Linux collectors report the same path.
+     */
+    static String readExe(int pid) {
+        try {
+            return Files.readSymbolicLink(PROC.resolve(Integer.toString(pid)).resolve("exe")).toString();
+        } catch (Exception ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Process owning a socket.
+     *
+     * @param pid  process ID
+     * @param name process name from /proc/&lt;pid&gt;/comm (may be null)
+     * @param path executable path from /proc/&lt;pid&gt;/exe (may be null)
+     */
+    record Owner(int pid, String name, String path) {
+    }
+
+    /**
+     * Cached state of one process instance.
+     */
+    private static class ProcEntry {
+        final int pid;
+        final long startTime;
+        long[] socketInodes = new long[0];
+
+        // Descriptor number of each entry of socketInodes.
+        int[] socketFds = new int[0];
+
+        // True if the fd table was scanned during the current resolve() call.
+        boolean scanned;
+
+        ProcEntry(int pid, long startTime) {
+            this.pid = pid;
+            this.startTime = startTime;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.tss.portwatch.core.collector;
+
+import com.tss.portwatch.core.exec.CommandRunner;
+
+import java.util.Arrays;
+
+/**
+ * Records command output lines into one growable buffer while fingerprinting them.
+ * <p>
+ * Used by collectors for change detection: the output is captured and fingerprinted first,
+ * and only replayed into the real line parser when the fingerprint differs from the previous
+ * poll. No String is created per line in either phase.
+ */
+final class RecordedLines implements CommandRunner.LineHandler {
+
+    /**
+     * Hashes the parts of a line that identify listener state.
+     * Volatile columns (e.g. accept queue sizes) should be left out.
+     */
+    @FunctionalInterface
+    interface RowHasher {
+        long hash(char[] buf, int start, int end);
+    }
+
+    private final RowHasher hasher;
+    private final TableFingerprint fingerprint = new TableFingerprint();
+
+    private char[] data = new char[8192];
+    private int length;
+    private int[] bounds = new int[256];
+    private int lines;
+
+    RecordedLines(RowHasher hasher) {
+        this.hasher = hasher;
+    }
+
+    @Override
+    public void line(char[] buf, int start, int end) {
+        int n = end - start;
+        if (n == 0) return;
+
+        if (length + n > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, length + n));
+        if (lines * 2 + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+
+        System.arraycopy(buf, start, data, length, n);
+        bounds[lines * 2] = length;
+        bounds[lines * 2 + 1] = length + n;
+        length += n;
+        lines++;
+
+        fingerprint.addRow(hasher.hash(buf, start, end));
+    }
+
+    /**
+     * @return fingerprint of all recorded lines
+     */
+    long fingerprint() {
+        return fingerprint.value();
+    }
+
+    /**
+     * Hands every recorded line to the given parser, in original order.
+     */
+    void replay(CommandRunner.LineHandler handler) {
+        for (int i = 0; i < lines; i++) {
+            handler.line(data, bounds[i * 2], bounds[i * 2 + 1]);
+        }
+    }
+}
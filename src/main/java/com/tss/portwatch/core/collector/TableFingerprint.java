@@ -0,0 +1,74 @@
+package com.tss.portwatch.core.collector;
+
+/**
+ * Cheap 64-bit fingerprint of a raw listener table (procfs rows or command output lines).
+ * <p>
+ * Each row is hashed with FNV-1a, then rows are combined with a commutative sum of
+ * mixed row hashes. The fingerprint therefore does not depend on row order, which the
+ * kernel and native tools do not guarantee between two runs.
+ * <p>
+ * Collectors use it to tell whether anything changed since the previous poll without
+ * parsing rows into {@code ListeningSocket} objects.
+ */
+final class TableFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long sum;
+    private long rows;
+
+    /**
+     * Starts a row hash.
+     */
+    static long start() {
+        return FNV_OFFSET;
+    }
+
+    /**
+     * Continues a row hash with {@code buf[from, to)}.
+     */
+    static long hash(long h, char[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            h ^= buf[i];
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Continues a row hash with a String.
+     */
+    static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Adds one row to the table fingerprint.
+     */
+    void addRow(long rowHash) {
+        sum += mix(rowHash);
+        rows++;
+    }
+
+    /**
+     * @return fingerprint of all rows added so far (never {@link ListenerCollector#NO_FINGERPRINT})
+     */
+    long value() {
+        long v = mix(sum ^ mix(rows));
+        return (v == ListenerCollector.NO_FINGERPRINT) ? 1 : v;
+    }
+
+    /**
+     * SplitMix64 finalizer: spreads row hashes before they are summed.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,8 +1,16 @@
 package com.tss.portwatch.core.collector;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tss.portwatch.core.exec.CommandRunner;
+import com.tss.portwatch.core.model.ListeningSocket;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Windows implementation of {@link ListenerCollector}.
@@ -12,13 +20,23 @@ import java.util.List;
  * ({@code Win32_Process}).
  * <p>
  * The PowerShell script returns JSON that matches the {@code ListeningSocket} field names
- * (LocalAddress, LocalPort, ProcessId, ProcessName, Path), so the application can deserialize
- * it directly without additional mapping.
+ * (LocalAddress, LocalPort, ProcessId, ProcessName, Path), so it can be deserialized
+ * directly into {@link ListeningSocket} without additional mapping.
  */
 public class WindowsPowerShellCollector implements ListenerCollector {
 
     /**
-     * Collects TCP listeners on Windows and returns them as a JSON array.
+     * Local ObjectMapper used to deserialize the PowerShell JSON output.
+     */
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    /**
+     * Maximum execution time for the PowerShell query.
+     */
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    /**
+     * Collects TCP listeners on Windows and passes each one to the sink.
      * <p>
      * The implementation:
      * <ul>
@@ -28,11 +46,45 @@ public class WindowsPowerShellCollector implements ListenerCollector {
      *   <li>Serializes the final array using {@code ConvertTo-Json}</li>
      * </ul>
      *
-     * @return JSON array where each element matches the ListeningSocket structure
+     * @param sink receives one entry per listening endpoint
      * @throws Exception if the PowerShell command fails or returns a non-zero exit code
      */
     @Override
-    public String collectTcpListenersJson() throws Exception {
+    public void collectTcpListeners(Consumer<ListeningSocket> sink) throws Exception {
+        var result = CommandRunner.stream(command(), TIMEOUT, stdout -> {
+            try (JsonParser p = OM.getFactory().createParser(stdout)) {
+                readSockets(p, sink);
+            }
+        });
+        checkExit(result);
+    }
+
+    /**
+     * Buffers the PowerShell output and fingerprints it; the JSON is only parsed if the
+     * fingerprint changed. The output holds no load-dependent values, so it is hashed as a whole.
+     */
+    @Override
+    public Collected collectTcpListenersIfChanged(long previousFingerprint) throws Exception {
+        var result = CommandRunner.run(command(), TIMEOUT);
+        checkExit(result);
+
+        TableFingerprint fp = new TableFingerprint();
+        fp.addRow(TableFingerprint.hash(TableFingerprint.start(), result.stdout()));
+
+        long fingerprint = fp.value();
+        if (fingerprint == previousFingerprint) return new Collected(fingerprint, null);
+
+        List<ListeningSocket> out = new ArrayList<>();
+        try (JsonParser p = OM.getFactory().createParser(result.stdout())) {
+            readSockets(p, out::add);
+        }
+        return new Collected(fingerprint, out);
+    }
+
+    /**
+     * Builds the PowerShell command line.
+     */
+    private static List<String> command() {
         /*
          * Self-contained PowerShell script:
          * - $ErrorActionPreference='Stop' makes PowerShell fail fast on unexpected errors.
@@ -68,19 +120,46 @@ public class WindowsPowerShellCollector implements ListenerCollector {
          * -NoProfile: ignore user profile scripts
          * -ExecutionPolicy Bypass: allow execution of the inline script
          */
-        var result = CommandRunner.run(List.of(
+        return List.of(
                 "powershell.exe",
                 "-NoProfile",
                 "-ExecutionPolicy", "Bypass",
                 "-Command", ps
-        ));
+        );
+    }
 
+    /**
+     * Fails if PowerShell returned a non-zero exit code.
+     */
+    private static void checkExit(CommandRunner.Result result) {
         // Non-zero exit code indicates the query failed.
         if (result.exitCode() != 0) {
             throw new RuntimeException("PowerShell failed: " + result.exitCode() + "\n" + result.stderr());
         }
+    }
+
+    /**
+     * Streams the PowerShell JSON output into the sink, one array element at a time.
+     * <p>
+     * PowerShell already returns JSON matching ListeningSocket. Note that ConvertTo-Json
+     * emits a bare object (not an array) when there is a single listener, and nothing at all
+     * when there are none; both cases are accepted.
+     */
+    private static void readSockets(JsonParser p, Consumer<ListeningSocket> sink) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t == null) return;
+
+        if (t == JsonToken.START_OBJECT) {
+            sink.accept(p.readValueAs(ListeningSocket.class));
+            return;
+        }
+
+        if (t != JsonToken.START_ARRAY) {
+            throw new IOException("Unexpected PowerShell output: " + t);
+        }
 
-        // PowerShell already returns JSON; forward stdout as-is.
-        return result.stdout();
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+            sink.accept(p.readValueAs(ListeningSocket.class));
+        }
     }
 }
@@ -0,0 +1,71 @@
+package com.tss.portwatch.core.diff;
+
+/**
+ * Assigns a dense int id to each distinct local address seen during a diff.
+ * <p>
+ * Hosts have few distinct listen addresses (wildcards, loopback, a handful of interface
+ * addresses) but many sockets, so the address part of an endpoint key can be stored as a
+ * small id instead of a String reference. Lookups use open addressing with linear probing
+ * over the address hash code, which String caches, so assigning ids does not allocate
+ * once the table is sized.
+ * <p>
+ * A null address gets its own id. Instances are not thread-safe.
+ */
+final class AddressDictionary {
+
+    /**
+     * Id reserved for a null address.
+     */
+    private static final int NULL_ID = 0;
+
+    private String[] slots = new String[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    /**
+     * Returns the id of an address, assigning the next free id on first sight.
+     */
+    int id(String address) {
+        if (address == null) return NULL_ID;
+
+        int mask = slots.length - 1;
+        int i = mix(address.hashCode()) & mask;
+        while (true) {
+            String s = slots[i];
+            if (s == null) break;
+            if (s.equals(address)) return ids[i];
+            i = (i + 1) & mask;
+        }
+
+        int id = ++size;
+        slots[i] = address;
+        ids[i] = id;
+        if (size * 2 > slots.length) grow();
+        return id;
+    }
+
+    private void grow() {
+        String[] oldSlots = slots;
+        int[] oldIds = ids;
+        slots = new String[oldSlots.length * 2];
+        ids = new int[oldSlots.length * 2];
+
+        int mask = slots.length - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            String s = oldSlots[j];
+            if (s == null) continue;
+            int i = mix(s.hashCode()) & mask;
+            while (slots[i] != null) i = (i + 1) & mask;
+            slots[i] = s;
+            ids[i] = oldIds[j];
+        }
+    }
+
+    /**
+     * Spreads the String hash so that similar addresses do not cluster in the table.
+     */
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
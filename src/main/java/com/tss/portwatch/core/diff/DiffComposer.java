@@ -0,0 +1,145 @@
+package com.tss.portwatch.core.diff;
+
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.SocketKey;
+import com.tss.portwatch.core.model.SortedSockets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Composes a sequence of diffs into the single diff between the state before the first one and the
+ * state after the last one.
+ * <p>
+ * Only the net change of each endpoint is kept: its state before its first change and its state
+ * after its last change. In particular:
+ * <ul>
+ *   <li>added then removed: cancels out</li>
+ *   <li>removed then added back: a change, or nothing if the socket came back identical</li>
+ *   <li>changed then changed: one change from the first {@code before} to the last {@code after}</li>
+ *   <li>added then changed: added with the last state; changed then removed: removed with the
+ *       first state</li>
+ * </ul>
+ * Diffs are fed one at a time with {@link #add}, oldest first, so a long range can be streamed from
+ * disk: memory is bounded by the number of endpoints that changed, not by the number of diffs.
+ * Composition is associative, so already composed diffs can be composed again.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class DiffComposer {
+
+    /**
+     * Net change by endpoint.
+     */
+    private final Map<SocketKey, Net> net = new HashMap<>();
+
+    private int diffs;
+
+    /**
+     * Composes a sequence of diffs.
+     *
+     * @param diffs diffs in time order
+     * @return net diff, in canonical order
+     */
+    public static SnapshotDiff compose(Iterable<SnapshotDiff> diffs) {
+        DiffComposer c = new DiffComposer();
+        for (SnapshotDiff d : diffs) c.add(d);
+        return c.result();
+    }
+
+    /**
+     * Adds the next diff of the sequence.
+     *
+     * @param diff diff following the ones already added (null lists are treated as empty)
+     * @return this composer
+     */
+    public DiffComposer add(SnapshotDiff diff) {
+        diffs++;
+        if (diff == null) return this;
+
+        if (diff.removed() != null) {
+            for (ListeningSocket s : diff.removed()) observe(s, s, null);
+        }
+        if (diff.added() != null) {
+            for (ListeningSocket s : diff.added()) observe(s, null, s);
+        }
+        if (diff.changed() != null) {
+            for (SnapshotDiff.Changed c : diff.changed()) observe(c.after(), c.before(), c.after());
+        }
+        return this;
+    }
+
+    /**
+     * @return number of diffs added so far
+     */
+    public int size() {
+        return diffs;
+    }
+
+    /**
+     * Returns the net diff of the diffs added so far. The composer can keep receiving diffs.
+     *
+     * @return net diff, in canonical order
+     */
+    public SnapshotDiff result() {
+        List<ListeningSocket> added = new ArrayList<>();
+        List<ListeningSocket> removed = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+
+        for (Net n : net.values()) {
+            if (n.before == null && n.after == null) continue;
+
+            if (n.before == null) {
+                added.add(n.after);
+            } else if (n.after == null) {
+                removed.add(n.before);
+            } else if (SnapshotComparator.isChanged(n.before, n.after)) {
+                changed.add(new SnapshotDiff.Changed(n.before, n.after));
+            }
+        }
+
+        added.sort(SortedSockets.CANONICAL_ORDER);
+        removed.sort(SortedSockets.CANONICAL_ORDER);
+        changed.sort((x, y) -> SortedSockets.CANONICAL_ORDER.compare(x.after(), y.after()));
+
+        return new SnapshotDiff(
+                Collections.unmodifiableList(added),
+                Collections.unmodifiableList(removed),
+                Collections.unmodifiableList(changed)
+        );
+    }
+
+    /**
+     * Records one endpoint transition.
+     *
+     * @param socket any socket of the endpoint (for its key)
+     * @param before endpoint state before this diff (null if absent)
+     * @param after  endpoint state after this diff (null if absent)
+     */
+    private void observe(ListeningSocket socket, ListeningSocket before, ListeningSocket after) {
+        SocketKey key = SocketKey.tcp(socket.LocalAddress, socket.LocalPort);
+        Net n = net.get(key);
+
+        if (n == null) {
+            net.put(key, new Net(before, after));
+        } else {
+            n.after = after;
+        }
+    }
+
+    /**
+     * First and last known state of one endpoint.
+     */
+    private static final class Net {
+        final ListeningSocket before;
+        ListeningSocket after;
+
+        Net(ListeningSocket before, ListeningSocket after) {
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
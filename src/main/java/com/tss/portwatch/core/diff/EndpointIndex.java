@@ -0,0 +1,79 @@
+package com.tss.portwatch.core.diff;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index from packed endpoint keys to positions in a snapshot list.
+ * <p>
+ * Keys are the primitive longs built by {@link SnapshotComparator} (address id, port, protocol),
+ * stored in a flat {@code long[]} next to a flat {@code int[]} of list positions. Lookups and
+ * inserts use linear probing and never allocate, unlike a {@code Map<SocketKey, ListeningSocket>}
+ * which needs one key object, one entry and boxing per socket.
+ * <p>
+ * Packed keys are never negative, so {@link #EMPTY} marks a free slot.
+ * Instances are not thread-safe.
+ */
+final class EndpointIndex {
+
+    private static final long EMPTY = -1L;
+
+    private final long[] keys;
+    private final int[] positions;
+    private final int mask;
+
+    /**
+     * Creates an index able to hold {@code expected} keys at a load factor of at most 0.5.
+     */
+    EndpointIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.positions = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Indexes every key by its position. If a key occurs several times, the last position wins.
+     */
+    static EndpointIndex of(long[] keys) {
+        EndpointIndex index = new EndpointIndex(keys.length);
+        for (int i = 0; i < keys.length; i++) index.put(keys[i], i);
+        return index;
+    }
+
+    /**
+     * Maps a key to a position, replacing any previous position.
+     */
+    void put(long key, int position) {
+        int i = slot(key);
+        keys[i] = key;
+        positions[i] = position;
+    }
+
+    /**
+     * @return position of the key, or -1 if absent
+     */
+    int get(long key) {
+        int i = slot(key);
+        return keys[i] == EMPTY ? -1 : positions[i];
+    }
+
+    /**
+     * Finds the slot holding the key, or the free slot where it would be inserted.
+     */
+    private int slot(long key) {
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * SplitMix64-style finalizer folded to an int: address ids and ports are small,
+     * sequential numbers that would otherwise fill neighbouring slots.
+     */
+    static int mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (z ^ (z >>> 33));
+    }
+}
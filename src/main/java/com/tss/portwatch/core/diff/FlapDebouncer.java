@@ -0,0 +1,194 @@
+package com.tss.portwatch.core.diff;
+
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.SocketKey;
+import com.tss.portwatch.core.model.SortedSockets;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Debounce stage between the comparator and persistence: holds each endpoint change until it has
+ * been stable for a number of polls or a period of time, and drops changes that revert meanwhile.
+ * <p>
+ * Short-lived listeners (test servers, ephemeral ports opened by dev tooling) otherwise show up as
+ * an added/removed pair a few seconds apart, and each half becomes its own diff file. With a
+ * debounce window:
+ * <ul>
+ *   <li>an endpoint change observed by the comparator becomes <i>pending</i>; further changes to the
+ *       same endpoint update the pending state without restarting the window</li>
+ *   <li>if the endpoint returns to its committed state (e.g. added then removed) while pending,
+ *       the change is dropped and counted as a suppressed flap</li>
+ *   <li>once the window has elapsed, the net change (committed state vs observed state) is
+ *       emitted as a stable change and becomes the committed state</li>
+ * </ul>
+ * {@link #offer} must be called on every poll, including polls without changes, since that is
+ * what lets pending changes mature.
+ * <p>
+ * The committed state is the state that persisted snapshots should reflect (see
+ * {@link #committedView(List)}), so snapshot files and diff files stay consistent with each other.
+ * Instances are not thread-safe; {@link #suppressedFlaps()} may be read from other threads.
+ */
+public final class FlapDebouncer {
+
+    private final int polls;
+    private final long windowNanos;
+
+    /**
+     * Pending changes by endpoint.
+     */
+    private final Map<SocketKey, Pending> pending = new HashMap<>();
+
+    private long poll;
+    private volatile long suppressedFlaps;
+
+    /**
+     * Creates a debouncer. A change is emitted once either threshold is reached; a threshold of
+     * zero is not used. At least one threshold must be positive.
+     *
+     * @param polls  number of polls a change must survive (0 to use only the time window)
+     * @param window time a change must survive (zero to use only the poll count)
+     */
+    public FlapDebouncer(int polls, Duration window) {
+        if (polls < 0 || window.isNegative() || (polls == 0 && window.isZero())) {
+            throw new IllegalArgumentException("Invalid debounce window: polls=" + polls + " window=" + window);
+        }
+        this.polls = polls;
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * Feeds the diff observed at one poll and returns the changes that became stable.
+     *
+     * @param observed  raw diff of this poll (may be empty)
+     * @param nowNanos  current {@link System#nanoTime()}
+     * @return stable changes, relative to the previously committed state, in canonical order
+     */
+    public SnapshotDiff offer(SnapshotDiff observed, long nowNanos) {
+        poll++;
+
+        for (ListeningSocket s : observed.removed()) observe(s, s, null, nowNanos);
+        for (ListeningSocket s : observed.added()) observe(s, null, s, nowNanos);
+        for (SnapshotDiff.Changed c : observed.changed()) observe(c.after(), c.before(), c.after(), nowNanos);
+
+        List<ListeningSocket> added = new ArrayList<>();
+        List<ListeningSocket> removed = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+
+        for (Iterator<Pending> it = pending.values().iterator(); it.hasNext(); ) {
+            Pending p = it.next();
+            boolean matured = (polls > 0 && poll - p.firstPoll >= polls)
+                    || (windowNanos > 0 && nowNanos - p.firstNanos >= windowNanos);
+            if (!matured) continue;
+            it.remove();
+
+            if (p.committed == null) {
+                added.add(p.observed);
+            } else if (p.observed == null) {
+                removed.add(p.committed);
+            } else {
+                changed.add(new SnapshotDiff.Changed(p.committed, p.observed));
+            }
+        }
+
+        added.sort(SortedSockets.CANONICAL_ORDER);
+        removed.sort(SortedSockets.CANONICAL_ORDER);
+        changed.sort((x, y) -> SortedSockets.CANONICAL_ORDER.compare(x.after(), y.after()));
+
+        return new SnapshotDiff(
+                Collections.unmodifiableList(added),
+                Collections.unmodifiableList(removed),
+                Collections.unmodifiableList(changed)
+        );
+    }
+
+    /**
+     * Returns the committed state: the live sockets with every pending change undone.
+     *
+     * @param live current live sockets (e.g. {@link IncrementalComparator#sockets()})
+     * @return sockets in canonical order, as they should be persisted
+     */
+    public SortedSockets committedView(List<ListeningSocket> live) {
+        if (pending.isEmpty()) return SortedSockets.sort(live);
+
+        List<ListeningSocket> out = new ArrayList<>(live.size());
+        for (ListeningSocket s : live) {
+            if (!pending.containsKey(keyOf(s))) out.add(s);
+        }
+        for (Pending p : pending.values()) {
+            if (p.committed != null) out.add(p.committed);
+        }
+        return SortedSockets.sort(out);
+    }
+
+    /**
+     * @return number of changes currently held back
+     */
+    public int pendingChanges() {
+        return pending.size();
+    }
+
+    /**
+     * @return number of changes dropped because they reverted within the window
+     */
+    public long suppressedFlaps() {
+        return suppressedFlaps;
+    }
+
+    /**
+     * Records one endpoint transition.
+     *
+     * @param socket any socket of the endpoint (for its key)
+     * @param before endpoint state before this poll (null if absent)
+     * @param after  endpoint state after this poll (null if absent)
+     */
+    private void observe(ListeningSocket socket, ListeningSocket before, ListeningSocket after, long nowNanos) {
+        SocketKey key = keyOf(socket);
+        Pending p = pending.get(key);
+
+        if (p == null) {
+            pending.put(key, new Pending(before, after, poll, nowNanos));
+            return;
+        }
+
+        p.observed = after;
+        if (isCommitted(p)) {
+            pending.remove(key);
+            suppressedFlaps++;
+        }
+    }
+
+    /**
+     * True if the observed state equals the committed one (the change reverted).
+     */
+    private static boolean isCommitted(Pending p) {
+        if (p.committed == null || p.observed == null) return p.committed == p.observed;
+        return !SnapshotComparator.isChanged(p.committed, p.observed);
+    }
+
+    private static SocketKey keyOf(ListeningSocket s) {
+        return SocketKey.tcp(s.LocalAddress, s.LocalPort);
+    }
+
+    /**
+     * Change held back for one endpoint.
+     */
+    private static final class Pending {
+        final ListeningSocket committed;
+        ListeningSocket observed;
+        final long firstPoll;
+        final long firstNanos;
+
+        Pending(ListeningSocket committed, ListeningSocket observed, long firstPoll, long firstNanos) {
+            this.committed = committed;
+            this.observed = observed;
+            this.firstPoll = firstPoll;
+            this.firstNanos = firstNanos;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.tss.portwatch.core.diff;
+
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.SortedSockets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stateful companion of {@link SnapshotComparator} that keeps the live set of listening sockets
+ * and updates it from either full snapshots or per-endpoint deltas.
+ * <p>
+ * Two ways to feed it:
+ * <ul>
+ *   <li>{@link #applySnapshot(List)}: a full collection; diffed against the live set in O(n),
+ *       with exactly the semantics of {@link SnapshotComparator#compare}</li>
+ *   <li>{@link #apply(Collection, Collection)}: upserts and deletes reported by a collector that
+ *       detects per-row changes itself; costs O(changes), independently of the number of sockets</li>
+ * </ul>
+ * Both return a {@link SnapshotDiff} in canonical order, so callers cannot tell which path
+ * produced it.
+ * <p>
+ * The live set holds one socket per endpoint (protocol + address + port), indexed by the same
+ * packed primitive keys the comparator uses. Instances are not thread-safe.
+ */
+public final class IncrementalComparator {
+
+    private final AddressDictionary addresses = new AddressDictionary();
+    private final LiveSocketTable live;
+
+    /**
+     * Sorted view of the live set, rebuilt lazily after changes.
+     */
+    private SortedSockets sortedView;
+
+    /**
+     * Creates a comparator whose live set is the given snapshot (e.g. the latest persisted one).
+     *
+     * @param initial initial sockets (may be empty, but not null); for duplicate keys the last entry wins
+     */
+    public IncrementalComparator(List<ListeningSocket> initial) {
+        this.live = new LiveSocketTable(initial.size());
+        load(initial);
+    }
+
+    /**
+     * Replaces the live set with a full snapshot.
+     *
+     * @param current full collection (may be empty, but not null)
+     * @return changes between the previous live set and {@code current}
+     */
+    public SnapshotDiff applySnapshot(List<ListeningSocket> current) {
+        SnapshotDiff diff = SnapshotComparator.compare(sockets(), current);
+
+        live.clear();
+        load(current);
+        return diff;
+    }
+
+    /**
+     * Applies per-endpoint changes to the live set.
+     * <p>
+     * Deletes are applied before upserts, so deleting and re-adding an endpoint in the same batch
+     * reports at most a change of owner. Each endpoint touched by the batch is compared once,
+     * between its state before the batch and after it.
+     *
+     * @param upserts sockets that appeared or whose owner changed (last entry wins per endpoint)
+     * @param deletes sockets whose endpoint is no longer listening (only address and port are used)
+     * @return changes caused by the batch
+     */
+    public SnapshotDiff apply(Collection<ListeningSocket> upserts, Collection<ListeningSocket> deletes) {
+        // Endpoint state before the batch, for every endpoint it touches (value null if absent).
+        Map<Long, ListeningSocket> touched = new HashMap<>();
+
+        for (ListeningSocket s : deletes) {
+            long key = keyOf(s);
+            ListeningSocket old = live.remove(key);
+            if (!touched.containsKey(key)) touched.put(key, old);
+        }
+        for (ListeningSocket s : upserts) {
+            long key = keyOf(s);
+            if (!touched.containsKey(key)) touched.put(key, live.get(key));
+            live.put(key, s);
+        }
+
+        List<ListeningSocket> added = new ArrayList<>();
+        List<ListeningSocket> removed = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+        for (Map.Entry<Long, ListeningSocket> e : touched.entrySet()) {
+            ListeningSocket before = e.getValue();
+            ListeningSocket after = live.get(e.getKey());
+
+            if (before == null && after != null) {
+                added.add(after);
+            } else if (before != null && after == null) {
+                removed.add(before);
+            } else if (before != null && SnapshotComparator.isChanged(before, after)) {
+                changed.add(new SnapshotDiff.Changed(before, after));
+            }
+        }
+
+        if (!added.isEmpty() || !removed.isEmpty() || !changed.isEmpty()) sortedView = null;
+
+        added.sort(SortedSockets.CANONICAL_ORDER);
+        removed.sort(SortedSockets.CANONICAL_ORDER);
+        changed.sort((x, y) -> SortedSockets.CANONICAL_ORDER.compare(x.after(), y.after()));
+
+        return new SnapshotDiff(
+                Collections.unmodifiableList(added),
+                Collections.unmodifiableList(removed),
+                Collections.unmodifiableList(changed)
+        );
+    }
+
+    /**
+     * Replays a diff recorded against the live set, e.g. a stored delta between two snapshots:
+     * removed sockets are deleted, added and changed ones upserted.
+     *
+     * @param diff diff whose "before" side is the current live set
+     * @return changes caused by the replay (equal to {@code diff} when it matches the live set)
+     */
+    public SnapshotDiff applyDiff(SnapshotDiff diff) {
+        List<ListeningSocket> upserts = new ArrayList<>(diff.added().size() + diff.changed().size());
+        upserts.addAll(diff.added());
+        for (SnapshotDiff.Changed c : diff.changed()) upserts.add(c.after());
+        return apply(upserts, diff.removed());
+    }
+
+    /**
+     * Returns the live set in canonical order, e.g. to persist it as a snapshot.
+     * The list is cached until the next change.
+     */
+    public SortedSockets sockets() {
+        if (sortedView == null) sortedView = SortedSockets.sort(live.values());
+        return sortedView;
+    }
+
+    /**
+     * @return number of endpoints in the live set
+     */
+    public int size() {
+        return live.size();
+    }
+
+    private void load(List<ListeningSocket> sockets) {
+        for (ListeningSocket s : sockets) live.put(keyOf(s), s);
+
+        // A sorted input without duplicate keys already is the sorted view of the live set.
+        sortedView = (sockets instanceof SortedSockets sorted && live.size() == sorted.size()) ? sorted : null;
+    }
+
+    private long keyOf(ListeningSocket s) {
+        return SnapshotComparator.pack(addresses.id(s.LocalAddress), s.LocalPort);
+    }
+}
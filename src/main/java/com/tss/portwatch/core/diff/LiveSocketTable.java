@@ -0,0 +1,134 @@
+package com.tss.portwatch.core.diff;
+
+import com.tss.portwatch.core.model.ListeningSocket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mutable open-addressing map from packed endpoint keys to the socket currently listening there.
+ * <p>
+ * Same layout as {@link EndpointIndex} (flat {@code long[]} keys, linear probing), plus removal:
+ * deleted entries are closed with backward-shift deletion instead of tombstones, so lookups stay
+ * short however many endpoints come and go over the lifetime of a watch session.
+ * The table grows when it is half full. Instances are not thread-safe.
+ */
+final class LiveSocketTable {
+
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private ListeningSocket[] values;
+    private int mask;
+    private int size;
+
+    LiveSocketTable(int expected) {
+        allocate(Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return socket stored under the key, or null
+     */
+    ListeningSocket get(long key) {
+        int i = slot(key);
+        return keys[i] == EMPTY ? null : values[i];
+    }
+
+    /**
+     * Stores a socket under the key, replacing any previous one.
+     */
+    void put(long key, ListeningSocket value) {
+        int i = slot(key);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+
+        if (size * 2 > keys.length) rehash(keys.length * 2);
+    }
+
+    /**
+     * Removes the key.
+     *
+     * @return the socket that was stored under it, or null
+     */
+    ListeningSocket remove(long key) {
+        int i = slot(key);
+        if (keys[i] == EMPTY) return null;
+
+        ListeningSocket old = values[i];
+        size--;
+
+        // Backward-shift deletion: move later entries of the probe chain into the hole.
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) break;
+
+            int home = EndpointIndex.mix(keys[j]) & mask;
+            // Entry at j may move to the hole only if its home slot is not between hole and j (cyclically).
+            boolean movable = (hole <= j) ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        return old;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return stored sockets, in table order
+     */
+    List<ListeningSocket> values() {
+        List<ListeningSocket> out = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) out.add(values[i]);
+        }
+        return out;
+    }
+
+    private int slot(long key) {
+        int i = EndpointIndex.mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        ListeningSocket[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int s = slot(oldKeys[i]);
+            keys[s] = oldKeys[i];
+            values[s] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new ListeningSocket[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+}
@@ -2,20 +2,28 @@ package com.tss.portwatch.core.diff;
 
 import com.tss.portwatch.core.model.ListeningSocket;
 import com.tss.portwatch.core.model.SocketKey;
+import com.tss.portwatch.core.model.SortedSockets;
 
-import java.util.AbstractMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Computes the difference between two snapshots of listening sockets.
  * <p>
  * The diff algorithm is based on {@link SocketKey} (protocol + address + port),
  * which identifies a listening endpoint independently of the owning process.
+ * Internally the key is handled in packed primitive form; output is sorted by the
+ * text of the {@code SocketKey}.
  * <p>
  * Using this key, the comparator detects:
  * <ul>
@@ -28,74 +36,571 @@ import java.util.stream.Collectors;
  */
 public final class SnapshotComparator {
 
+    /**
+     * Protocol bit of a packed endpoint key. PortWatch only collects TCP listeners today.
+     */
+    private static final long PROTO_TCP = 0;
+
+    /**
+     * Canonical output order: the text of the {@link SocketKey} ("TCP addr:port"),
+     * compared without building it.
+     */
+    private static final Comparator<ListeningSocket> BY_KEY = SortedSockets.CANONICAL_ORDER;
+
+    private static final Comparator<SnapshotDiff.Changed> BY_CHANGED_KEY = (x, y) -> BY_KEY.compare(x.after(), y.after());
+
+    /**
+     * Marker for a streamed "before" socket found identical to its "after" counterpart.
+     */
+    private static final ListeningSocket UNCHANGED = new ListeningSocket();
+
+    /**
+     * Total number of sockets (both snapshots) from which {@link #compare} switches to
+     * {@link #compareParallel}, if more than one core is available. Below this size the cost
+     * of partitioning and task hand-off outweighs the gain.
+     */
+    public static final int PARALLEL_THRESHOLD = 200_000;
+
+    /**
+     * Partitions per pool thread in {@link #compareParallel}.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
     /**
      * Compares two snapshots and produces a {@link SnapshotDiff}.
      * <p>
-     * Both snapshots are first indexed by {@link SocketKey} to allow O(1) lookups when computing:
-     * added/removed endpoints and ownership changes.
+     * Path selection:
+     * <ul>
+     *   <li>very large inputs (see {@link #PARALLEL_THRESHOLD}) are diffed on all cores
+     *       (see {@link #compareParallel(List, List)})</li>
+     *   <li>if both snapshots are {@link SortedSockets}, they are walked with a single merge pass
+     *       (see {@link #mergeCompare})</li>
+     *   <li>otherwise both sides are hashed (see {@link #hashCompare})</li>
+     * </ul>
+     * All paths produce the same diff.
      *
      * @param before snapshot from the previous run (may be empty, but not null)
      * @param after  snapshot from the current run (may be empty, but not null)
      * @return a diff describing added, removed and changed sockets
      */
     public static SnapshotDiff compare(List<ListeningSocket> before, List<ListeningSocket> after) {
-        Map<SocketKey, ListeningSocket> b = index(before);
-        Map<SocketKey, ListeningSocket> a = index(after);
+        if ((long) before.size() + after.size() >= PARALLEL_THRESHOLD
+                && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return compareParallel(before, after);
+        }
 
-        // Added: keys that exist in "after" but not in "before"
-        List<ListeningSocket> added = a.keySet().stream()
-                .filter(k -> !b.containsKey(k))
-                .map(a::get)
-                .sorted(SnapshotComparator::byKey)
-                .toList();
+        if (before instanceof SortedSockets && after instanceof SortedSockets) {
+            SnapshotDiff diff = mergeCompare(before, after);
+            if (diff != null) return diff;
+            // A list claimed to be sorted but is not (e.g. hand-edited file): fall back to hashing
+        }
+        return hashCompare(before, after);
+    }
 
-        // Removed: keys that existed in "before" but are no longer present in "after"
-        List<ListeningSocket> removed = b.keySet().stream()
-                .filter(k -> !a.containsKey(k))
-                .map(b::get)
-                .sorted(SnapshotComparator::byKey)
-                .toList();
+    /**
+     * Merge-join diff of two lists in canonical order.
+     * <p>
+     * Both lists are walked once, side by side. Equal keys are adjacent, so each run of equal
+     * keys is collapsed to its last entry (same "last wins" rule as the hash path). Since the
+     * walk follows canonical order, added/removed/changed come out already sorted: no hashing
+     * and no sorting is needed.
+     *
+     * @return the diff, or null if either list turns out not to be in canonical order
+     */
+    private static SnapshotDiff mergeCompare(List<ListeningSocket> before, List<ListeningSocket> after) {
+        List<ListeningSocket> added = new ArrayList<>();
+        List<ListeningSocket> removed = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+
+        int nb = before.size();
+        int na = after.size();
+        int i = 0;
+        int j = 0;
+        int bEnd = runEnd(before, i);
+        int aEnd = runEnd(after, j);
+
+        while (i < nb || j < na) {
+            if (bEnd < 0 || aEnd < 0) return null;
+
+            int c;
+            if (i >= nb) c = 1;
+            else if (j >= na) c = -1;
+            else c = byKey(before.get(i), after.get(j));
+
+            if (c < 0) {
+                // Removed: key only present in "before"
+                removed.add(before.get(bEnd - 1));
+                i = bEnd;
+                bEnd = runEnd(before, i);
+            } else if (c > 0) {
+                // Added: key only present in "after"
+                added.add(after.get(aEnd - 1));
+                j = aEnd;
+                aEnd = runEnd(after, j);
+            } else {
+                // Same text but different keys (null vs "null" address): let the hash path decide
+                if (!sameKey(before.get(i), after.get(j))) return null;
 
-        // Changed: same key, different ownership/process metadata
-        List<SnapshotDiff.Changed> changed = a.keySet().stream()
-                .filter(b::containsKey)
-                .map(k -> new AbstractMap.SimpleEntry<>(b.get(k), a.get(k)))
-                .filter(e -> isChanged(e.getKey(), e.getValue()))
-                .map(e -> new SnapshotDiff.Changed(e.getKey(), e.getValue()))
-                .sorted(Comparator.comparing(c -> keyOf(c.after()).toString()))
-                .toList();
+                ListeningSocket b = before.get(bEnd - 1);
+                ListeningSocket a = after.get(aEnd - 1);
+                if (isChanged(b, a)) changed.add(new SnapshotDiff.Changed(b, a));
+
+                i = bEnd;
+                bEnd = runEnd(before, i);
+                j = aEnd;
+                aEnd = runEnd(after, j);
+            }
+        }
+
+        return new SnapshotDiff(
+                Collections.unmodifiableList(added),
+                Collections.unmodifiableList(removed),
+                Collections.unmodifiableList(changed)
+        );
+    }
+
+    /**
+     * Returns the end (exclusive) of the run of equal keys starting at {@code from},
+     * or -1 if the next key is out of canonical order.
+     */
+    private static int runEnd(List<ListeningSocket> list, int from) {
+        if (from >= list.size()) return from;
+
+        ListeningSocket first = list.get(from);
+        int k = from + 1;
+        for (; k < list.size(); k++) {
+            ListeningSocket s = list.get(k);
+            int c = byKey(first, s);
+            if (c < 0) break;
+            if (c > 0 || !sameKey(first, s)) return -1;
+        }
+        return k;
+    }
 
-        return new SnapshotDiff(added, removed, changed);
+    private static boolean sameKey(ListeningSocket x, ListeningSocket y) {
+        return Objects.equals(x.LocalPort, y.LocalPort) && Objects.equals(x.LocalAddress, y.LocalAddress);
     }
 
     /**
-     * Builds a map indexed by {@link SocketKey} for fast lookup.
+     * Hash-based diff for inputs in arbitrary order.
      * <p>
-     * If duplicates exist for the same key (rare but possible depending on source data),
-     * the last entry wins.
+     * Each socket is reduced to a primitive endpoint key (see {@link #pack(int, int)}) and both
+     * snapshots are indexed in an {@link EndpointIndex} to allow O(1) lookups when computing:
+     * added/removed endpoints and ownership changes. No key objects are created and no
+     * boxing happens during the lookups. The three lists are sorted at the end.
+     */
+    private static SnapshotDiff hashCompare(List<ListeningSocket> before, List<ListeningSocket> after) {
+        List<ListeningSocket> added = new ArrayList<>();
+        List<ListeningSocket> removed = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+        hashDiff(before, after, added, removed, changed);
+
+        added.sort(BY_KEY);
+        removed.sort(BY_KEY);
+        changed.sort(BY_CHANGED_KEY);
+
+        return new SnapshotDiff(
+                Collections.unmodifiableList(added),
+                Collections.unmodifiableList(removed),
+                Collections.unmodifiableList(changed)
+        );
+    }
+
+    /**
+     * Core of the hash-based diff: appends added, removed and changed entries in input order.
+     */
+    private static void hashDiff(List<ListeningSocket> before,
+                                 List<ListeningSocket> after,
+                                 List<ListeningSocket> added,
+                                 List<ListeningSocket> removed,
+                                 List<SnapshotDiff.Changed> changed) {
+        AddressDictionary addresses = new AddressDictionary();
+        long[] beforeKeys = keysOf(before, addresses);
+        long[] afterKeys = keysOf(after, addresses);
+
+        EndpointIndex b = EndpointIndex.of(beforeKeys);
+        EndpointIndex a = EndpointIndex.of(afterKeys);
+
+        for (int i = 0; i < afterKeys.length; i++) {
+            // Duplicate key: only the last entry counts
+            if (a.get(afterKeys[i]) != i) continue;
+
+            int j = b.get(afterKeys[i]);
+            if (j < 0) {
+                // Added: key exists in "after" but not in "before"
+                added.add(after.get(i));
+            } else if (isChanged(before.get(j), after.get(i))) {
+                // Changed: same key, different ownership/process metadata
+                changed.add(new SnapshotDiff.Changed(before.get(j), after.get(i)));
+            }
+        }
+
+        for (int j = 0; j < beforeKeys.length; j++) {
+            if (b.get(beforeKeys[j]) != j) continue;
+
+            // Removed: key existed in "before" but is no longer present in "after"
+            if (a.get(beforeKeys[j]) < 0) removed.add(before.get(j));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Streaming diff
+    // -------------------------------------------------------------------------
+
+    /**
+     * Source of the sockets of a snapshot, pushed one by one (e.g. by a streaming file reader).
+     */
+    @FunctionalInterface
+    public interface SocketSource {
+
+        /**
+         * Passes every socket of the snapshot to {@code sink}, in file order.
+         *
+         * @throws IOException if the underlying data cannot be read
+         */
+        void forEach(Consumer<ListeningSocket> sink) throws IOException;
+    }
+
+    /**
+     * Compares a streamed previous snapshot with the current one.
+     * <p>
+     * Only {@code after} is indexed; each "before" socket is looked up as it arrives and kept only
+     * if it takes part in the diff (changed or removed endpoint). Unchanged rows become garbage as
+     * soon as they are compared, so the previous snapshot is never held as a list. The result is the same diff {@link #compare(List, List)}
+     * produces, including "last entry wins" for duplicate keys on either side.
      *
-     * @param list snapshot sockets
-     * @return map keyed by endpoint identity (protocol + address + port)
+     * @param before previous snapshot, streamed
+     * @param after  snapshot from the current run (may be empty, but not null)
+     * @return a diff describing added, removed and changed sockets
+     * @throws IOException if the source fails
      */
-    private static Map<SocketKey, ListeningSocket> index(List<ListeningSocket> list) {
-        return list.stream().collect(Collectors.toMap(
-                SnapshotComparator::keyOf,
-                s -> s,
-                (x, y) -> y,
-                LinkedHashMap::new
-        ));
+    public static SnapshotDiff compare(SocketSource before, List<ListeningSocket> after) throws IOException {
+        AddressDictionary addresses = new AddressDictionary();
+        long[] afterKeys = keysOf(after, addresses);
+        EndpointIndex a = EndpointIndex.of(afterKeys);
+
+        // Per "after" position: null (not seen), UNCHANGED, or the last differing "before" socket.
+        ListeningSocket[] matched = new ListeningSocket[afterKeys.length];
+        // Last "before" socket per endpoint missing from "after", plus arrival order: snapshot
+        // files are usually in canonical order, which makes the final sort linear.
+        LiveSocketTable gone = new LiveSocketTable(16);
+        List<ListeningSocket> goneInOrder = new ArrayList<>();
+
+        before.forEach(s -> {
+            long key = pack(addresses.id(s.LocalAddress), s.LocalPort);
+            int i = a.get(key);
+            if (i < 0) {
+                gone.put(key, s);
+                goneInOrder.add(s);
+            } else {
+                ListeningSocket current = after.get(i);
+                matched[i] = isChanged(s, current) ? s : UNCHANGED;
+            }
+        });
+
+        List<ListeningSocket> added = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+        for (int i = 0; i < afterKeys.length; i++) {
+            if (a.get(afterKeys[i]) != i) continue;
+
+            if (matched[i] == null) {
+                added.add(after.get(i));
+            } else if (matched[i] != UNCHANGED) {
+                changed.add(new SnapshotDiff.Changed(matched[i], after.get(i)));
+            }
+        }
+        List<ListeningSocket> removed = new ArrayList<>(gone.size());
+        for (ListeningSocket s : goneInOrder) {
+            long key = pack(addresses.id(s.LocalAddress), s.LocalPort);
+            if (gone.get(key) == s) {
+                removed.add(s);
+                gone.remove(key);
+            }
+        }
+
+        added.sort(BY_KEY);
+        removed.sort(BY_KEY);
+        changed.sort(BY_CHANGED_KEY);
+
+        return new SnapshotDiff(
+                Collections.unmodifiableList(added),
+                Collections.unmodifiableList(removed),
+                Collections.unmodifiableList(changed)
+        );
     }
 
     /**
-     * Computes the {@link SocketKey} for a {@link ListeningSocket}.
+     * Compares a streamed previous snapshot with the current one, both in canonical order (e.g. a
+     * snapshot file with the {@code sorted} flag against a fresh collection).
      * <p>
-     * Currently, PortWatch handles TCP listeners, so the protocol is fixed to TCP.
+     * Streaming counterpart of the merge path: each "before" socket is matched against a cursor
+     * over {@code after} as it arrives, so neither side is indexed or hashed and the lists come out
+     * already sorted. Only the last "before" socket of the current key is held. If either side
+     * turns out not to be in canonical order, the source is read again and diffed by
+     * {@link #compare(SocketSource, List)}.
      *
-     * @param s socket model entry
-     * @return key representing the endpoint identity
+     * @param before previous snapshot, streamed in canonical order
+     * @param after  snapshot from the current run (may be empty, but not null)
+     * @return a diff describing added, removed and changed sockets
+     * @throws IOException if the source fails
+     */
+    public static SnapshotDiff compareSorted(SocketSource before, SortedSockets after) throws IOException {
+        StreamMerge merge = new StreamMerge(after);
+        try {
+            before.forEach(merge::accept);
+            return merge.finish();
+        } catch (OutOfOrder e) {
+            return compare(before, after);
+        }
+    }
+
+    /**
+     * State of {@link #compareSorted}: a cursor over "after" and the pending "before" run.
+     */
+    private static final class StreamMerge {
+        private final List<ListeningSocket> after;
+        private int j;
+        private int aEnd;
+
+        // Last "before" socket of the current key (equal keys are adjacent: last wins)
+        private ListeningSocket pending;
+
+        private final List<ListeningSocket> added = new ArrayList<>();
+        private final List<ListeningSocket> removed = new ArrayList<>();
+        private final List<SnapshotDiff.Changed> changed = new ArrayList<>();
+
+        StreamMerge(List<ListeningSocket> after) {
+            this.after = after;
+            this.aEnd = runEnd(after, 0);
+        }
+
+        void accept(ListeningSocket s) {
+            if (pending != null) {
+                int c = byKey(pending, s);
+                if (c > 0 || (c == 0 && !sameKey(pending, s))) throw OutOfOrder.INSTANCE;
+                if (c == 0) {
+                    pending = s;
+                    return;
+                }
+                settle(pending);
+            }
+            pending = s;
+        }
+
+        SnapshotDiff finish() {
+            if (pending != null) settle(pending);
+            while (j < after.size()) advanceAdded();
+
+            return new SnapshotDiff(
+                    Collections.unmodifiableList(added),
+                    Collections.unmodifiableList(removed),
+                    Collections.unmodifiableList(changed)
+            );
+        }
+
+        /**
+         * Settles the last "before" socket of a key: "after" keys below it are added, an equal key
+         * is unchanged or changed, and no equal key means removed.
+         */
+        private void settle(ListeningSocket b) {
+            while (j < after.size()) {
+                if (aEnd < 0) throw OutOfOrder.INSTANCE;
+
+                int c = byKey(after.get(j), b);
+                if (c < 0) {
+                    advanceAdded();
+                    continue;
+                }
+                if (c == 0) {
+                    // Same text but different keys (null vs "null" address): let the hash path decide
+                    if (!sameKey(after.get(j), b)) throw OutOfOrder.INSTANCE;
+
+                    ListeningSocket a = after.get(aEnd - 1);
+                    if (isChanged(b, a)) changed.add(new SnapshotDiff.Changed(b, a));
+                    j = aEnd;
+                    aEnd = runEnd(after, j);
+                    return;
+                }
+                break;
+            }
+            removed.add(b);
+        }
+
+        private void advanceAdded() {
+            if (aEnd < 0) throw OutOfOrder.INSTANCE;
+            added.add(after.get(aEnd - 1));
+            j = aEnd;
+            aEnd = runEnd(after, j);
+        }
+    }
+
+    /**
+     * Aborts a streamed merge on input that is not in canonical order. Used for control flow only:
+     * a single shared instance, without stack trace or suppression.
+     */
+    private static final class OutOfOrder extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final OutOfOrder INSTANCE = new OutOfOrder();
+
+        private OutOfOrder() {
+            super(null, null, false, false);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel diff
+    // -------------------------------------------------------------------------
+
+    /**
+     * Compares two snapshots on the common {@link ForkJoinPool}.
+     *
+     * @see #compareParallel(List, List, ForkJoinPool)
+     */
+    public static SnapshotDiff compareParallel(List<ListeningSocket> before, List<ListeningSocket> after) {
+        return compareParallel(before, after, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compares two snapshots using several threads. Meant for very large inputs
+     * (aggregated inventories, hosts with hundreds of thousands of listeners).
+     * <p>
+     * Steps:
+     * <ul>
+     *   <li>both snapshots are split into partitions by a hash of (address, port); every entry
+     *       of a key lands in the same partition, in its original order, so "last entry wins"
+     *       still holds</li>
+     *   <li>each pair of partitions is diffed as an independent task on the pool</li>
+     *   <li>partial results are concatenated and sorted in parallel in canonical order</li>
+     * </ul>
+     * The result is the same diff {@link #compare(List, List)} produces, in the same order,
+     * regardless of the number of threads.
+     *
+     * @param before snapshot from the previous run (may be empty, but not null)
+     * @param after  snapshot from the current run (may be empty, but not null)
+     * @param pool   pool running the partition and sort tasks
+     * @return a diff describing added, removed and changed sockets
+     */
+    public static SnapshotDiff compareParallel(List<ListeningSocket> before,
+                                               List<ListeningSocket> after,
+                                               ForkJoinPool pool) {
+        int partitions = partitionsFor(pool.getParallelism());
+        List<List<ListeningSocket>> b = partition(before, partitions);
+        List<List<ListeningSocket>> a = partition(after, partitions);
+
+        List<Callable<Partial>> tasks = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            List<ListeningSocket> bp = b.get(p);
+            List<ListeningSocket> ap = a.get(p);
+            tasks.add(() -> {
+                Partial r = new Partial();
+                hashDiff(bp, ap, r.added, r.removed, r.changed);
+                return r;
+            });
+        }
+
+        List<ListeningSocket> added = new ArrayList<>();
+        List<ListeningSocket> removed = new ArrayList<>();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>();
+        for (Future<Partial> f : pool.invokeAll(tasks)) {
+            Partial r = join(f);
+            added.addAll(r.added);
+            removed.addAll(r.removed);
+            changed.addAll(r.changed);
+        }
+
+        // Arrays.parallelSort forks into the pool of the calling worker thread.
+        ListeningSocket[] addedArr = added.toArray(new ListeningSocket[0]);
+        ListeningSocket[] removedArr = removed.toArray(new ListeningSocket[0]);
+        SnapshotDiff.Changed[] changedArr = changed.toArray(new SnapshotDiff.Changed[0]);
+        join(pool.submit(() -> {
+            Arrays.parallelSort(addedArr, BY_KEY);
+            Arrays.parallelSort(removedArr, BY_KEY);
+            Arrays.parallelSort(changedArr, BY_CHANGED_KEY);
+        }));
+
+        return new SnapshotDiff(
+                Collections.unmodifiableList(Arrays.asList(addedArr)),
+                Collections.unmodifiableList(Arrays.asList(removedArr)),
+                Collections.unmodifiableList(Arrays.asList(changedArr))
+        );
+    }
+
+    /**
+     * Number of partitions for a pool: a few per thread so that uneven partitions balance out,
+     * rounded to a power of two.
+     */
+    private static int partitionsFor(int parallelism) {
+        return Integer.highestOneBit(Math.max(1, parallelism) * PARTITIONS_PER_THREAD * 2 - 1);
+    }
+
+    /**
+     * Splits a snapshot by key hash, preserving the relative order of entries in each partition.
+     */
+    private static List<List<ListeningSocket>> partition(List<ListeningSocket> list, int partitions) {
+        List<List<ListeningSocket>> out = new ArrayList<>(partitions);
+        int expected = list.size() / partitions + 1;
+        for (int p = 0; p < partitions; p++) out.add(new ArrayList<>(expected));
+
+        for (ListeningSocket s : list) {
+            int h = Objects.hashCode(s.LocalAddress) * 31 + s.LocalPort;
+            h ^= (h >>> 16);
+            h *= 0x85ebca6b;
+            h ^= (h >>> 13);
+            out.get(h & (partitions - 1)).add(s);
+        }
+        return out;
+    }
+
+    /**
+     * Waits for a task, rethrowing its failure unchecked.
+     */
+    private static <T> T join(Future<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing diff", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException("Diff task failed", cause);
+        }
+    }
+
+    /**
+     * Unsorted diff of one partition.
+     */
+    private static final class Partial {
+        final List<ListeningSocket> added = new ArrayList<>();
+        final List<ListeningSocket> removed = new ArrayList<>();
+        final List<SnapshotDiff.Changed> changed = new ArrayList<>();
+    }
+
+    /**
+     * Computes the packed endpoint key of every socket in a snapshot.
+     */
+    private static long[] keysOf(List<ListeningSocket> list, AddressDictionary addresses) {
+        long[] keys = new long[list.size()];
+        int i = 0;
+        for (ListeningSocket s : list) {
+            keys[i++] = pack(addresses.id(s.LocalAddress), s.LocalPort);
+        }
+        return keys;
+    }
+
+    /**
+     * Packs an endpoint identity (protocol + address + port) into a non-negative long:
+     * <pre>
+     *   bits 33..62  address id (see {@link AddressDictionary})
+     *   bits  1..32  port (as an unsigned int, so malformed values still get distinct keys)
+     *   bit   0      protocol
+     * </pre>
+     * Two sockets have the same packed key exactly when they have equal {@link SocketKey}s.
      */
-    private static SocketKey keyOf(ListeningSocket s) {
-        return SocketKey.tcp(s.LocalAddress, s.LocalPort);
+    static long pack(int addressId, int port) {
+        return ((long) addressId << 33) | ((port & 0xFFFFFFFFL) << 1) | PROTO_TCP;
     }
 
     /**
@@ -108,7 +613,7 @@ public final class SnapshotComparator {
      * @param after  socket representation in current snapshot
      * @return true if ownership/process metadata differs
      */
-    private static boolean isChanged(ListeningSocket before, ListeningSocket after) {
+    static boolean isChanged(ListeningSocket before, ListeningSocket after) {
         if (!Objects.equals(before.ProcessId, after.ProcessId)) return true;
         if (!Objects.equals(before.ProcessName, after.ProcessName)) return true;
         return !Objects.equals(before.Path, after.Path);
@@ -120,7 +625,7 @@ public final class SnapshotComparator {
      * Ordering is based on the textual representation of the {@link SocketKey}.
      */
     private static int byKey(ListeningSocket x, ListeningSocket y) {
-        return keyOf(x).toString().compareTo(keyOf(y).toString());
+        return BY_KEY.compare(x, y);
     }
 
     /**
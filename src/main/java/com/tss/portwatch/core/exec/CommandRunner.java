@@ -1,16 +1,27 @@
 package com.tss.portwatch.core.exec;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Executes external system commands in a controlled way.
@@ -19,10 +30,18 @@ import java.util.concurrent.TimeUnit;
  * <ul>
  *   <li>Launch a process from a command + arguments</li>
  *   <li>Capture stdout and stderr concurrently (prevents buffer deadlocks)</li>
+ *   <li>Optionally stream stdout to the caller while the process is still running</li>
  *   <li>Enforce a timeout (prevents hanging commands)</li>
- *   <li>Return exit code + output in a single immutable result</li>
+ *   <li>Return exit code + output + timing in a single immutable result</li>
  * </ul>
  * <p>
+ * Background work (stderr draining, timeout enforcement) runs on shared daemon executors
+ * instead of a thread pool created per call, so frequent polling does not pay for
+ * thread creation on every command.
+ * <p>
+ * Setting the system property {@code portwatch.trace=true} prints the timing of every
+ * command to stderr.
+ * <p>
  * This class does not interpret the command output; parsing is done elsewhere.
  */
 public final class CommandRunner {
@@ -31,12 +50,97 @@ public final class CommandRunner {
      * Immutable result of a command execution.
      *
      * @param exitCode process exit code
-     * @param stdout   full standard output of the command (UTF-8)
+     * @param stdout   full standard output of the command (UTF-8); empty when stdout was streamed
      * @param stderr   full error output of the command (UTF-8)
+     * @param timing   where the execution time went
+     */
+    public record Result(int exitCode, String stdout, String stderr, Timing timing) {
+    }
+
+    /**
+     * Timing of a single command execution. All values are nanoseconds measured from
+     * the moment the process was requested.
+     *
+     * @param spawnNanos     time until the process was started (fork/exec)
+     * @param firstByteNanos time until the first stdout byte was read, or -1 if there was no output
+     * @param exitNanos      time until the process exited
+     */
+    public record Timing(long spawnNanos, long firstByteNanos, long exitNanos) {
+
+        @Override
+        public String toString() {
+            return "spawn=" + millis(spawnNanos)
+                    + " firstByte=" + (firstByteNanos < 0 ? "-" : millis(firstByteNanos))
+                    + " exit=" + millis(exitNanos);
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Consumes the stdout of a running process.
+     * <p>
+     * The stream is read on the calling thread while the process runs. Anything left unread
+     * when the handler returns is discarded so the process can terminate.
      */
-    public record Result(int exitCode, String stdout, String stderr) {
+    @FunctionalInterface
+    public interface OutputHandler {
+        void accept(InputStream stdout) throws IOException;
     }
 
+    /**
+     * Receives stdout one line at a time, as a range of a reusable buffer
+     * (line terminator excluded, empty lines included).
+     * <p>
+     * The buffer content is only valid during the call: handlers must copy what they keep.
+     */
+    @FunctionalInterface
+    public interface LineHandler {
+        void line(char[] buf, int start, int end);
+    }
+
+    /**
+     * Timeout applied when the caller does not provide one.
+     */
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(15);
+
+    /**
+     * Upper bound of pooled stderr drain threads. Concurrent commands beyond this bound get
+     * a dedicated thread rather than waiting in a queue: a queued drain could let the process
+     * block on a full stderr pipe.
+     */
+    private static final int MAX_DRAIN_THREADS = 8;
+
+    /**
+     * Shared pool draining stderr of running commands. Idle threads expire after 30 seconds.
+     */
+    private static final ExecutorService DRAIN_POOL = new ThreadPoolExecutor(
+            0, MAX_DRAIN_THREADS,
+            30, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            daemonThreads("portwatch-exec-drain"),
+            (task, executor) -> daemonThreads("portwatch-exec-drain-extra").newThread(task).start()
+    );
+
+    /**
+     * Single shared timer that kills commands exceeding their timeout.
+     */
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(
+            daemonThreads("portwatch-exec-watchdog")
+    );
+
+    /**
+     * Whether per-command timing is printed to stderr.
+     */
+    private static final boolean TRACE = Boolean.getBoolean("portwatch.trace");
+
+    /**
+     * Initial size of the line buffer used by {@link #streamLines}. Grows only for longer lines.
+     */
+    private static final int LINE_BUFFER_SIZE = 8192;
+
     /**
      * Executes a command with a default timeout (15 seconds).
      *
@@ -46,14 +150,11 @@ public final class CommandRunner {
      * @throws InterruptedException if the calling thread is interrupted while waiting
      */
     public static Result run(List<String> cmd) throws IOException, InterruptedException {
-        return run(cmd, Duration.ofSeconds(15));
+        return run(cmd, DEFAULT_TIMEOUT);
     }
 
     /**
-     * Executes a command with a custom timeout.
-     * <p>
-     * Stdout and stderr are read in parallel to avoid deadlocks if the process
-     * writes enough output to fill OS buffers.
+     * Executes a command with a custom timeout and buffers its whole stdout.
      *
      * @param cmd     command and arguments
      * @param timeout maximum allowed execution time
@@ -63,32 +164,93 @@ public final class CommandRunner {
      * @throws RuntimeException     if the process exceeds the given timeout
      */
     public static Result run(List<String> cmd, Duration timeout) throws IOException, InterruptedException {
+        String[] out = {""};
+        Result r = stream(cmd, timeout, is -> out[0] = readAll(is));
+        return new Result(r.exitCode(), out[0], r.stderr(), r.timing());
+    }
+
+    /**
+     * Executes a command with the default timeout and hands its stdout to the caller line by line.
+     *
+     * @param cmd     command and arguments
+     * @param handler receives each stdout line as soon as it is produced
+     * @return execution result (exit code + stderr; stdout is empty)
+     * @throws IOException          if the process cannot be started or I/O fails
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws RuntimeException     if the process exceeds the default timeout
+     */
+    public static Result streamLines(List<String> cmd, LineHandler handler) throws IOException, InterruptedException {
+        return stream(cmd, DEFAULT_TIMEOUT, is -> readLines(is, handler));
+    }
+
+    /**
+     * Executes a command and hands its stdout stream to the caller while the process runs.
+     * <p>
+     * Parsing can therefore overlap with the process producing its output, and memory is
+     * bounded by whatever the handler keeps instead of the full output. Stderr is drained
+     * concurrently (prevents buffer deadlocks) and returned in the result.
+     * <p>
+     * Note: the exit code is only known once stdout is exhausted, so the handler may have
+     * consumed output of a command that later turns out to have failed.
+     *
+     * @param cmd     command and arguments
+     * @param timeout maximum allowed execution time
+     * @param handler consumes stdout
+     * @return execution result (exit code + stderr; stdout is empty)
+     * @throws IOException          if the process cannot be started, I/O fails or the handler fails
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws RuntimeException     if the process exceeds the given timeout
+     */
+    public static Result stream(List<String> cmd, Duration timeout, OutputHandler handler)
+            throws IOException, InterruptedException {
         ProcessBuilder pb = new ProcessBuilder(cmd);
 
         // Keep stdout and stderr separated so failures can be diagnosed.
         pb.redirectErrorStream(false);
 
+        long t0 = System.nanoTime();
         Process p = pb.start();
+        long spawned = System.nanoTime() - t0;
+
+        // Drain stderr and watch the timeout in the background; stdout is read on this thread.
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        Future<String> errF = DRAIN_POOL.submit(() -> readAll(p.getErrorStream()));
+        ScheduledFuture<?> watchdog = WATCHDOG.schedule(() -> {
+            if (p.isAlive()) {
+                timedOut.set(true);
+                p.destroyForcibly();
+            }
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
 
-        // Read stdout and stderr concurrently.
-        ExecutorService pool = Executors.newFixedThreadPool(2);
         try {
-            Future<String> outF = pool.submit(() -> readAll(p.getInputStream()));
-            Future<String> errF = pool.submit(() -> readAll(p.getErrorStream()));
+            FirstByteStream stdout = new FirstByteStream(p.getInputStream(), t0);
+            try (stdout) {
+                handler.accept(stdout);
+                discardRemaining(stdout);
+            } catch (IOException e) {
+                // A timeout kill closes the pipe under the reader: report the timeout instead.
+                if (!timedOut.get()) throw e;
+            }
 
             boolean finished = p.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
-            if (!finished) {
+            long exited = System.nanoTime() - t0;
+            if (!finished || timedOut.get()) {
                 p.destroyForcibly();
                 throw new RuntimeException("Command timeout after " + timeout + ": " + String.join(" ", cmd));
             }
 
             int code = p.exitValue();
-            String out = getFuture(outF);
             String err = getFuture(errF);
 
-            return new Result(code, out, err);
+            Timing timing = new Timing(spawned, stdout.firstByteNanos, exited);
+            if (TRACE) {
+                System.err.println("[exec] " + String.join(" ", cmd) + " -> " + code + " " + timing);
+            }
+
+            return new Result(code, "", err, timing);
         } finally {
-            pool.shutdownNow();
+            watchdog.cancel(false);
+            if (p.isAlive()) p.destroyForcibly();
         }
     }
 
@@ -106,6 +268,104 @@ public final class CommandRunner {
         }
     }
 
+    /**
+     * Reads a stream (a command's stdout, or a file such as a procfs table) line by line into a
+     * reusable buffer and hands each line to the handler. The stream is decoded as UTF-8 and is
+     * not closed.
+     * <p>
+     * Peak memory is one buffer (grown only if a single line exceeds it).
+     *
+     * @throws IOException if reading fails
+     */
+    public static void readLines(InputStream is, LineHandler handler) throws IOException {
+        Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+        char[] buf = new char[LINE_BUFFER_SIZE];
+        int len = 0;
+
+        while (true) {
+            if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+
+            int n = reader.read(buf, len, buf.length - len);
+            if (n < 0) break;
+
+            int scanFrom = len;
+            len += n;
+
+            // Emit every complete line currently in the buffer.
+            int start = 0;
+            for (int i = scanFrom; i < len; i++) {
+                if (buf[i] != '\n') continue;
+
+                int end = (i > start && buf[i - 1] == '\r') ? i - 1 : i;
+                handler.line(buf, start, end);
+                start = i + 1;
+            }
+
+            // Keep the incomplete tail for the next read.
+            System.arraycopy(buf, start, buf, 0, len - start);
+            len -= start;
+        }
+
+        // Last line without terminator
+        if (len > 0) {
+            int end = (buf[len - 1] == '\r') ? len - 1 : len;
+            handler.line(buf, 0, end);
+        }
+    }
+
+    /**
+     * Creates daemon threads so background executors never keep the JVM alive.
+     */
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Stdout wrapper recording when the first byte was read.
+     */
+    private static final class FirstByteStream extends FilterInputStream {
+        private final long t0;
+        long firstByteNanos = -1;
+
+        FirstByteStream(InputStream in, long t0) {
+            super(in);
+            this.t0 = t0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) mark();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) mark();
+            return n;
+        }
+
+        private void mark() {
+            if (firstByteNanos < 0) firstByteNanos = System.nanoTime() - t0;
+        }
+    }
+
+    /**
+     * Discards unread stdout so the process is not blocked on a full pipe.
+     */
+    private static void discardRemaining(InputStream is) {
+        try {
+            is.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException ignore) {
+            // Stream already closed by the handler
+        }
+    }
+
     /**
      * Reads all text from an InputStream using UTF-8 and returns it.
      *
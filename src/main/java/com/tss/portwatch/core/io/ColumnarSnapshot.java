@@ -0,0 +1,387 @@
+package com.tss.portwatch.core.io;
+
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.PortWatchMetadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar binary snapshot ({@code .pwc}) read through a memory mapping.
+ * <p>
+ * Meant for historical queries ("who listened on 8443 last Tuesday?") over many snapshots:
+ * opening a file maps it and reads a fixed header, and a lookup by port or by address is a binary
+ * search over the mapped columns. Only the matching rows are decoded into {@link ListeningSocket}s.
+ * <p>
+ * Layout (little-endian ints, every section 4-byte aligned):
+ * <pre>
+ *   header      magic "PWC1", rows, addresses, strings, machineId, os, timestamp (string ids)
+ *   ports       int[rows]       sorted ascending (then by address); null port = -1
+ *   addressIds  int[rows]       index into the address dictionary; null = -1
+ *   pids        int[rows]       null = -1
+ *   nameIds     int[rows]       index into the string table; null = -1
+ *   pathIds     int[rows]       index into the string table; null = -1
+ *   byAddress   int[rows]       row numbers sorted by (address id, port)
+ *   address dictionary          int[addresses + 1] offsets, then UTF-8 bytes (sorted by bytes)
+ *   string table                int[strings + 1] offsets, then UTF-8 bytes
+ * </pre>
+ * Files are written to a temporary file and renamed, and can sit next to the JSON snapshot they
+ * mirror. A mapping stays valid until the instance is garbage-collected; instances are immutable
+ * and safe to share between threads.
+ */
+public final class ColumnarSnapshot {
+
+    /**
+     * File extension of columnar snapshots.
+     */
+    public static final String EXTENSION = ".pwc";
+
+    private static final int MAGIC = 0x31435750; // "PWC1" read as a little-endian int
+    private static final int HEADER_INTS = 7;
+    private static final int NULL = -1;
+
+    private final ByteBuffer buf;
+    private final int rows;
+    private final int addressCount;
+    private final PortWatchMetadata metadata;
+
+    // Section offsets in bytes
+    private final int ports;
+    private final int addressIds;
+    private final int pids;
+    private final int nameIds;
+    private final int pathIds;
+    private final int byAddress;
+    private final int addressOffsets;
+    private final int addressBytes;
+    private final int stringOffsets;
+    private final int stringBytes;
+
+    private ColumnarSnapshot(ByteBuffer buf) throws IOException {
+        this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.capacity() < HEADER_INTS * 4 || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a columnar snapshot");
+        }
+
+        this.rows = buf.getInt(4);
+        this.addressCount = buf.getInt(8);
+        int stringCount = buf.getInt(12);
+
+        long pos = HEADER_INTS * 4L;
+        this.ports = section(pos);
+        this.addressIds = section(pos += 4L * rows);
+        this.pids = section(pos += 4L * rows);
+        this.nameIds = section(pos += 4L * rows);
+        this.pathIds = section(pos += 4L * rows);
+        this.byAddress = section(pos += 4L * rows);
+        this.addressOffsets = section(pos += 4L * rows);
+        this.addressBytes = section(pos += 4L * (addressCount + 1));
+        this.stringOffsets = section(pos += align(buf.getInt(addressOffsets + 4 * addressCount)));
+        this.stringBytes = section(pos + 4L * (stringCount + 1));
+
+        if (stringBytes + (long) buf.getInt(stringOffsets + 4 * stringCount) > buf.capacity()) {
+            throw new IOException("Truncated columnar snapshot");
+        }
+
+        this.metadata = new PortWatchMetadata(string(buf.getInt(16)), string(buf.getInt(20)), string(buf.getInt(24)));
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading
+    // -------------------------------------------------------------------------
+
+    /**
+     * Maps a columnar snapshot file. Only the header is read.
+     *
+     * @param file {@value #EXTENSION} file
+     * @return mapped snapshot
+     * @throws IOException if the file cannot be mapped or is not a valid columnar snapshot
+     */
+    public static ColumnarSnapshot open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ColumnarSnapshot(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        } catch (IOException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Failed to open columnar snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * @return metadata of the snapshot
+     */
+    public PortWatchMetadata metadata() {
+        return metadata;
+    }
+
+    /**
+     * @return number of sockets
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Returns the sockets listening on a port, in address order.
+     */
+    public List<ListeningSocket> findByPort(int port) {
+        List<ListeningSocket> out = new ArrayList<>();
+        for (int i = lowerBound(ports, port); i < rows && intAt(ports, i) == port; i++) {
+            out.add(row(i));
+        }
+        return out;
+    }
+
+    /**
+     * Returns the sockets bound to an address (exact text, e.g. "0.0.0.0" or "::1"), in port order.
+     */
+    public List<ListeningSocket> findByAddress(String address) {
+        List<ListeningSocket> out = new ArrayList<>();
+        int id = addressId(address);
+        if (id < 0) return out;
+
+        // byAddress is sorted by address id: binary search on the id of each referenced row.
+        int lo = 0;
+        int hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (intAt(addressIds, intAt(byAddress, mid)) < id) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int i = lo; i < rows; i++) {
+            int row = intAt(byAddress, i);
+            if (intAt(addressIds, row) != id) break;
+            out.add(row(row));
+        }
+        return out;
+    }
+
+    /**
+     * Decodes every socket, in port order.
+     */
+    public List<ListeningSocket> sockets() {
+        List<ListeningSocket> out = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) out.add(row(i));
+        return out;
+    }
+
+    /**
+     * Decodes one row.
+     */
+    private ListeningSocket row(int i) {
+        ListeningSocket s = new ListeningSocket();
+        int address = intAt(addressIds, i);
+        int port = intAt(ports, i);
+        int pid = intAt(pids, i);
+
+        s.LocalAddress = (address == NULL) ? null : utf8(addressOffsets, addressBytes, address);
+        s.LocalPort = (port == NULL) ? null : port;
+        s.ProcessId = (pid == NULL) ? null : pid;
+        s.ProcessName = string(intAt(nameIds, i));
+        s.Path = string(intAt(pathIds, i));
+        return s;
+    }
+
+    /**
+     * Binary search of the address dictionary, comparing UTF-8 bytes in place.
+     *
+     * @return address id, or -1 if the address does not occur in the snapshot
+     */
+    private int addressId(String address) {
+        if (address == null) return NULL;
+        byte[] key = address.getBytes(StandardCharsets.UTF_8);
+
+        int lo = 0;
+        int hi = addressCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int from = addressBytes + intAt(addressOffsets, mid);
+            int to = addressBytes + intAt(addressOffsets, mid + 1);
+            int c = compareUnsigned(from, to, key);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return NULL;
+    }
+
+    private int compareUnsigned(int from, int to, byte[] key) {
+        int n = Math.min(to - from, key.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(buf.get(from + i) & 0xFF, key[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return Integer.compare(to - from, key.length);
+    }
+
+    private int lowerBound(int section, int value) {
+        int lo = 0;
+        int hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (intAt(section, mid) < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int intAt(int section, int index) {
+        return buf.getInt(section + 4 * index);
+    }
+
+    private String string(int id) {
+        return (id == NULL) ? null : utf8(stringOffsets, stringBytes, id);
+    }
+
+    private String utf8(int offsets, int bytes, int id) {
+        int from = intAt(offsets, id);
+        int to = intAt(offsets, id + 1);
+        byte[] b = new byte[to - from];
+        buf.get(bytes + from, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static int section(long pos) throws IOException {
+        if (pos > Integer.MAX_VALUE) throw new IOException("Columnar snapshot too large");
+        return (int) pos;
+    }
+
+    private static int align(int n) {
+        return (n + 3) & ~3;
+    }
+
+    // -------------------------------------------------------------------------
+    // Writing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Writes a columnar snapshot.
+     *
+     * @param file    target {@value #EXTENSION} file (replaced if present)
+     * @param meta    snapshot metadata
+     * @param sockets snapshot content, in any order
+     * @return {@code file}
+     * @throws IOException if writing fails
+     */
+    public static Path write(Path file, PortWatchMetadata meta, List<ListeningSocket> sockets) throws IOException {
+        int n = sockets.size();
+
+        // Address dictionary, sorted by UTF-8 bytes so that ids follow the lookup order.
+        byte[][] addresses = sockets.stream()
+                .map(s -> s.LocalAddress)
+                .filter(a -> a != null)
+                .distinct()
+                .map(a -> a.getBytes(StandardCharsets.UTF_8))
+                .sorted(Arrays::compareUnsigned)
+                .toArray(byte[][]::new);
+        Map<String, Integer> addressIds = new HashMap<>();
+        for (int i = 0; i < addresses.length; i++) addressIds.put(new String(addresses[i], StandardCharsets.UTF_8), i);
+
+        StringTable strings = new StringTable();
+        int machineId = strings.id(meta.machineId());
+        int os = strings.id(meta.os());
+        int timestamp = strings.id(meta.timestamp());
+
+        // Rows sorted by (port, address id)
+        int[] addr = new int[n];
+        int[] port = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            ListeningSocket s = sockets.get(i);
+            addr[i] = (s.LocalAddress == null) ? NULL : addressIds.get(s.LocalAddress);
+            port[i] = (s.LocalPort == null) ? NULL : s.LocalPort;
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> port[i]).thenComparingInt(i -> addr[i]));
+
+        int[] ports = new int[n];
+        int[] addressColumn = new int[n];
+        int[] pids = new int[n];
+        int[] names = new int[n];
+        int[] paths = new int[n];
+        for (int r = 0; r < n; r++) {
+            int i = order[r];
+            ListeningSocket s = sockets.get(i);
+            ports[r] = port[i];
+            addressColumn[r] = addr[i];
+            pids[r] = (s.ProcessId == null) ? NULL : s.ProcessId;
+            names[r] = strings.id(s.ProcessName);
+            paths[r] = strings.id(s.Path);
+        }
+
+        // Secondary index: rows sorted by (address id, port); rows are already in port order.
+        Integer[] byAddress = new Integer[n];
+        for (int r = 0; r < n; r++) byAddress[r] = r;
+        Arrays.sort(byAddress, Comparator.comparingInt(r -> addressColumn[r]));
+
+        byte[][] stringBytes = strings.values.toArray(new byte[0][]);
+        int addressLength = totalLength(addresses);
+        long size = 4L * HEADER_INTS + 4L * 6 * n
+                + 4L * (addresses.length + 1) + align(addressLength)
+                + 4L * (stringBytes.length + 1) + totalLength(stringBytes);
+        if (size > Integer.MAX_VALUE) throw new IOException("Snapshot too large for the columnar format");
+
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(n).putInt(addresses.length).putInt(stringBytes.length)
+                .putInt(machineId).putInt(os).putInt(timestamp);
+        for (int v : ports) out.putInt(v);
+        for (int v : addressColumn) out.putInt(v);
+        for (int v : pids) out.putInt(v);
+        for (int v : names) out.putInt(v);
+        for (int v : paths) out.putInt(v);
+        for (int v : byAddress) out.putInt(v);
+        putTable(out, addresses);
+        out.position(out.position() + align(addressLength) - addressLength);
+        putTable(out, stringBytes);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.flip();
+            while (out.hasRemaining()) ch.write(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    private static void putTable(ByteBuffer out, byte[][] values) {
+        int offset = 0;
+        out.putInt(offset);
+        for (byte[] v : values) out.putInt(offset += v.length);
+        for (byte[] v : values) out.put(v);
+    }
+
+    private static int totalLength(byte[][] values) {
+        int total = 0;
+        for (byte[] v : values) total += v.length;
+        return total;
+    }
+
+    /**
+     * Interns process names, paths and metadata into one string table.
+     */
+    private static final class StringTable {
+        final List<byte[]> values = new ArrayList<>();
+        final Map<String, Integer> ids = new HashMap<>();
+
+        int id(String s) {
+            if (s == null) return NULL;
+            return ids.computeIfAbsent(s, k -> {
+                values.add(k.getBytes(StandardCharsets.UTF_8));
+                return values.size() - 1;
+            });
+        }
+    }
+}
@@ -0,0 +1,629 @@
+package com.tss.portwatch.core.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tss.portwatch.core.diff.DiffComposer;
+import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.model.DiffFile;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.PortWatchMetadata;
+import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Applies a {@link RetentionPolicy} to the snapshot and diff directories of one machine.
+ * <p>
+ * A pass does the following, oldest files first:
+ * <ul>
+ *   <li><b>Snapshot files</b>: within each retention period only the latest snapshot is kept;
+ *       snapshots older than the last tier are deleted. A delta snapshot whose base is deleted is
+ *       first rewritten as a keyframe, so delta chains never break; if that fails, the base is
+ *       kept. Columnar copies go with their snapshot.</li>
+ *   <li><b>Deduplicated snapshots</b>: the timeline is thinned the same way, along with the
+ *       columnar copies of the dropped entries; then blobs no longer referenced by any entry are
+ *       deleted.</li>
+ *   <li><b>Diff files</b>: empty diffs are deleted; in coarsened tiers, the diffs of one period are
+ *       merged into a single diff (named after the latest one) holding their net change (see
+ *       {@link DiffComposer}).</li>
+ * </ul>
+ * The latest snapshot and the latest diff are never touched, so head pointers stay valid; they
+ * are refreshed after a pass that deleted files.
+ * <p>
+ * Passes are incremental: each one touches at most {@code budget} files (reads, writes and
+ * deletes, including the delta chains read to rewrite keyframes), and the remaining work is picked
+ * up by the next pass. The only overrun is a delta chain longer than the whole budget, which is
+ * rewritten in one go so that passes always make progress. Diffs already checked for
+ * emptiness are remembered in a small state file next to the diff directory
+ * ({@code <machine>.retention}), so steady-state passes only read new diffs. This lets
+ * {@link #runIfDue} run between polls of the watch loop.
+ * <p>
+ * Compaction is not coordinated with other processes writing to the same directories; it should
+ * run in the process that writes them (or while no other writer is active). Journals are not
+ * compacted.
+ */
+public final class Compactor {
+
+    /**
+     * Default maximum number of files touched per pass.
+     */
+    public static final int DEFAULT_BUDGET = 256;
+
+    /**
+     * Minimum time between two passes of {@link #runIfDue}, unless the previous pass left work.
+     */
+    public static final Duration PASS_INTERVAL = Duration.ofMinutes(1);
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int TIMESTAMP_LENGTH = "yyyyMMdd-HHmmss".length();
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String DIFF_PREFIX = "diff-";
+    private static final String STATE_SUFFIX = ".retention";
+    private static final String CHECKED_THROUGH = "checkedThrough";
+
+    /**
+     * Outcome of one or more passes.
+     *
+     * @param snapshotsRemoved   snapshot files and timeline entries removed
+     * @param keyframesRewritten delta snapshots rewritten as keyframes before their base was removed
+     * @param blobsRemoved       unreferenced blobs deleted
+     * @param diffsRemoved       diff files deleted (empty, expired, or merged into a later one)
+     * @param diffsMerged        diff files rewritten as the merge of their period
+     * @param complete           true if the policy is fully applied (no work left for a next pass)
+     */
+    public record Result(int snapshotsRemoved, int keyframesRewritten, int blobsRemoved,
+                         int diffsRemoved, int diffsMerged, boolean complete) {
+
+        /**
+         * @return true if the pass changed nothing on disk
+         */
+        public boolean isEmpty() {
+            return snapshotsRemoved == 0 && keyframesRewritten == 0 && blobsRemoved == 0
+                    && diffsRemoved == 0 && diffsMerged == 0;
+        }
+
+        Result plus(Result o) {
+            return new Result(snapshotsRemoved + o.snapshotsRemoved, keyframesRewritten + o.keyframesRewritten,
+                    blobsRemoved + o.blobsRemoved, diffsRemoved + o.diffsRemoved, diffsMerged + o.diffsMerged,
+                    o.complete);
+        }
+    }
+
+    private final Path snapshotsDir;
+    private final Path diffsDir;
+    private final RetentionPolicy policy;
+    private final ObjectMapper om;
+    private final int budget;
+
+    private long lastPassNanos;
+    private boolean passed;
+    private boolean backlog;
+
+    // Blobs are only listed after the timeline changed (and once per instance).
+    private boolean blobsDirty = true;
+
+    /**
+     * Creates a compactor for one machine.
+     *
+     * @param snapshotsDir machine snapshot directory
+     * @param diffsDir     machine diff directory
+     * @param policy       retention policy
+     * @param om           object mapper used to read and rewrite files
+     * @param budget       maximum number of files touched per pass
+     */
+    public Compactor(Path snapshotsDir, Path diffsDir, RetentionPolicy policy, ObjectMapper om, int budget) {
+        if (budget < 2) throw new IllegalArgumentException("budget must be >= 2");
+        this.snapshotsDir = snapshotsDir;
+        this.diffsDir = diffsDir;
+        this.policy = policy;
+        this.om = om;
+        this.budget = budget;
+    }
+
+    /**
+     * Runs a pass if {@link #PASS_INTERVAL} has elapsed since the previous one, or if the previous
+     * pass ran out of budget.
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return result of the pass, or null if no pass was due
+     * @throws IOException if a directory cannot be listed or a file cannot be rewritten
+     */
+    public Result runIfDue(long nowNanos) throws IOException {
+        if (passed && !backlog && nowNanos - lastPassNanos < PASS_INTERVAL.toNanos()) return null;
+
+        passed = true;
+        lastPassNanos = nowNanos;
+        return runPass(LocalDateTime.now());
+    }
+
+    /**
+     * Runs passes until the policy is fully applied (one-shot runs).
+     *
+     * @param now reference time for file ages
+     * @return combined result
+     * @throws IOException if a directory cannot be listed or a file cannot be rewritten
+     */
+    public Result runAll(LocalDateTime now) throws IOException {
+        Result total = runPass(now);
+        while (!total.complete()) {
+            Result r = runPass(now);
+            if (r.isEmpty() && !r.complete()) break; // no progress possible
+            total = total.plus(r);
+        }
+        return total;
+    }
+
+    /**
+     * Runs one bounded pass.
+     *
+     * @param now reference time for file ages
+     * @return result of the pass
+     * @throws IOException if a directory cannot be listed or a file cannot be rewritten
+     */
+    public Result runPass(LocalDateTime now) throws IOException {
+        Pass p = new Pass(budget);
+
+        compactSnapshotFiles(p, now);
+        compactTimeline(p, now);
+        compactDiffs(p, now);
+
+        backlog = p.exhausted;
+        return new Result(p.snapshotsRemoved, p.keyframesRewritten, p.blobsRemoved,
+                p.diffsRemoved, p.diffsMerged, !p.exhausted);
+    }
+
+    // -------------------------------------------------------------------------
+    // Snapshots
+    // -------------------------------------------------------------------------
+
+    private void compactSnapshotFiles(Pass p, LocalDateTime now) throws IOException {
+        List<Path> files = list(snapshotsDir, SNAPSHOT_PREFIX);
+        if (files.size() < 2) return;
+
+        List<String> timestamps = new ArrayList<>(files.size());
+        for (Path f : files) timestamps.add(SnapshotIO.timestampOf(f));
+        boolean[] superseded = superseded(timestamps, now);
+
+        // Runs of superseded files are removed oldest first. The file surviving a run (the latest
+        // file is never superseded, so there is one) may be a delta on it: it must be confirmed as
+        // a keyframe, or rewritten as one, before the run goes.
+        boolean removed = false;
+        int limit = Integer.MAX_VALUE;
+        int i = 0;
+        while (i < files.size()) {
+            if (!superseded[i]) {
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (superseded[end]) end++;
+
+            // One unit is kept for reading the survivor.
+            int k = Math.min(Math.min(end - i, limit), p.remaining() - 1);
+            if (k < 1) {
+                p.exhausted = true;
+                break;
+            }
+            p.take();
+
+            Path survivor = files.get(i + k);
+            SnapshotFile w;
+            try {
+                w = SnapshotIO.readWrapper(survivor, om);
+            } catch (IOException e) {
+                // Cannot tell whether it depends on the run: keep the run.
+                i = end;
+                continue;
+            }
+
+            if (w.base() != null) {
+                // Rewrite cost: the bases of the chain, then the keyframe itself.
+                int cost = w.depth() + 1;
+                if (k + cost > p.remaining()) {
+                    if (k > 1) {
+                        // Retry with a shorter prefix of the run, i.e. another survivor.
+                        limit = Math.max(1, p.remaining() - cost);
+                        continue;
+                    }
+                    if (removed) {
+                        p.exhausted = true;
+                        break;
+                    }
+                    // Chain longer than the whole budget: rewrite it anyway, or no pass would ever
+                    // get past it.
+                }
+                p.spend(cost);
+                try {
+                    toKeyframe(survivor, w);
+                } catch (IOException e) {
+                    // Broken or unreadable chain: the run may still be needed.
+                    i = end;
+                    continue;
+                }
+                p.keyframesRewritten++;
+            }
+
+            for (int j = i; j < i + k; j++) {
+                p.take();
+                Path f = files.get(j);
+                Files.deleteIfExists(f);
+                Files.deleteIfExists(f.resolveSibling(SnapshotIO.stem(f.getFileName().toString()) + ColumnarSnapshot.EXTENSION));
+                p.snapshotsRemoved++;
+            }
+            removed = true;
+            limit = Integer.MAX_VALUE;
+            i += k;
+        }
+        if (removed) DirectoryHead.record(snapshotsDir, files.get(files.size() - 1), null);
+    }
+
+    /**
+     * Rewrites a delta snapshot as a keyframe holding its full socket list.
+     *
+     * @param file    delta snapshot
+     * @param wrapper its document, already read
+     * @throws IOException if the chain cannot be reconstructed or the file cannot be rewritten
+     */
+    private void toKeyframe(Path file, SnapshotFile wrapper) throws IOException {
+        List<ListeningSocket> sockets = SnapshotIO.reconstruct(file, wrapper, om);
+        SnapshotIO.replace(file, om, new SnapshotFile(wrapper.metadata(), true, SortedSockets.sort(sockets)));
+    }
+
+    private void compactTimeline(Pass p, LocalDateTime now) throws IOException {
+        if (!SnapshotTimeline.exists(snapshotsDir)) return;
+
+        List<SnapshotTimeline.Entry> entries = SnapshotTimeline.entries(snapshotsDir);
+        List<String> timestamps = new ArrayList<>(entries.size());
+        for (SnapshotTimeline.Entry e : entries) timestamps.add(e.timestamp());
+        boolean[] superseded = superseded(timestamps, now);
+
+        // Dropping entries costs a single rewrite of the timeline, whatever their number, plus one
+        // unit per columnar copy deleted with them (oldest entries first).
+        int dropped = 0;
+        for (boolean b : superseded) if (b) dropped++;
+        if (dropped > 0 && p.take()) {
+            Map<String, Path> columnar = columnarFiles();
+            List<SnapshotTimeline.Entry> kept = new ArrayList<>(entries.size());
+            List<Path> columnarRemoved = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                SnapshotTimeline.Entry e = entries.get(i);
+                Path c = superseded[i] ? columnar.get(e.timestamp()) : null;
+                if (!superseded[i] || (c != null && !p.take())) {
+                    kept.add(e);
+                } else if (c != null) {
+                    columnarRemoved.add(c);
+                }
+            }
+
+            // Copies go first: an entry may lose its copy, but no copy outlives its entry.
+            for (Path c : columnarRemoved) Files.deleteIfExists(c);
+            if (kept.size() < entries.size()) {
+                SnapshotTimeline.rewrite(snapshotsDir, kept);
+                p.snapshotsRemoved += entries.size() - kept.size();
+                blobsDirty = true;
+            }
+        }
+        if (!blobsDirty) return;
+
+        Path blobs = snapshotsDir.resolve(SnapshotTimeline.BLOB_DIR);
+        if (!Files.isDirectory(blobs)) {
+            blobsDirty = false;
+            return;
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (SnapshotTimeline.Entry e : SnapshotTimeline.entries(snapshotsDir)) referenced.add(e.hash());
+
+        boolean done = true;
+        for (Path blob : list(blobs, "")) {
+            if (referenced.contains(SnapshotIO.stem(blob.getFileName().toString()))) continue;
+            if (!p.take()) {
+                done = false;
+                break;
+            }
+            Files.deleteIfExists(blob);
+            p.blobsRemoved++;
+        }
+        blobsDirty = !done;
+    }
+
+    // -------------------------------------------------------------------------
+    // Diffs
+    // -------------------------------------------------------------------------
+
+    private void compactDiffs(Pass p, LocalDateTime now) throws IOException {
+        List<Path> files = list(diffsDir, DIFF_PREFIX);
+        if (files.size() < 2) return;
+
+        // The latest diff is never touched.
+        List<Path> candidates = new ArrayList<>(files.subList(0, files.size() - 1));
+        int before = p.diffsRemoved + p.diffsMerged;
+
+        // 1. Drop empty (and expired) diffs not checked yet.
+        String checkedThrough = loadCheckedThrough();
+        String checked = checkedThrough;
+        List<Path> remaining = new ArrayList<>(candidates.size());
+        for (Path f : candidates) {
+            String name = f.getFileName().toString();
+            if (checked != null && name.compareTo(checked) <= 0) {
+                remaining.add(f);
+                continue;
+            }
+            if (!p.take()) break;
+
+            if (periodOf(SnapshotIO.timestampOf(f), now) == null || isEmpty(f)) {
+                Files.deleteIfExists(f);
+                p.diffsRemoved++;
+            } else {
+                remaining.add(f);
+            }
+            checked = name;
+        }
+        if (!Objects.equals(checked, checkedThrough)) storeCheckedThrough(checked);
+
+        // 2. Merge the diffs of each coarsened period (only checked ones, i.e. a prefix of the list).
+        int i = 0;
+        while (i < remaining.size() && !p.exhausted) {
+            String period = periodOf(SnapshotIO.timestampOf(remaining.get(i)), now);
+            int end = i + 1;
+            while (end < remaining.size() && period != null && !isUnique(period)
+                    && period.equals(periodOf(SnapshotIO.timestampOf(remaining.get(end)), now))) {
+                end++;
+            }
+
+            if (period == null) {
+                // Older than the last tier.
+                if (!p.take()) break;
+                Files.deleteIfExists(remaining.get(i));
+                p.diffsRemoved++;
+            } else if (end - i > 1) {
+                mergeDiffs(p, remaining.subList(i, end));
+            }
+            i = end;
+        }
+
+        if (p.diffsRemoved + p.diffsMerged > before) {
+            DirectoryHead.record(diffsDir, files.get(files.size() - 1), null);
+        }
+    }
+
+    /**
+     * Merges the oldest diffs of one period (as many as the budget allows) into the last of them.
+     * A merge that cancels out entirely removes them all.
+     */
+    private void mergeDiffs(Pass p, List<Path> period) throws IOException {
+        int m = Math.min(period.size(), p.remaining() - 1);
+        if (m < 2) {
+            p.exhausted = true;
+            return;
+        }
+        if (m < period.size()) p.exhausted = true;
+
+        // Streamed: one diff file in memory at a time.
+        DiffComposer composer = new DiffComposer();
+        PortWatchMetadata metadata = null;
+        for (int k = 0; k < m; k++) {
+            p.take();
+            DiffFile d = SnapshotIO.readDiff(period.get(k), om);
+            composer.add(d.diff());
+            metadata = d.metadata();
+        }
+        SnapshotDiff merged = composer.result();
+
+        Path last = period.get(m - 1);
+        if (isEmpty(merged)) {
+            Files.deleteIfExists(last);
+            p.diffsRemoved++;
+        } else {
+            p.take();
+            SnapshotIO.replace(last, om, new DiffFile(metadata, merged));
+            p.diffsMerged++;
+        }
+
+        // Deleted only once the merged diff is in place.
+        for (int k = 0; k < m - 1; k++) {
+            Files.deleteIfExists(period.get(k));
+            p.diffsRemoved++;
+        }
+    }
+
+    private boolean isEmpty(Path diffFile) {
+        try {
+            return isEmpty(SnapshotIO.readDiff(diffFile, om).diff());
+        } catch (IOException e) {
+            // Unreadable: left alone.
+            return false;
+        }
+    }
+
+    private static boolean isEmpty(SnapshotDiff d) {
+        return d == null || (d.added().isEmpty() && d.removed().isEmpty() && d.changed().isEmpty());
+    }
+
+    // -------------------------------------------------------------------------
+    // Retention periods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Marks the entries that the policy removes: expired ones, and all but the latest of each
+     * period. The latest entry is always kept.
+     *
+     * @param timestamps entry timestamps, oldest first
+     */
+    private boolean[] superseded(List<String> timestamps, LocalDateTime now) {
+        boolean[] out = new boolean[timestamps.size()];
+        Set<String> seen = new HashSet<>();
+
+        for (int i = timestamps.size() - 1; i >= 0; i--) {
+            String period = periodOf(timestamps.get(i), now);
+            if (i == timestamps.size() - 1) {
+                if (period != null) seen.add(period);
+                continue;
+            }
+            out[i] = (period == null) || !seen.add(period);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the retention period of a timestamp: files sharing a period are thinned to one.
+     *
+     * @return period key; a unique key (see {@link #isUnique}) for files kept unconditionally
+     * (keep-all tier, or a name without a parsable timestamp); null if the file has expired
+     */
+    private String periodOf(String timestamp, LocalDateTime now) {
+        LocalDateTime t;
+        try {
+            t = LocalDateTime.parse(timestamp, TIMESTAMP);
+        } catch (DateTimeParseException e) {
+            return "=" + timestamp;
+        }
+
+        Duration age = Duration.between(t, now);
+        if (age.isNegative()) age = Duration.ZERO;
+
+        Duration granularity = policy.granularityFor(age);
+        if (granularity == null) return null;
+        if (granularity.isZero()) return "=" + timestamp;
+
+        long seconds = granularity.toSeconds();
+        return seconds + ":" + Math.floorDiv(t.toEpochSecond(ZoneOffset.UTC), seconds);
+    }
+
+    private static boolean isUnique(String period) {
+        return period.startsWith("=");
+    }
+
+    // -------------------------------------------------------------------------
+    // Files
+    // -------------------------------------------------------------------------
+
+    /**
+     * Data files of a directory with the given prefix, in name (= time) order.
+     */
+    private static List<Path> list(Path dir, String prefix) throws IOException {
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (var s = Files.list(dir)) {
+            return s.filter(f -> {
+                        String name = f.getFileName().toString();
+                        return name.startsWith(prefix) && SnapshotIO.isDataFile(name);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Columnar copies of the directory by timestamp (written next to deduplicated snapshots, which
+     * have no snapshot file of their own).
+     */
+    private Map<String, Path> columnarFiles() throws IOException {
+        Map<String, Path> out = new HashMap<>();
+        if (!Files.isDirectory(snapshotsDir)) return out;
+        try (var s = Files.list(snapshotsDir)) {
+            s.forEach(f -> {
+                String name = f.getFileName().toString();
+                if (!name.startsWith(SNAPSHOT_PREFIX) || !name.endsWith(ColumnarSnapshot.EXTENSION)) return;
+                String stem = name.substring(0, name.length() - ColumnarSnapshot.EXTENSION.length());
+                out.put(stem.substring(Math.max(0, stem.length() - TIMESTAMP_LENGTH)), f);
+            });
+        }
+        return out;
+    }
+
+    private Path stateFile() {
+        return diffsDir.resolveSibling(diffsDir.getFileName() + STATE_SUFFIX);
+    }
+
+    private String loadCheckedThrough() {
+        try {
+            Properties props = new Properties();
+            props.load(new StringReader(Files.readString(stateFile(), StandardCharsets.UTF_8)));
+            return props.getProperty(CHECKED_THROUGH);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Same write protocol as {@link DirectoryHead}: temporary file and atomic rename, failures
+     * ignored (the diffs are then simply checked again).
+     */
+    private void storeCheckedThrough(String name) {
+        Path state = stateFile();
+        Path tmp = state.resolveSibling(state.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, CHECKED_THROUGH + "=" + name + "\n", StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, state, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, state, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ignore) {
+            // Read-only directory: diffs are checked again next time
+        }
+    }
+
+    /**
+     * Budget and counters of one pass.
+     */
+    private static final class Pass {
+        private int remaining;
+        boolean exhausted;
+
+        int snapshotsRemoved;
+        int keyframesRewritten;
+        int blobsRemoved;
+        int diffsRemoved;
+        int diffsMerged;
+
+        Pass(int budget) {
+            this.remaining = budget;
+        }
+
+        /**
+         * Consumes one unit of budget.
+         *
+         * @return false (and marks the pass as exhausted) if none is left
+         */
+        boolean take() {
+            if (remaining == 0) {
+                exhausted = true;
+                return false;
+            }
+            remaining--;
+            return true;
+        }
+
+        int remaining() {
+            return remaining;
+        }
+
+        /**
+         * Consumes budget for work that must be done as a whole (at most what is left).
+         */
+        void spend(int units) {
+            remaining = Math.max(0, remaining - units);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.tss.portwatch.core.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Properties;
+
+/**
+ * Head pointer of a machine directory ({@code snapshots/<machine>} or {@code diffs/<machine>}):
+ * a small file next to the directory ({@code <machine>.head}) naming its latest file.
+ * <p>
+ * Finding the latest file otherwise means listing the whole directory, which gets slower as files
+ * accumulate. The head is trusted only while it matches the directory:
+ * <ul>
+ *   <li>it records the directory modification time seen when it was written; any file created,
+ *       renamed or deleted by someone else changes that time</li>
+ *   <li>the file it names must still exist</li>
+ * </ul>
+ * Otherwise (missing, unreadable or stale head) the directory is scanned once and the head is
+ * rewritten. A lookup therefore costs two {@code stat} calls and one small read.
+ * <p>
+ * Heads are written to a temporary file and renamed into place, so readers never see a partial
+ * head. Concurrent writers to the same directory are not coordinated: the head may then point to
+ * an older file, which the next writer or a stale check corrects.
+ */
+final class DirectoryHead {
+
+    private static final String HEAD_SUFFIX = ".head";
+    private static final String LATEST = "latest";
+    private static final String DIR_MODIFIED = "dirModified";
+
+    /**
+     * Returns the latest file of the directory (by name, since names embed a yyyyMMdd-HHmmss
+     * timestamp), repairing the head if needed.
+     *
+     * @param dir    directory to inspect
+     * @param prefix file name prefix, e.g. "snapshot-"
+     * @return latest matching file, or null if the directory does not exist or has none
+     * @throws IOException if the directory cannot be listed
+     */
+    static Path latest(Path dir, String prefix) throws IOException {
+        if (!Files.isDirectory(dir)) return null;
+
+        FileTime modified = Files.getLastModifiedTime(dir);
+        Properties head = load(headFile(dir));
+        if (head != null && modified.toString().equals(head.getProperty(DIR_MODIFIED))) {
+            String name = head.getProperty(LATEST);
+            if (name == null) return null;
+
+            Path file = dir.resolve(name);
+            if (Files.exists(file)) return file;
+        }
+
+        Path latest = scan(dir, prefix);
+        store(dir, latest, modified);
+        return latest;
+    }
+
+    /**
+     * Records a file just written to the directory.
+     *
+     * @param dir      directory holding the file
+     * @param written  file just written
+     * @param previous latest file before the write (from {@link #latest}), or null
+     */
+    static void record(Path dir, Path written, Path previous) throws IOException {
+        Path latest = written;
+        if (previous != null && previous.getFileName().toString().compareTo(written.getFileName().toString()) > 0) {
+            latest = previous;
+        }
+        store(dir, latest, Files.getLastModifiedTime(dir));
+    }
+
+    /**
+     * Head file of a directory: a sibling named after it, so writing the head does not change the
+     * directory's own modification time.
+     */
+    static Path headFile(Path dir) {
+        return dir.resolveSibling(dir.getFileName() + HEAD_SUFFIX);
+    }
+
+    /**
+     * Lists the directory and returns the matching file with the greatest name.
+     */
+    private static Path scan(Path dir, String prefix) throws IOException {
+        try (var s = Files.list(dir)) {
+            return s
+                    .filter(p -> p.getFileName().toString().startsWith(prefix)
+                            && SnapshotIO.isDataFile(p.getFileName().toString()))
+                    .max(Comparator.comparing(p -> p.getFileName().toString()))
+                    .orElse(null);
+        }
+    }
+
+    private static Properties load(Path head) {
+        try {
+            Properties p = new Properties();
+            p.load(new StringReader(Files.readString(head, StandardCharsets.UTF_8)));
+            return p;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the head through a temporary file and an atomic rename.
+     * A failure is ignored: the head is only a cache of the directory listing.
+     */
+    private static void store(Path dir, Path latest, FileTime modified) {
+        Path head = headFile(dir);
+        Path tmp = head.resolveSibling(head.getFileName() + ".tmp");
+
+        StringBuilder sb = new StringBuilder();
+        if (latest != null) sb.append(LATEST).append('=').append(latest.getFileName()).append('\n');
+        sb.append(DIR_MODIFIED).append('=').append(modified).append('\n');
+
+        try {
+            Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, head, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, head, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ignore) {
+            // Read-only or shared directory: lookups fall back to scanning
+        }
+    }
+
+    private DirectoryHead() {
+    }
+}
@@ -0,0 +1,82 @@
+package com.tss.portwatch.core.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Re-encodes an existing data directory in the current {@link SnapshotIO#format()} and
+ * compression setting.
+ * <p>
+ * Every snapshot, blob and diff document under {@code snapshots/} and {@code diffs/} is converted
+ * with {@link SnapshotIO#convert}; files already in the target encoding are skipped, so the
+ * migration can be re-run after an interruption. Documents are independent of each other, so they
+ * are converted in parallel on the common pool.
+ * <p>
+ * References between documents survive the rename: delta snapshots resolve their base by name
+ * stem, blobs are looked up by hash in any encoding, and head pointers naming a converted file
+ * are detected as stale and rebuilt on the next lookup. Journals and columnar files have their own
+ * binary layout and are not touched.
+ */
+public final class FormatMigration {
+
+    /**
+     * Outcome of a migration.
+     *
+     * @param scanned   data documents found
+     * @param converted documents re-encoded (the others were already in the target encoding)
+     */
+    public record Result(int scanned, int converted) {
+    }
+
+    /**
+     * Converts every data document below the base directory.
+     *
+     * @param baseDir base data directory (holding snapshots/ and diffs/)
+     * @param om      object mapper used for reading and writing
+     * @return number of documents found and converted
+     * @throws IOException if a directory cannot be listed or a document cannot be converted;
+     *                     documents converted before the failure stay converted
+     */
+    public static Result migrate(Path baseDir, ObjectMapper om) throws IOException {
+        List<Path> files = new ArrayList<>();
+        collect(baseDir.resolve("snapshots"), files);
+        collect(baseDir.resolve("diffs"), files);
+
+        try {
+            int converted = files.parallelStream()
+                    .mapToInt(f -> {
+                        try {
+                            return SnapshotIO.convert(f, om).equals(f) ? 0 : 1;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .sum();
+            return new Result(files.size(), converted);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void collect(Path root, List<Path> out) throws IOException {
+        if (!Files.isDirectory(root)) return;
+
+        try (var s = Files.walk(root)) {
+            s.filter(Files::isRegularFile)
+                    .filter(p -> SnapshotIO.isDataFile(p.getFileName().toString()))
+                    .forEach(out::add);
+        }
+    }
+
+    /**
+     * Utility class: no instances allowed.
+     */
+    private FormatMigration() {
+    }
+}
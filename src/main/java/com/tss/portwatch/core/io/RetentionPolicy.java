@@ -0,0 +1,152 @@
+package com.tss.portwatch.core.io;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tiered retention policy for snapshots and diffs.
+ * <p>
+ * A policy is a list of tiers ordered by age. Each tier covers files up to a maximum age and keeps
+ * at most one file per period of its granularity:
+ * <pre>
+ *   24h:all,30d:1h,*:1d
+ * </pre>
+ * keeps every file younger than 24 hours, one file per hour up to 30 days, and one file per day
+ * beyond that ({@code *} meaning forever). Files older than the last tier are deleted, so a policy
+ * ending with a finite age (e.g. {@code 24h:all,90d:1d}) also bounds the history.
+ * <p>
+ * Periods are aligned on the local calendar (hours, days) because file timestamps are local
+ * {@code yyyyMMdd-HHmmss} times. See {@link Compactor} for how the policy is applied.
+ */
+public final class RetentionPolicy {
+
+    /**
+     * Policy used by {@code --retention=default}.
+     */
+    public static final String DEFAULT_SPEC = "24h:all,30d:1h,*:1d";
+
+    /**
+     * One tier of the policy.
+     *
+     * @param maxAge      files up to this age belong to the tier; null means no limit
+     * @param granularity one file is kept per period of this length; {@link Duration#ZERO} keeps all
+     */
+    public record Tier(Duration maxAge, Duration granularity) {
+    }
+
+    private final List<Tier> tiers;
+
+    private RetentionPolicy(List<Tier> tiers) {
+        this.tiers = Collections.unmodifiableList(tiers);
+    }
+
+    /**
+     * @return the {@link #DEFAULT_SPEC} policy
+     */
+    public static RetentionPolicy defaults() {
+        return parse(DEFAULT_SPEC);
+    }
+
+    /**
+     * Parses a policy specification: comma-separated {@code <age>:<granularity>} tiers with
+     * increasing ages and non-decreasing granularities.
+     * <ul>
+     *   <li>age: a number with unit {@code m}, {@code h} or {@code d}, or {@code *} (last tier only)</li>
+     *   <li>granularity: {@code all}, or a number with unit {@code m}, {@code h} or {@code d}</li>
+     * </ul>
+     *
+     * @param spec specification, or "default" for {@link #DEFAULT_SPEC}
+     * @return parsed policy, or null if the specification is invalid
+     */
+    public static RetentionPolicy parse(String spec) {
+        if (spec == null) return null;
+        String s = spec.trim().toLowerCase();
+        if ("default".equals(s)) s = DEFAULT_SPEC;
+        if (s.isEmpty()) return null;
+
+        List<Tier> tiers = new ArrayList<>();
+        for (String part : s.split(",")) {
+            int colon = part.indexOf(':');
+            if (colon < 0) return null;
+            if (!tiers.isEmpty() && tiers.get(tiers.size() - 1).maxAge() == null) return null; // '*' must be last
+
+            String ageText = part.substring(0, colon).trim();
+            String granularityText = part.substring(colon + 1).trim();
+
+            Duration age = "*".equals(ageText) ? null : parseDuration(ageText);
+            Duration granularity = "all".equals(granularityText) ? Duration.ZERO : parseDuration(granularityText);
+            if ((age == null && !"*".equals(ageText)) || granularity == null) return null;
+
+            if (!tiers.isEmpty()) {
+                Tier prev = tiers.get(tiers.size() - 1);
+                if (age != null && age.compareTo(prev.maxAge()) <= 0) return null;
+                if (granularity.compareTo(prev.granularity()) < 0) return null;
+            }
+            tiers.add(new Tier(age, granularity));
+        }
+        return new RetentionPolicy(tiers);
+    }
+
+    /**
+     * @return tiers, youngest first
+     */
+    public List<Tier> tiers() {
+        return tiers;
+    }
+
+    /**
+     * Returns the granularity that applies to a file of the given age.
+     *
+     * @param age file age (negative ages, from clock changes, count as zero)
+     * @return granularity ({@link Duration#ZERO} to keep every file), or null if the file is older
+     * than the last tier and must be deleted
+     */
+    public Duration granularityFor(Duration age) {
+        for (Tier t : tiers) {
+            if (t.maxAge() == null || age.compareTo(t.maxAge()) <= 0) return t.granularity();
+        }
+        return null;
+    }
+
+    /**
+     * Parses a positive amount with unit m, h or d ("90m", "24h", "30d").
+     */
+    private static Duration parseDuration(String v) {
+        if (v.length() < 2) return null;
+
+        long amount;
+        try {
+            amount = Long.parseLong(v.substring(0, v.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (amount <= 0) return null;
+
+        return switch (v.charAt(v.length() - 1)) {
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            case 'd' -> Duration.ofDays(amount);
+            default -> null;
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Tier t : tiers) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(t.maxAge() == null ? "*" : format(t.maxAge())).append(':')
+                    .append(t.granularity().isZero() ? "all" : format(t.granularity()));
+        }
+        return sb.toString();
+    }
+
+    private static String format(Duration d) {
+        long minutes = d.toMinutes();
+        if (minutes % (24 * 60) == 0) return (minutes / (24 * 60)) + "d";
+        if (minutes % 60 == 0) return (minutes / 60) + "h";
+        return minutes + "m";
+    }
+}
@@ -1,15 +1,40 @@
 package com.tss.portwatch.core.io;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.tss.portwatch.core.diff.DiffComposer;
+import com.tss.portwatch.core.diff.IncrementalComparator;
+import com.tss.portwatch.core.diff.SnapshotComparator;
+import com.tss.portwatch.core.diff.SnapshotDiff;
 import com.tss.portwatch.core.model.DiffFile;
 import com.tss.portwatch.core.model.ListeningSocket;
 import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Comparator;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Centralizes all disk persistence for PortWatch.
@@ -17,10 +42,17 @@ import java.util.List;
  * Responsibilities:
  * <ul>
  *   <li>Resolve the base data directory (default, env override, or programmatic override)</li>
- *   <li>Expose standard subdirectories (snapshots / diffs)</li>
- *   <li>Locate the latest snapshot for a machine</li>
- *   <li>Read snapshot and diff JSON files</li>
- *   <li>Write JSON payloads to disk as pretty-printed JSON</li>
+ *   <li>Expose standard subdirectories (snapshots / diffs / journal)</li>
+ *   <li>Select the storage layout: one JSON file per snapshot and diff, or a
+ *       per-machine binary journal (see {@link SnapshotJournal})</li>
+ *   <li>Locate the latest snapshot / diff for a machine (via head pointers)</li>
+ *   <li>Read snapshot and diff JSON files, resolving delta-encoded snapshots</li>
+ *   <li>Compose the diffs of a time range into their net change (or compare its bounding snapshots)</li>
+ *   <li>Stream the sockets of a snapshot file row by row</li>
+ *   <li>Write snapshots as keyframes, as deltas against the previous snapshot, or as
+ *       deduplicated content-addressed blobs</li>
+ *   <li>Write payloads to disk as pretty-printed JSON or binary Smile (see {@link StorageFormat}),
+ *       optionally streamed through gzip</li>
  * </ul>
  * <p>
  * This class is intentionally small and "dumb": it does not decide when to persist,
@@ -34,6 +66,71 @@ public final class SnapshotIO {
      */
     private static volatile Path overrideBaseDir = null;
 
+    /**
+     * When true, snapshots and diffs are appended to a {@link SnapshotJournal}
+     * instead of being written as individual JSON files.
+     */
+    private static volatile boolean journalMode = false;
+
+    /**
+     * Every Nth snapshot file is written in full; the ones in between are stored as deltas.
+     * 1 (the default) writes every snapshot in full.
+     */
+    private static volatile int keyframeInterval = 1;
+
+    /**
+     * When true, snapshots are stored as content-addressed blobs plus a timeline entry
+     * (see {@link SnapshotTimeline}) instead of one file per snapshot.
+     */
+    private static volatile boolean dedup = false;
+
+    /**
+     * When true, JSON files are written gzip-compressed (compact, with a ".gz" suffix).
+     * Readers detect compression from the file content, whatever this setting.
+     */
+    private static volatile boolean compress = false;
+
+    /**
+     * When true, every snapshot is also written as a columnar {@link ColumnarSnapshot} file next
+     * to the JSON one, for historical queries.
+     */
+    private static volatile boolean columnar = false;
+
+    /**
+     * Optional programmatic override for the storage format (see {@link #format()}).
+     */
+    private static volatile StorageFormat overrideFormat = null;
+
+    /**
+     * Retention policy applied by the application after writing, or null to keep everything
+     * (see {@link Compactor}).
+     */
+    private static volatile RetentionPolicy retention = null;
+
+    /**
+     * Smile copy of the last mapper passed in, built on first use (see {@link #smileMapper}).
+     */
+    private static volatile SmileCopy smileCache = null;
+
+    private record SmileCopy(ObjectMapper base, ObjectMapper smile) {
+    }
+
+    /**
+     * Suffix appended to the name of compressed files.
+     */
+    public static final String GZIP_SUFFIX = ".gz";
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * First bytes of every Smile document (":)\n").
+     */
+    private static final byte[] SMILE_HEADER = {0x3A, 0x29, 0x0A};
+
+    private static final int TIMESTAMP_LENGTH = "yyyyMMdd-HHmmss".length();
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String DIFF_PREFIX = "diff-";
+
     /**
      * Overrides the base directory where PortWatch stores its data.
      * Typically set from the CLI flag --output-dir.
@@ -87,28 +184,188 @@ public final class SnapshotIO {
         return baseDataDir().resolve("diffs");
     }
 
+    /**
+     * Directory where per-machine binary journals are stored.
+     *
+     * @return journal directory
+     */
+    public static Path journalDir() {
+        return baseDataDir().resolve("journal");
+    }
+
+    /**
+     * Selects the storage layout.
+     * Typically set from the CLI flag --journal.
+     *
+     * @param enabled true to append to a binary journal, false to write JSON files
+     */
+    public static void setJournalMode(boolean enabled) {
+        journalMode = enabled;
+    }
+
+    /**
+     * @return true if snapshots and diffs go to a binary journal
+     */
+    public static boolean journalMode() {
+        return journalMode;
+    }
+
+    /**
+     * Sets how often snapshot files are written in full.
+     * Typically set from the CLI flag --keyframe-interval.
+     *
+     * @param interval 1 to write every snapshot in full, N to write one keyframe every N snapshots
+     *                 and deltas against the previous snapshot in between
+     */
+    public static void setKeyframeInterval(int interval) {
+        if (interval < 1) throw new IllegalArgumentException("keyframe interval must be >= 1");
+        keyframeInterval = interval;
+    }
+
+    /**
+     * @return keyframe interval used by {@link #writeSnapshot}
+     */
+    public static int keyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Enables content-addressed snapshot storage.
+     * Typically set from the CLI flag --dedup.
+     *
+     * @param enabled true to store each distinct socket list once and reference it from a timeline
+     */
+    public static void setDedup(boolean enabled) {
+        dedup = enabled;
+    }
+
+    /**
+     * @return true if snapshots are stored as deduplicated blobs
+     */
+    public static boolean dedup() {
+        return dedup;
+    }
+
+    /**
+     * Enables gzip compression of written JSON files.
+     * Typically set from the CLI flag --compress=gzip.
+     *
+     * @param enabled true to write compressed files
+     */
+    public static void setCompression(boolean enabled) {
+        compress = enabled;
+    }
+
+    /**
+     * @return true if written JSON files are gzip-compressed
+     */
+    public static boolean compression() {
+        return compress;
+    }
+
+    /**
+     * Enables columnar copies of snapshots.
+     * Typically set from the CLI flag --columnar.
+     *
+     * @param enabled true to write a {@value ColumnarSnapshot#EXTENSION} file with every snapshot
+     */
+    public static void setColumnar(boolean enabled) {
+        columnar = enabled;
+    }
+
+    /**
+     * @return true if snapshots also get a columnar copy
+     */
+    public static boolean columnar() {
+        return columnar;
+    }
+
+    /**
+     * Overrides the storage format of written files.
+     * Typically set from the CLI flag --format.
+     *
+     * @param format format to write, or null to fall back to the environment
+     */
+    public static void setFormat(StorageFormat format) {
+        overrideFormat = format;
+    }
+
+    /**
+     * Returns the storage format of written files.
+     * <p>
+     * Resolution order:
+     * <ol>
+     *   <li>Programmatic override via {@link #setFormat(StorageFormat)}</li>
+     *   <li>Environment variable PORTWATCH_FORMAT ("json" or "smile"; unknown values are ignored)</li>
+     *   <li>{@link StorageFormat#JSON}</li>
+     * </ol>
+     * Reading does not depend on this setting: the format of each file is detected from its content.
+     *
+     * @return format used by {@link #write}
+     */
+    public static StorageFormat format() {
+        if (overrideFormat != null) {
+            return overrideFormat;
+        }
+
+        StorageFormat env = StorageFormat.parse(System.getenv("PORTWATCH_FORMAT"));
+        return (env != null) ? env : StorageFormat.JSON;
+    }
+
+    /**
+     * Sets the retention policy.
+     * Typically set from the CLI flag --retention.
+     *
+     * @param policy policy to apply, or null to keep every file
+     */
+    public static void setRetention(RetentionPolicy policy) {
+        retention = policy;
+    }
+
+    /**
+     * @return retention policy, or null if files are kept forever
+     */
+    public static RetentionPolicy retention() {
+        return retention;
+    }
+
     /**
      * Returns the most recent snapshot file inside the given directory.
      * <p>
      * Selection strategy:
-     * - Only considers files named "snapshot-*.json"
+     * - Only considers files named "snapshot-*.json" or "snapshot-*.smile" (optionally with ".gz")
      * - Uses lexicographical ordering, which works because timestamps
      * in filenames are formatted as yyyyMMdd-HHmmss
+     * - Answers from the directory's head pointer when it is up to date, so the
+     * directory is only listed when the head is missing or stale (see {@link DirectoryHead})
+     * - If the directory has a deduplication timeline, its last entry competes by timestamp
+     * and resolves to the blob it references
      *
      * @param dir machine snapshot directory to inspect
-     * @return path to latest snapshot, or null if the directory does not exist or has no snapshots
+     * @return path to latest snapshot (a snapshot file or a blob), or null if the directory does
+     * not exist or has no snapshots
      * @throws IOException if directory listing fails
      */
     public static Path latestSnapshot(Path dir) throws IOException {
-        if (!Files.exists(dir)) return null;
+        Path file = DirectoryHead.latest(dir, SNAPSHOT_PREFIX);
 
-        try (var s = Files.list(dir)) {
-            return s
-                    .filter(p -> p.getFileName().toString().startsWith("snapshot-")
-                            && p.getFileName().toString().endsWith(".json"))
-                    .max(Comparator.comparing(p -> p.getFileName().toString()))
-                    .orElse(null);
+        SnapshotTimeline.Entry last = SnapshotTimeline.last(dir);
+        if (last != null && (file == null || last.timestamp().compareTo(timestampOf(file)) >= 0)) {
+            return SnapshotTimeline.blob(dir, last.hash());
         }
+        return file;
+    }
+
+    /**
+     * Returns the most recent diff file inside the given directory.
+     * Same strategy as {@link #latestSnapshot(Path)}, for "diff-*.json" files.
+     *
+     * @param dir machine diff directory to inspect
+     * @return path to latest diff, or null if the directory does not exist or has no diffs
+     * @throws IOException if directory listing fails
+     */
+    public static Path latestDiff(Path dir) throws IOException {
+        return DirectoryHead.latest(dir, DIFF_PREFIX);
     }
 
     /**
@@ -122,24 +379,129 @@ public final class SnapshotIO {
      * }
      * </pre>
      * <p>
-     * The returned list is never null.
+     * Delta documents ({@code "base"} and {@code "delta"} instead of {@code "sockets"}) are
+     * resolved by reading back to the closest keyframe and replaying the deltas in order.
+     * <p>
+     * The returned list is never null. If the file declares its sockets as sorted, the list is
+     * returned as {@link SortedSockets} so that diffs can use the merge path.
      *
      * @param file snapshot file to read
      * @param om   object mapper used for deserialization
      * @return sockets list, or an empty list if the file contains null sockets
-     * @throws IOException if parsing fails
+     * @throws IOException if parsing fails or a delta chain is broken
      */
     public static List<ListeningSocket> read(Path file, ObjectMapper om) throws IOException {
-        try {
-            SnapshotFile wrapper = om.readValue(file.toFile(), SnapshotFile.class);
-            return (wrapper.sockets() == null) ? List.of() : wrapper.sockets();
+        SnapshotFile wrapper = readWrapper(file, om);
+        return (wrapper.base() == null) ? socketsOf(wrapper) : reconstruct(file, wrapper, om);
+    }
+
+    /**
+     * Streams the sockets of a snapshot file into a consumer, one row at a time.
+     * <p>
+     * Unlike {@link #read(Path, ObjectMapper)}, the file is walked with a {@link JsonParser}:
+     * metadata is skipped and each element of {@code "sockets"} is decoded into a fresh
+     * {@link ListeningSocket} and handed to {@code sink} before the next one is parsed, so only one
+     * row is alive at a time (plus whatever the consumer keeps). Unknown fields are ignored and
+     * null elements skipped, as with full binding.
+     * <p>
+     * Delta documents cannot be streamed (they need their base chain); they are reconstructed with
+     * {@link #read(Path, ObjectMapper)} and then passed to the consumer.
+     *
+     * @param file snapshot file to read (plain or gzip-compressed)
+     * @param om   object mapper whose factory creates the parser
+     * @param sink receives every socket, in file order
+     * @throws IOException if parsing fails
+     */
+    public static void readSockets(Path file, ObjectMapper om, Consumer<ListeningSocket> sink) throws IOException {
+        boolean delta = false;
+
+        try (InputStream in = openInput(file); JsonParser p = mapperFor(in, om).getFactory().createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Snapshot file is not an object");
+            }
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+
+                if ("sockets".equals(field) && t == JsonToken.START_ARRAY) {
+                    while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                        if (t == JsonToken.START_OBJECT) {
+                            sink.accept(readSocket(p));
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                } else {
+                    if ("base".equals(field) && t != JsonToken.VALUE_NULL) delta = true;
+                    p.skipChildren();
+                }
+            }
         } catch (IOException e) {
             throw new IOException("Failed to read snapshot file: " + file, e);
         }
+
+        if (delta) read(file, om).forEach(sink);
     }
 
     /**
-     * Reads a diff JSON file into its wrapper type.
+     * Tells whether a snapshot file declares its sockets in canonical order, i.e. whether
+     * {@link #readSockets} will deliver them in that order. Only the fields before
+     * {@code "sockets"} are read: current versions write the flag first.
+     *
+     * @param file snapshot file to inspect (plain or gzip-compressed)
+     * @param om   object mapper whose factory creates the parser
+     * @return true if the flag is set; false if it is unset, missing, or follows the socket list
+     * @throws IOException if parsing fails
+     */
+    public static boolean isSorted(Path file, ObjectMapper om) throws IOException {
+        try (InputStream in = openInput(file); JsonParser p = mapperFor(in, om).getFactory().createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return false;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                if ("sorted".equals(field)) return t == JsonToken.VALUE_TRUE;
+                if ("sockets".equals(field)) return false;
+                p.skipChildren();
+            }
+            return false;
+        } catch (IOException e) {
+            throw new IOException("Failed to read snapshot file: " + file, e);
+        }
+    }
+
+    /**
+     * Decodes one socket object; the parser is positioned on its START_OBJECT.
+     */
+    private static ListeningSocket readSocket(JsonParser p) throws IOException {
+        ListeningSocket s = new ListeningSocket();
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.VALUE_NULL) continue;
+            if (t.isStructStart()) {
+                p.skipChildren();
+                continue;
+            }
+
+            switch (field) {
+                case "LocalAddress" -> s.LocalAddress = p.getValueAsString();
+                case "LocalPort" -> s.LocalPort = p.getValueAsInt();
+                case "ProcessId" -> s.ProcessId = p.getValueAsInt();
+                case "ProcessName" -> s.ProcessName = p.getValueAsString();
+                case "Path" -> s.Path = p.getValueAsString();
+                default -> {
+                    // Unknown field: ignored, as with @JsonIgnoreProperties(ignoreUnknown = true)
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Reads a diff file (JSON or Smile) into its wrapper type.
      *
      * @param file diff file to read
      * @param om   object mapper used for deserialization
@@ -147,12 +509,74 @@ public final class SnapshotIO {
      * @throws IOException if parsing fails
      */
     public static DiffFile readDiff(Path file, ObjectMapper om) throws IOException {
-        return om.readValue(file.toFile(), DiffFile.class);
+        try (InputStream in = openInput(file)) {
+            return mapperFor(in, om).readValue(in, DiffFile.class);
+        }
+    }
+
+    /**
+     * Opens a data file for reading, decompressing it if it starts with the gzip magic bytes.
+     * Decompression is streamed: the parser pulls from the inflater, the document is never
+     * held in memory as a whole.
+     * <p>
+     * The returned stream supports {@link InputStream#mark}, so that the document format can be
+     * detected from its first bytes.
+     *
+     * @param file file to open
+     * @return buffered input stream over the (decompressed) document
+     * @throws IOException if the file cannot be opened
+     */
+    public static InputStream openInput(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), STREAM_BUFFER_SIZE);
+        try {
+            in.mark(2);
+            int b1 = in.read();
+            int b2 = in.read();
+            in.reset();
+
+            if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b2 == (GZIPInputStream.GZIP_MAGIC >>> 8)) {
+                // Small buffer: it only has to hold the format header, larger reads bypass it.
+                return new BufferedInputStream(new GZIPInputStream(in, STREAM_BUFFER_SIZE), SMILE_HEADER.length);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Picks the mapper matching the document behind {@code in}: a Smile copy of {@code om} if the
+     * stream starts with the Smile header, else {@code om} itself. The stream is left unconsumed.
+     */
+    private static ObjectMapper mapperFor(InputStream in, ObjectMapper om) throws IOException {
+        in.mark(SMILE_HEADER.length);
+        byte[] head = in.readNBytes(SMILE_HEADER.length);
+        in.reset();
+        return Arrays.equals(head, SMILE_HEADER) ? smileMapper(om) : om;
     }
 
     /**
-     * Writes the given payload as pretty-printed JSON in the target directory.
+     * Returns a copy of {@code om} (same modules and settings) backed by a Smile factory.
+     * The copy is cached for the last mapper seen, which in practice is the application's only one.
+     */
+    private static ObjectMapper smileMapper(ObjectMapper om) {
+        SmileCopy cached = smileCache;
+        if (cached != null && cached.base() == om) return cached.smile();
+
+        ObjectMapper smile = om.copyWith(new SmileFactory());
+        smileCache = new SmileCopy(om, smile);
+        return smile;
+    }
+
+    /**
+     * Writes the given payload in the target directory, in the current {@link #format()}.
      * The directory is created if it does not exist.
+     * <p>
+     * {@code filename} is given with a ".json" extension; it is replaced by the extension of the
+     * format (see {@link #fileName(String)}). JSON is pretty-printed, Smile is binary.
+     * With {@link #compression()} enabled, the payload is written compact and streamed through
+     * gzip, and {@value #GZIP_SUFFIX} is appended to the file name.
      *
      * @param dir      target directory
      * @param filename output filename
@@ -163,11 +587,467 @@ public final class SnapshotIO {
      */
     public static Path write(Path dir, String filename, ObjectMapper om, Object data) throws IOException {
         Files.createDirectories(dir);
-        Path out = dir.resolve(filename);
-        om.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), data);
+        Path out = dir.resolve(fileName(filename));
+        writeTo(out, out.getFileName().toString(), om, data);
+        return out;
+    }
+
+    /**
+     * Replaces the content of a data file, keeping its encoding (taken from its name): the payload
+     * is written to a temporary file which is then renamed over {@code file}, so readers see either
+     * the old or the new document.
+     *
+     * @param file file to create or replace
+     * @param om   object mapper used for serialization
+     * @param data payload to write
+     * @throws IOException if writing fails
+     */
+    static void replace(Path file, ObjectMapper om, Object data) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        writeTo(tmp, file.getFileName().toString(), om, data);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes a payload to {@code out} in the encoding implied by {@code name}: Smile for ".smile",
+     * JSON otherwise, gzip-compressed when it ends with {@value #GZIP_SUFFIX}.
+     */
+    private static void writeTo(Path out, String name, ObjectMapper om, Object data) throws IOException {
+        boolean gzip = name.endsWith(GZIP_SUFFIX);
+        boolean smile = stripGzip(name).endsWith(StorageFormat.SMILE.extension());
+        if (!gzip) {
+            if (smile) {
+                smileMapper(om).writeValue(out.toFile(), data);
+            } else {
+                om.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), data);
+            }
+            return;
+        }
+
+        // The generator writes straight into the deflater.
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(out), STREAM_BUFFER_SIZE)) {
+            (smile ? smileMapper(om) : om).writeValue(os, data);
+        }
+    }
+
+    /**
+     * Re-encodes a data file in the current {@link #format()} and compression setting, keeping its
+     * name stem and directory, then deletes the original. Files already in the target encoding are
+     * left alone.
+     * <p>
+     * The document is converted as a tree, so any payload (snapshot, delta, blob, diff) survives
+     * unchanged. The new file is written to a temporary name and renamed, so a crash leaves either
+     * the original alone or both encodings of the same document.
+     *
+     * @param file data file to convert
+     * @param om   object mapper used for both sides of the conversion
+     * @return path of the file in the target encoding
+     * @throws IOException if reading or writing fails
+     */
+    public static Path convert(Path file, ObjectMapper om) throws IOException {
+        Path target = file.resolveSibling(fileName(stem(file.getFileName().toString()) + StorageFormat.JSON.extension()));
+        if (target.equals(file)) return file;
+
+        JsonNode tree;
+        try (InputStream in = openInput(file)) {
+            tree = mapperFor(in, om).readTree(in);
+        } catch (IOException e) {
+            throw new IOException("Failed to read data file: " + file, e);
+        }
+
+        replace(target, om, tree);
+        Files.delete(file);
+        return target;
+    }
+
+    /**
+     * Writes a snapshot file.
+     * <p>
+     * With a {@link #keyframeInterval()} above 1, the snapshot is stored as a delta against the
+     * latest snapshot in {@code dir}, unless that snapshot closes a run of {@code interval - 1}
+     * deltas, in which case a new keyframe is written. The first snapshot, and any snapshot whose
+     * predecessor cannot be read, is always a keyframe.
+     * <p>
+     * With {@link #dedup()} enabled, the snapshot is stored as a blob instead and the returned
+     * path is that blob (see {@link SnapshotTimeline}).
+     * <p>
+     * With {@link #columnar()} enabled, the full snapshot is also written as a columnar file named
+     * after {@code filename} (see {@link ColumnarSnapshot}), whatever the layout of the JSON side.
+     *
+     * @param dir      machine snapshot directory
+     * @param filename output filename
+     * @param om       object mapper used for serialization
+     * @param snapshot keyframe to write (sockets in canonical order)
+     * @return path to the written file
+     * @throws IOException if writing fails
+     */
+    public static Path writeSnapshot(Path dir, String filename, ObjectMapper om, SnapshotFile snapshot) throws IOException {
+        // Written first, so that the head recorded below already accounts for it.
+        if (columnar) {
+            ColumnarSnapshot.write(dir.resolve(stem(filename) + ColumnarSnapshot.EXTENSION), snapshot.metadata(), snapshot.sockets());
+        }
+
+        if (dedup) return writeBlob(dir, om, snapshot);
+
+        Path previous = DirectoryHead.latest(dir, SNAPSHOT_PREFIX);
+
+        // A snapshot rewritten with the same timestamp must not become a delta of itself: compare
+        // stems, since the name on disk carries the format extension and compression suffix.
+        boolean rewrite = previous != null && stem(previous.getFileName().toString()).equals(stem(filename));
+        int interval = keyframeInterval;
+        if (interval > 1 && previous != null && !rewrite) {
+            try {
+                SnapshotFile prev = readWrapper(previous, om);
+                int depth = (prev.base() == null) ? 0 : prev.depth();
+
+                if (depth + 1 < interval) {
+                    List<ListeningSocket> before = (prev.base() == null) ? socketsOf(prev) : reconstruct(previous, prev, om);
+                    SnapshotDiff delta = SnapshotComparator.compare(before, snapshot.sockets());
+                    snapshot = SnapshotFile.delta(snapshot.metadata(), previous.getFileName().toString(), depth + 1, delta);
+                }
+            } catch (IOException e) {
+                // Unreadable predecessor: start a new chain with a keyframe.
+            }
+        }
+
+        Path out = write(dir, filename, om, snapshot);
+        // Rewritten in another format or compression: drop the old copy, which nothing can depend on.
+        if (rewrite && !previous.equals(out)) Files.deleteIfExists(previous);
+        DirectoryHead.record(dir, out, rewrite ? null : previous);
+        return out;
+    }
+
+    /**
+     * Writes a diff file and updates the head pointer of its directory.
+     *
+     * @param dir      machine diff directory
+     * @param filename output filename
+     * @param om       object mapper used for serialization
+     * @param diff     diff payload to write
+     * @return path to the written file
+     * @throws IOException if writing fails
+     */
+    public static Path writeDiff(Path dir, String filename, ObjectMapper om, DiffFile diff) throws IOException {
+        Path previous = latestDiff(dir);
+        Path out = write(dir, filename, om, diff);
+        DirectoryHead.record(dir, out, previous);
+        return out;
+    }
+
+    /**
+     * Composes the diffs of a time range into their net change.
+     * <p>
+     * Diff files whose timestamp lies within {@code [from, to]} are read in time order and fed one
+     * at a time to a {@link DiffComposer}, so only one diff is held in memory at once. Since each
+     * diff holds the changes since the previous run, the result is the change between the last
+     * state recorded before {@code from} and the last state recorded up to {@code to}, provided every
+     * snapshot of the range has its diff. A snapshot written without one ({@code --snapshot} runs)
+     * moves the baseline silently, and the changes it absorbed are missing from the composition;
+     * {@link #rangeDiff} detects such gaps.
+     *
+     * @param dir  machine diff directory
+     * @param from first timestamp included (yyyyMMdd-HHmmss)
+     * @param to   last timestamp included (yyyyMMdd-HHmmss)
+     * @param om   object mapper used for deserialization
+     * @return composer fed with the diffs of the range (its {@link DiffComposer#size()} is the number
+     * of diff files read)
+     * @throws IOException if the directory cannot be listed or a diff cannot be read
+     */
+    public static DiffComposer composeDiffs(Path dir, String from, String to, ObjectMapper om) throws IOException {
+        DiffComposer composer = new DiffComposer();
+        for (Path f : diffFiles(dir, from, to)) composer.add(readDiff(f, om).diff());
+        return composer;
+    }
+
+    /**
+     * Net change over a time range, see {@link #rangeDiff}.
+     *
+     * @param diff          change between the last state recorded before {@code from} and the last
+     *                      state recorded up to {@code to}
+     * @param diffs         number of diff files composed (0 when the bounding snapshots were compared)
+     * @param fromSnapshots true if the range had a snapshot without diff and the bounding snapshots
+     *                      were compared instead of composing the diffs
+     */
+    public record RangeDiff(SnapshotDiff diff, int diffs, boolean fromSnapshots) {
+    }
+
+    /**
+     * Computes the net change over a time range.
+     * <p>
+     * The diffs of the range are composed (see {@link #composeDiffs}) as long as every snapshot of
+     * the range, except the very first snapshot of the machine (its baseline), has a diff with the
+     * same timestamp. Otherwise some change was only recorded in a snapshot, and the two snapshots
+     * bounding the range are compared instead: the last one before {@code from} (or the baseline if
+     * there is none) and the last one up to {@code to}. Both are read in full, whatever the number
+     * of runs in between. A diff removed for being empty (see {@link Compactor}) also counts as a
+     * gap; comparing the snapshots gives the same result.
+     *
+     * @param snapshotsDir machine snapshot directory (snapshot files and deduplication timeline)
+     * @param diffsDir     machine diff directory
+     * @param from         first timestamp included (yyyyMMdd-HHmmss)
+     * @param to           last timestamp included (yyyyMMdd-HHmmss)
+     * @param om           object mapper used for deserialization
+     * @return net change, and how it was obtained
+     * @throws IOException if a directory cannot be listed or a file cannot be read
+     */
+    public static RangeDiff rangeDiff(Path snapshotsDir, Path diffsDir, String from, String to, ObjectMapper om)
+            throws IOException {
+        List<Path> diffs = diffFiles(diffsDir, from, to);
+        TreeMap<String, Path> snapshots = snapshotsByTimestamp(snapshotsDir);
+
+        Set<String> recorded = new HashSet<>(diffs.size() * 2);
+        for (Path f : diffs) recorded.add(timestampOf(f));
+
+        boolean gap = false;
+        for (String ts : snapshots.subMap(from, true, to, true).keySet()) {
+            if (!recorded.contains(ts) && !ts.equals(snapshots.firstKey())) {
+                gap = true;
+                break;
+            }
+        }
+
+        if (!gap) {
+            DiffComposer composer = new DiffComposer();
+            for (Path f : diffs) composer.add(readDiff(f, om).diff());
+            return new RangeDiff(composer.result(), diffs.size(), false);
+        }
+
+        Map.Entry<String, Path> before = snapshots.lowerEntry(from);
+        Path beforeFile = (before == null) ? snapshots.firstEntry().getValue() : before.getValue();
+        Path afterFile = snapshots.floorEntry(to).getValue();
+
+        SnapshotComparator.SocketSource previous = sink -> readSockets(beforeFile, om, sink);
+        return new RangeDiff(SnapshotComparator.compare(previous, read(afterFile, om)), 0, true);
+    }
+
+    /**
+     * Lists the diff files whose timestamp lies within {@code [from, to]}, oldest first.
+     */
+    private static List<Path> diffFiles(Path dir, String from, String to) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+
+        try (var s = Files.list(dir)) {
+            return s.filter(p -> {
+                        String name = p.getFileName().toString();
+                        if (!name.startsWith(DIFF_PREFIX) || !isDataFile(name)) return false;
+                        String ts = timestampOf(p);
+                        return ts.compareTo(from) >= 0 && ts.compareTo(to) <= 0;
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Maps the timestamp of every snapshot of a machine directory to the file holding it: snapshot
+     * files, and blobs referenced by the deduplication timeline (which win on equal timestamps, as
+     * in {@link #latestSnapshot}).
+     */
+    private static TreeMap<String, Path> snapshotsByTimestamp(Path dir) throws IOException {
+        TreeMap<String, Path> out = new TreeMap<>();
+        if (!Files.isDirectory(dir)) return out;
+
+        try (var s = Files.list(dir)) {
+            s.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && isDataFile(name);
+                    })
+                    .forEach(p -> out.put(timestampOf(p), p));
+        }
+        for (SnapshotTimeline.Entry e : SnapshotTimeline.entries(dir)) {
+            out.put(e.timestamp(), SnapshotTimeline.blob(dir, e.hash()));
+        }
         return out;
     }
 
+    /**
+     * Lists the columnar copies of the snapshots recorded between two timestamps (see
+     * {@link #setColumnar}).
+     *
+     * @param dir  machine snapshot directory
+     * @param from first timestamp included (yyyyMMdd-HHmmss), or null for no lower bound
+     * @param to   last timestamp included (yyyyMMdd-HHmmss), or null for no upper bound
+     * @return {@value ColumnarSnapshot#EXTENSION} files, oldest first (empty if there are none)
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Path> columnarSnapshots(Path dir, String from, String to) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+
+        try (var s = Files.list(dir)) {
+            return s.filter(p -> {
+                        String name = p.getFileName().toString();
+                        if (!name.startsWith(SNAPSHOT_PREFIX) || !name.endsWith(ColumnarSnapshot.EXTENSION)) return false;
+                        String ts = name.substring(0, name.length() - ColumnarSnapshot.EXTENSION.length());
+                        if (ts.length() < TIMESTAMP_LENGTH) return false;
+                        ts = ts.substring(ts.length() - TIMESTAMP_LENGTH);
+                        return (from == null || ts.compareTo(from) >= 0) && (to == null || ts.compareTo(to) <= 0);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Content-addressed storage
+    // -------------------------------------------------------------------------
+
+    /**
+     * Stores the socket list as a blob named after its hash (only if no identical blob exists yet),
+     * then records the snapshot in the timeline.
+     * <p>
+     * The hash covers the compact JSON of the canonical socket list, so two snapshots share a blob
+     * exactly when they hold the same sockets. The blob keeps the metadata of the first snapshot
+     * that produced it. It is written to a temporary file and renamed, so an existing blob is
+     * always complete.
+     */
+    private static Path writeBlob(Path dir, ObjectMapper om, SnapshotFile snapshot) throws IOException {
+        List<ListeningSocket> sockets = SortedSockets.sort(snapshot.sockets());
+        String hash = sha256(om.writeValueAsBytes(sockets));
+
+        Path blob = SnapshotTimeline.blob(dir, hash);
+        if (!Files.exists(blob)) {
+            Files.createDirectories(blob.getParent());
+            replace(blob, om, new SnapshotFile(snapshot.metadata(), true, sockets));
+        }
+
+        SnapshotTimeline.append(dir, new SnapshotTimeline.Entry(snapshot.metadata().timestamp(), hash));
+        return blob;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Extracts the yyyyMMdd-HHmmss timestamp that ends a "snapshot-&lt;machine&gt;-&lt;ts&gt;.json[.gz]" name.
+     */
+    static String timestampOf(Path file) {
+        String name = stem(file.getFileName().toString());
+        int end = name.length();
+        return (end >= TIMESTAMP_LENGTH) ? name.substring(end - TIMESTAMP_LENGTH, end) : name;
+    }
+
+    // -------------------------------------------------------------------------
+    // File names
+    // -------------------------------------------------------------------------
+
+    /**
+     * Maps a ".json" file name to the name written with the current format and compression,
+     * e.g. "snapshot-x.json" to "snapshot-x.smile.gz".
+     *
+     * @param filename name ending in ".json"
+     * @return name on disk
+     */
+    public static String fileName(String filename) {
+        String name = stem(filename) + format().extension();
+        return compress ? name + GZIP_SUFFIX : name;
+    }
+
+    /**
+     * @return true if the name is a snapshot, blob or diff document in any format
+     */
+    static boolean isDataFile(String name) {
+        name = stripGzip(name);
+        for (StorageFormat f : StorageFormat.values()) {
+            if (name.endsWith(f.extension())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Strips the compression suffix and the format extension from a data file name.
+     */
+    static String stem(String name) {
+        name = stripGzip(name);
+        for (StorageFormat f : StorageFormat.values()) {
+            if (name.endsWith(f.extension())) return name.substring(0, name.length() - f.extension().length());
+        }
+        return name;
+    }
+
+    private static String stripGzip(String name) {
+        return name.endsWith(GZIP_SUFFIX) ? name.substring(0, name.length() - GZIP_SUFFIX.length()) : name;
+    }
+
+    /**
+     * Finds the document with the given stem in {@code dir}, whatever its format and compression.
+     *
+     * @return the existing file, or null if there is none
+     */
+    static Path existing(Path dir, String stem) {
+        for (StorageFormat f : StorageFormat.values()) {
+            Path plain = dir.resolve(stem + f.extension());
+            if (Files.exists(plain)) return plain;
+
+            Path compressed = dir.resolve(stem + f.extension() + GZIP_SUFFIX);
+            if (Files.exists(compressed)) return compressed;
+        }
+        return null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Delta resolution
+    // -------------------------------------------------------------------------
+
+    /**
+     * Reads the document of a snapshot file as stored (a delta document is not resolved).
+     */
+    static SnapshotFile readWrapper(Path file, ObjectMapper om) throws IOException {
+        try {
+            try (InputStream in = openInput(file)) {
+                return mapperFor(in, om).readValue(in, SnapshotFile.class);
+            }
+        } catch (IOException e) {
+            throw new IOException("Failed to read snapshot file: " + file, e);
+        }
+    }
+
+    private static List<ListeningSocket> socketsOf(SnapshotFile wrapper) {
+        List<ListeningSocket> sockets = (wrapper.sockets() == null) ? List.of() : wrapper.sockets();
+        return wrapper.sorted() ? SortedSockets.assumeSorted(sockets) : sockets;
+    }
+
+    /**
+     * Rebuilds a delta-encoded snapshot: follows the {@code base} links back to a keyframe,
+     * then replays the deltas from oldest to newest.
+     * <p>
+     * Each link must point to a sibling file with a strictly lower depth, which rules out cycles.
+     */
+    static SortedSockets reconstruct(Path file, SnapshotFile wrapper, ObjectMapper om) throws IOException {
+        Deque<SnapshotDiff> deltas = new ArrayDeque<>();
+        Path current = file;
+        SnapshotFile w = wrapper;
+
+        while (w.base() != null) {
+            if (w.delta() == null || w.base().contains("/") || w.base().contains("\\")) {
+                throw new IOException("Invalid delta snapshot: " + current);
+            }
+            deltas.push(w.delta());
+
+            // The base may have been re-encoded (see convert) since the delta was written.
+            Path base = current.resolveSibling(w.base());
+            if (!Files.exists(base)) {
+                Path other = existing(base.getParent(), stem(w.base()));
+                if (other != null) base = other;
+            }
+            SnapshotFile b = readWrapper(base, om);
+            int baseDepth = (b.base() == null) ? 0 : b.depth();
+            if (baseDepth >= w.depth()) {
+                throw new IOException("Broken delta chain: " + current + " -> " + base);
+            }
+            current = base;
+            w = b;
+        }
+
+        IncrementalComparator state = new IncrementalComparator(socketsOf(w));
+        while (!deltas.isEmpty()) state.applyDiff(deltas.pop());
+        return state.sockets();
+    }
+
     /**
      * Utility class: no instances allowed.
      */
@@ -0,0 +1,656 @@
+package com.tss.portwatch.core.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tss.portwatch.core.diff.IncrementalComparator;
+import com.tss.portwatch.core.diff.SnapshotComparator;
+import com.tss.portwatch.core.diff.SnapshotDiff;
+import com.tss.portwatch.core.model.DiffFile;
+import com.tss.portwatch.core.model.ListeningSocket;
+import com.tss.portwatch.core.model.PortWatchMetadata;
+import com.tss.portwatch.core.model.SnapshotFile;
+import com.tss.portwatch.core.model.SortedSockets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of snapshots and diffs for one machine.
+ * <p>
+ * Instead of one pretty-printed JSON file per snapshot and per diff, every run appends a record to
+ * the journal of the machine ({@code <base>/journal/<machine>/}):
+ * <ul>
+ *   <li><b>keyframe</b> records hold a full snapshot; one is written for the first snapshot and
+ *       then after every {@link #DEFAULT_KEYFRAME_INTERVAL} diff records</li>
+ *   <li><b>diff</b> records hold the {@link SnapshotDiff} against the previous state</li>
+ * </ul>
+ * The journal is split into segments ({@code journal-000001.bin}, {@code journal-000002.bin}, ...):
+ * each keyframe starts a new segment, so a segment holds one keyframe followed by its diffs. Opening
+ * the journal only reads the last segment, whatever the length of the history.
+ * <p>
+ * Segment layout: the 4-byte magic {@code PWJ1}, then records of
+ * <pre>
+ *   int    length   (type + payload, in bytes)
+ *   byte   type     (1 = keyframe, 2 = diff)
+ *   byte[] payload  (metadata, then sockets or diff lists)
+ *   int    crc32    (of type + payload)
+ * </pre>
+ * Every append is forced to disk before returning. A crash can only leave an incomplete record at
+ * the end of the last segment (or an incomplete new segment): readers stop at the first record that
+ * is incomplete or fails its CRC, and the writer truncates such a tail before appending. Reading
+ * never modifies the journal.
+ * <p>
+ * The state at any point in time is rebuilt from the segment starting at or before that time (see
+ * {@link #stateAt(String)}). {@link #exportJson} converts a journal back to the regular
+ * snapshot/diff JSON layout. A single-file {@value #LEGACY_FILE_NAME} written by earlier versions
+ * is read as the oldest segment and is continued until its next keyframe.
+ * <p>
+ * Instances cache the latest state and are not thread-safe.
+ */
+public final class SnapshotJournal {
+
+    /**
+     * Diff records between two keyframes.
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+    /**
+     * Single journal file written by earlier versions, read as segment 0.
+     */
+    public static final String LEGACY_FILE_NAME = "journal.bin";
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private static final byte[] MAGIC = {'P', 'W', 'J', '1'};
+    private static final byte KEYFRAME = 1;
+    private static final byte DIFF = 2;
+
+    /**
+     * Bytes around a payload: length, type and CRC.
+     */
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4;
+
+    private final Path dir;
+    private final int keyframeInterval;
+
+    // Writer state, loaded on first use
+    private boolean loaded;
+    private SortedSockets latest;
+    private String latestTimestamp;
+    private int diffsSinceKeyframe;
+    private Segment tail;
+    private long tailValidEnd;
+
+    /**
+     * Opens (without reading yet) the journal stored in a machine directory.
+     *
+     * @param machineDir directory holding the journal segments
+     */
+    public SnapshotJournal(Path machineDir) {
+        this(machineDir, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Opens (without reading yet) the journal stored in a machine directory.
+     *
+     * @param machineDir       directory holding the journal segments
+     * @param keyframeInterval diff records between two keyframes
+     */
+    public SnapshotJournal(Path machineDir, int keyframeInterval) {
+        if (keyframeInterval < 1) throw new IllegalArgumentException("keyframeInterval must be >= 1");
+        this.dir = machineDir;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * @return directory holding the journal segments
+     */
+    public Path dir() {
+        return dir;
+    }
+
+    /**
+     * @return true if the journal holds at least one valid record
+     */
+    public boolean exists() throws IOException {
+        load();
+        return latest != null;
+    }
+
+    /**
+     * Returns the segment file holding the last record, or null if the journal is empty.
+     */
+    public Path tail() throws IOException {
+        load();
+        return latest == null ? null : tail.file();
+    }
+
+    /**
+     * Returns the state after the last record, or null if the journal is empty.
+     */
+    public SortedSockets latest() throws IOException {
+        load();
+        return latest;
+    }
+
+    /**
+     * Returns the timestamp of the last record, or null if the journal is empty.
+     */
+    public String latestTimestamp() throws IOException {
+        load();
+        return latestTimestamp;
+    }
+
+    /**
+     * Appends a snapshot, computing its diff against the previous state.
+     *
+     * @see #append(PortWatchMetadata, List, SnapshotDiff)
+     */
+    public Path append(PortWatchMetadata meta, List<ListeningSocket> sockets) throws IOException {
+        return append(meta, sockets, null);
+    }
+
+    /**
+     * Appends a snapshot.
+     * <p>
+     * The first snapshot is stored as a keyframe. Later ones are stored as a diff against the
+     * previous state, followed by a keyframe in a new segment once {@code keyframeInterval} diffs
+     * have accumulated.
+     *
+     * @param meta    snapshot metadata (timestamp in yyyyMMdd-HHmmss format)
+     * @param sockets snapshot content
+     * @param diff    diff from {@link #latest()} to {@code sockets} if the caller already computed
+     *                it, or null to compute it here
+     * @return path of the segment written last
+     * @throws IOException if writing fails
+     */
+    public Path append(PortWatchMetadata meta, List<ListeningSocket> sockets, SnapshotDiff diff) throws IOException {
+        load();
+        SortedSockets current = SortedSockets.sort(sockets);
+
+        Files.createDirectories(dir);
+        if (latest == null) {
+            startSegment(1, meta, current);
+        } else {
+            appendToTail(encodeDiff(meta, diff != null ? diff : SnapshotComparator.compare(latest, current)));
+            if (++diffsSinceKeyframe >= keyframeInterval) {
+                startSegment(tail.seq() + 1, meta, current);
+            }
+        }
+
+        latest = current;
+        latestTimestamp = meta.timestamp();
+        return tail.file();
+    }
+
+    /**
+     * Rebuilds the snapshot as it was at a given time.
+     *
+     * @param timestamp time in yyyyMMdd-HHmmss format
+     * @return state after the last record at or before {@code timestamp}, or null if there is none
+     * @throws IOException if the journal cannot be read
+     */
+    public SortedSockets stateAt(String timestamp) throws IOException {
+        List<Segment> segments = segments();
+
+        // Latest segment starting at or before the requested time
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Path file = segments.get(i).file();
+            String first = firstTimestamp(file);
+            if (first == null || first.compareTo(timestamp) > 0) continue;
+
+            List<RecordRef> refs = scan(file);
+
+            // Closest keyframe at or before the requested time (segments start with one)
+            int start = -1;
+            for (int j = 0; j < refs.size(); j++) {
+                RecordRef r = refs.get(j);
+                if (r.timestamp.compareTo(timestamp) > 0) break;
+                if (r.type == KEYFRAME) start = j;
+            }
+            if (start < 0) continue;
+
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                IncrementalComparator state = null;
+                for (int j = start; j < refs.size(); j++) {
+                    RecordRef r = refs.get(j);
+                    if (r.timestamp.compareTo(timestamp) > 0) break;
+                    state = replay(state, r, readPayload(ch, r));
+                }
+                return state.sockets();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Exports the journal to the JSON layout used without journal: one snapshot file per record
+     * under {@code snapshotsDir} and one diff file per diff record under {@code diffsDir}.
+     *
+     * @return number of snapshot files written
+     * @throws IOException if reading or writing fails
+     */
+    public int exportJson(Path snapshotsDir, Path diffsDir, ObjectMapper om) throws IOException {
+        int written = 0;
+        IncrementalComparator state = null;
+        String lastSnapshotTs = null;
+
+        for (Segment segment : segments()) {
+            List<RecordRef> refs = scan(segment.file());
+
+            try (FileChannel ch = FileChannel.open(segment.file(), StandardOpenOption.READ)) {
+                for (RecordRef r : refs) {
+                    byte[] payload = readPayload(ch, r);
+                    state = replay(state, r, payload);
+
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                    PortWatchMetadata meta = readMetadata(in);
+                    String prefix = "-" + meta.machineId() + "-" + meta.timestamp() + ".json";
+
+                    if (r.type == DIFF) {
+                        SnapshotDiff diff = readDiff(in);
+                        SnapshotIO.write(diffsDir, "diff" + prefix, om, new DiffFile(meta, diff));
+                    }
+
+                    // A keyframe written right after a diff shares its timestamp: one snapshot file only.
+                    if (!meta.timestamp().equals(lastSnapshotTs)) {
+                        SnapshotIO.write(snapshotsDir, "snapshot" + prefix, om, new SnapshotFile(meta, true, state.sockets()));
+                        lastSnapshotTs = meta.timestamp();
+                        written++;
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    // -------------------------------------------------------------------------
+    // Writing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Appends a record to the tail segment, after dropping an incomplete or corrupt tail left by
+     * a crash.
+     */
+    private void appendToTail(byte[] record) throws IOException {
+        try (FileChannel ch = FileChannel.open(tail.file(), StandardOpenOption.WRITE)) {
+            if (ch.size() > tailValidEnd) ch.truncate(tailValidEnd);
+            writeFully(ch, ByteBuffer.wrap(record), tailValidEnd);
+            ch.force(false);
+        }
+        tailValidEnd += record.length;
+    }
+
+    /**
+     * Starts a new segment with a keyframe. An incomplete segment left under the same name by a
+     * crash is overwritten.
+     */
+    private void startSegment(long seq, PortWatchMetadata meta, SortedSockets current) throws IOException {
+        Segment segment = new Segment(seq, dir.resolve(segmentName(seq)));
+        byte[] record = encodeKeyframe(meta, current);
+
+        try (FileChannel ch = FileChannel.open(segment.file(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(ch, ByteBuffer.wrap(MAGIC), 0);
+            writeFully(ch, ByteBuffer.wrap(record), MAGIC.length);
+            ch.force(false);
+        }
+
+        tail = segment;
+        tailValidEnd = MAGIC.length + record.length;
+        diffsSinceKeyframe = 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading
+    // -------------------------------------------------------------------------
+
+    /**
+     * Loads the latest state from the last segment holding a valid record. Nothing is modified:
+     * an incomplete tail is only remembered ({@link #tailValidEnd}) and dropped by the next append.
+     */
+    private void load() throws IOException {
+        if (loaded) return;
+
+        List<Segment> segments = segments();
+        for (int i = segments.size() - 1; i >= 0 && latest == null; i--) {
+            Segment segment = segments.get(i);
+            List<RecordRef> refs = scan(segment.file());
+            if (refs.isEmpty()) continue; // crashed while starting this segment: the previous one is the tail
+
+            int start = 0;
+            for (int j = 0; j < refs.size(); j++) {
+                if (refs.get(j).type == KEYFRAME) start = j;
+            }
+
+            try (FileChannel ch = FileChannel.open(segment.file(), StandardOpenOption.READ)) {
+                IncrementalComparator state = null;
+                for (int j = start; j < refs.size(); j++) {
+                    state = replay(state, refs.get(j), readPayload(ch, refs.get(j)));
+                }
+
+                RecordRef last = refs.get(refs.size() - 1);
+                latest = state.sockets();
+                latestTimestamp = last.timestamp;
+                diffsSinceKeyframe = refs.size() - 1 - start;
+                tail = segment;
+                tailValidEnd = last.offset + RECORD_OVERHEAD + last.payloadLength;
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Lists the segments of the journal, oldest first.
+     */
+    private List<Segment> segments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return segments;
+
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                long seq = segmentSeq(p.getFileName().toString());
+                if (seq >= 0) segments.add(new Segment(seq, p));
+            }
+        }
+        segments.sort(Comparator.comparingLong(Segment::seq));
+        return segments;
+    }
+
+    private static String segmentName(long seq) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return sequence number of a segment file name (0 for the legacy single file), or -1
+     */
+    private static long segmentSeq(String name) {
+        if (LEGACY_FILE_NAME.equals(name)) return 0;
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return -1;
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the timestamp of the first record of a segment without checking its CRC.
+     *
+     * @return timestamp, or null if the segment holds no complete record header
+     */
+    private static String firstTimestamp(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (!hasMagic(ch, file)) return null;
+
+            ByteBuffer head = ByteBuffer.allocate(5 + 2);
+            if (readFully(ch, head, MAGIC.length) < head.capacity()) return null;
+            head.flip();
+            head.position(5);
+
+            ByteBuffer ts = ByteBuffer.allocate(2 + (head.getShort() & 0xFFFF));
+            if (readFully(ch, ts, MAGIC.length + 5) < ts.capacity()) return null;
+            return new DataInputStream(new ByteArrayInputStream(ts.array())).readUTF();
+        }
+    }
+
+    /**
+     * Lists the valid records of a segment, stopping at the first incomplete or corrupt one.
+     * Only the record headers and timestamps are read, plus the CRC check of each record.
+     */
+    private static List<RecordRef> scan(Path file) throws IOException {
+        List<RecordRef> refs = new ArrayList<>();
+        if (!Files.exists(file)) return refs;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (!hasMagic(ch, file)) return refs;
+
+            long size = ch.size();
+            long pos = MAGIC.length;
+            ByteBuffer header = ByteBuffer.allocate(5);
+            while (pos + RECORD_OVERHEAD <= size) {
+                header.clear();
+                if (readFully(ch, header, pos) < 5) break;
+                header.flip();
+
+                int length = header.getInt();
+                byte type = header.get();
+                if (length < 1 || (type != KEYFRAME && type != DIFF) || pos + 4 + length + 4 > size) break;
+
+                RecordRef ref = new RecordRef(pos, type, length - 1);
+                byte[] payload = readPayload(ch, ref);
+                if (payload == null) break;
+
+                ref.timestamp = new DataInputStream(new ByteArrayInputStream(payload)).readUTF();
+                refs.add(ref);
+                pos += RECORD_OVERHEAD + ref.payloadLength;
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Checks the magic of a segment.
+     *
+     * @return false if the segment is too short to hold it (a segment interrupted by a crash)
+     * @throws IOException if the file is not a journal segment
+     */
+    private static boolean hasMagic(FileChannel ch, Path file) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        if (readFully(ch, magic, 0) < MAGIC.length) return false;
+        if (!magic.flip().equals(ByteBuffer.wrap(MAGIC))) throw new IOException("Not a PortWatch journal: " + file);
+        return true;
+    }
+
+    /**
+     * Reads and CRC-checks the payload of a record.
+     *
+     * @return payload, or null if the CRC does not match
+     */
+    private static byte[] readPayload(FileChannel ch, RecordRef r) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 + r.payloadLength + 4);
+        if (readFully(ch, buf, r.offset + 4) < buf.capacity()) return null;
+        buf.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, 1 + r.payloadLength);
+        if ((int) crc.getValue() != buf.getInt(1 + r.payloadLength)) return null;
+
+        byte[] payload = new byte[r.payloadLength];
+        System.arraycopy(buf.array(), 1, payload, 0, r.payloadLength);
+        return payload;
+    }
+
+    /**
+     * Applies one record to the state being rebuilt. The first record must be a keyframe.
+     */
+    private static IncrementalComparator replay(IncrementalComparator state, RecordRef r, byte[] payload) throws IOException {
+        if (payload == null) throw new IOException("Corrupt journal record at offset " + r.offset);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        readMetadata(in);
+
+        if (r.type == KEYFRAME) {
+            List<ListeningSocket> sockets = readSockets(in);
+            if (state == null) return new IncrementalComparator(SortedSockets.assumeSorted(sockets));
+            state.applySnapshot(SortedSockets.assumeSorted(sockets));
+            return state;
+        }
+
+        if (state == null) throw new IOException("Journal diff record without a preceding keyframe at offset " + r.offset);
+
+        state.applyDiff(readDiff(in));
+        return state;
+    }
+
+    // -------------------------------------------------------------------------
+    // Encoding
+    // -------------------------------------------------------------------------
+
+    private static byte[] encodeKeyframe(PortWatchMetadata meta, List<ListeningSocket> sockets) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeMetadata(out, meta);
+        writeSockets(out, sockets);
+        return frame(KEYFRAME, bytes.toByteArray());
+    }
+
+    private static byte[] encodeDiff(PortWatchMetadata meta, SnapshotDiff diff) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeMetadata(out, meta);
+        writeSockets(out, diff.added());
+        writeSockets(out, diff.removed());
+        out.writeInt(diff.changed().size());
+        for (SnapshotDiff.Changed c : diff.changed()) {
+            writeSocket(out, c.before());
+            writeSocket(out, c.after());
+        }
+        return frame(DIFF, bytes.toByteArray());
+    }
+
+    /**
+     * Wraps a payload into a record: length, type, payload, CRC.
+     */
+    private static byte[] frame(byte type, byte[] payload) {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        buf.putInt(1 + payload.length);
+        buf.put(type);
+        buf.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 4, 1 + payload.length);
+        buf.putInt((int) crc.getValue());
+        return buf.array();
+    }
+
+    /**
+     * Metadata is written timestamp first: {@link #scan} reads it without decoding the rest.
+     */
+    private static void writeMetadata(DataOutputStream out, PortWatchMetadata meta) throws IOException {
+        out.writeUTF(meta.timestamp());
+        writeNullable(out, meta.machineId());
+        writeNullable(out, meta.os());
+    }
+
+    private static PortWatchMetadata readMetadata(DataInputStream in) throws IOException {
+        String ts = in.readUTF();
+        String machineId = readNullable(in);
+        String os = readNullable(in);
+        return new PortWatchMetadata(machineId, os, ts);
+    }
+
+    private static void writeSockets(DataOutputStream out, List<ListeningSocket> sockets) throws IOException {
+        out.writeInt(sockets.size());
+        for (ListeningSocket s : sockets) writeSocket(out, s);
+    }
+
+    private static List<ListeningSocket> readSockets(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<ListeningSocket> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(readSocket(in));
+        return out;
+    }
+
+    private static SnapshotDiff readDiff(DataInputStream in) throws IOException {
+        List<ListeningSocket> added = readSockets(in);
+        List<ListeningSocket> removed = readSockets(in);
+
+        int n = in.readInt();
+        List<SnapshotDiff.Changed> changed = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) changed.add(new SnapshotDiff.Changed(readSocket(in), readSocket(in)));
+        return new SnapshotDiff(added, removed, changed);
+    }
+
+    /**
+     * Socket encoding: a presence mask (bit per field), then the fields that are present.
+     */
+    private static void writeSocket(DataOutputStream out, ListeningSocket s) throws IOException {
+        int mask = (s.LocalAddress != null ? 1 : 0)
+                | (s.LocalPort != null ? 2 : 0)
+                | (s.ProcessId != null ? 4 : 0)
+                | (s.ProcessName != null ? 8 : 0)
+                | (s.Path != null ? 16 : 0);
+        out.writeByte(mask);
+        if (s.LocalAddress != null) out.writeUTF(s.LocalAddress);
+        if (s.LocalPort != null) out.writeInt(s.LocalPort);
+        if (s.ProcessId != null) out.writeInt(s.ProcessId);
+        if (s.ProcessName != null) out.writeUTF(s.ProcessName);
+        if (s.Path != null) out.writeUTF(s.Path);
+    }
+
+    private static ListeningSocket readSocket(DataInputStream in) throws IOException {
+        int mask = in.readUnsignedByte();
+        ListeningSocket s = new ListeningSocket();
+        if ((mask & 1) != 0) s.LocalAddress = in.readUTF();
+        if ((mask & 2) != 0) s.LocalPort = in.readInt();
+        if ((mask & 4) != 0) s.ProcessId = in.readInt();
+        if ((mask & 8) != 0) s.ProcessName = in.readUTF();
+        if ((mask & 16) != 0) s.Path = in.readUTF();
+        return s;
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Channel helpers
+    // -------------------------------------------------------------------------
+
+    private static int readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        long p = pos;
+        while (buf.hasRemaining()) p += ch.write(buf, p);
+    }
+
+    /**
+     * One segment file of the journal.
+     */
+    private record Segment(long seq, Path file) {
+    }
+
+    /**
+     * Location of one valid record.
+     */
+    private static final class RecordRef {
+        final long offset;
+        final byte type;
+        final int payloadLength;
+        String timestamp;
+
+        RecordRef(long offset, byte type, int payloadLength) {
+            this.offset = offset;
+            this.type = type;
+            this.payloadLength = payloadLength;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.tss.portwatch.core.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content-addressed snapshot storage of one machine directory.
+ * <p>
+ * Each distinct socket list is stored once, as a blob named after the SHA-256 of its canonical
+ * serialization ({@code <machine>/blobs/<hash>.json} or {@code .smile}, optionally
+ * gzip-compressed). Each snapshot taken only appends one line to the timeline
+ * ({@code <machine>/timeline.tsv}):
+ * <pre>
+ *   yyyyMMdd-HHmmss &lt;TAB&gt; sha256-hex
+ * </pre>
+ * Polls that find the same state as before therefore cost one timeline line instead of one file.
+ * <p>
+ * The latest entry is read from the end of the timeline, so lookups do not depend on its length.
+ * A line torn by a crash (no trailing newline) is ignored by readers and terminated by the next
+ * append.
+ */
+final class SnapshotTimeline {
+
+    static final String FILE_NAME = "timeline.tsv";
+    static final String BLOB_DIR = "blobs";
+
+    /**
+     * Bytes read from the end of the timeline to find the last entry (one line is ~81 bytes).
+     */
+    private static final int TAIL_BYTES = 512;
+
+    /**
+     * One timeline line.
+     *
+     * @param timestamp snapshot time in yyyyMMdd-HHmmss format
+     * @param hash      SHA-256 of the socket list, in hex
+     */
+    record Entry(String timestamp, String hash) {
+    }
+
+    /**
+     * @return true if the machine directory has a timeline
+     */
+    static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(FILE_NAME));
+    }
+
+    /**
+     * Blob file holding the socket list with the given hash: the existing one in whatever format
+     * and compression it was written, else the path a new blob gets with the current settings.
+     */
+    static Path blob(Path dir, String hash) {
+        Path blobs = dir.resolve(BLOB_DIR);
+        Path existing = SnapshotIO.existing(blobs, hash);
+        return (existing != null) ? existing : blobs.resolve(SnapshotIO.fileName(hash + ".json"));
+    }
+
+    /**
+     * Returns the last complete entry of the timeline, or null if there is none.
+     */
+    static Entry last(Path dir) throws IOException {
+        Path file = dir.resolve(FILE_NAME);
+        if (!Files.exists(file)) return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long size = raf.length();
+            int n = (int) Math.min(size, TAIL_BYTES);
+            byte[] tail = new byte[n];
+            raf.seek(size - n);
+            raf.readFully(tail);
+
+            String text = new String(tail, StandardCharsets.UTF_8);
+            int end = text.lastIndexOf('\n');
+            if (end < 0) return null;
+
+            int start = text.lastIndexOf('\n', end - 1) + 1;
+            if (start == 0 && n < size) {
+                // Last line longer than the tail window: not written by this class.
+                return entries(dir).stream().reduce((a, b) -> b).orElse(null);
+            }
+            return parse(text.substring(start, end));
+        }
+    }
+
+    /**
+     * Returns every complete entry of the timeline, oldest first.
+     */
+    static List<Entry> entries(Path dir) throws IOException {
+        List<Entry> out = new ArrayList<>();
+        Path file = dir.resolve(FILE_NAME);
+        if (!Files.exists(file)) return out;
+
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            Entry e = parse(text.substring(start, end));
+            if (e != null) out.add(e);
+            start = end + 1;
+        }
+        return out;
+    }
+
+    /**
+     * Appends an entry. If the previous write was torn, the partial line is terminated first
+     * so that it stays a single (ignored) malformed line.
+     */
+    static void append(Path dir, Entry entry) throws IOException {
+        Path file = dir.resolve(FILE_NAME);
+        Files.createDirectories(dir);
+
+        String line = entry.timestamp() + "\t" + entry.hash() + "\n";
+        if (Files.exists(file) && !endsWithNewline(file)) line = "\n" + line;
+
+        Files.writeString(file, line, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Replaces the whole timeline with the given entries (used by {@link Compactor}). The new
+     * timeline is written to a temporary file and renamed, so readers see either version.
+     */
+    static void rewrite(Path dir, List<Entry> entries) throws IOException {
+        Path file = dir.resolve(FILE_NAME);
+        Path tmp = dir.resolve(FILE_NAME + ".tmp");
+
+        StringBuilder sb = new StringBuilder(entries.size() * 82);
+        for (Entry e : entries) sb.append(e.timestamp()).append('\t').append(e.hash()).append('\n');
+
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long size = raf.length();
+            if (size == 0) return true;
+            raf.seek(size - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    private static Entry parse(String line) {
+        int tab = line.indexOf('\t');
+        if (tab <= 0 || tab == line.length() - 1) return null;
+        return new Entry(line.substring(0, tab), line.substring(tab + 1).trim());
+    }
+
+    private SnapshotTimeline() {
+    }
+}
@@ -0,0 +1,47 @@
+package com.tss.portwatch.core.io;
+
+/**
+ * Encoding of snapshot and diff documents on disk.
+ * <p>
+ * Both formats carry the same document model ({@code SnapshotFile}, {@code DiffFile}); they only
+ * differ in how Jackson encodes it:
+ * <ul>
+ *   <li>{@link #JSON}: pretty-printed text JSON ({@code *.json}), the default</li>
+ *   <li>{@link #SMILE}: binary Smile ({@code *.smile}), much cheaper to parse when reprocessing
+ *       history</li>
+ * </ul>
+ * Readers detect the format from the file content (Smile files start with {@code ":)\n"}),
+ * so both can coexist in the same directory.
+ */
+public enum StorageFormat {
+
+    JSON(".json"),
+    SMILE(".smile");
+
+    private final String extension;
+
+    StorageFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return file extension, including the dot
+     */
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * Parses a format name as used on the command line or in PORTWATCH_FORMAT.
+     *
+     * @return the format, or null if the name is unknown
+     */
+    public static StorageFormat parse(String name) {
+        if (name == null) return null;
+        return switch (name.trim().toLowerCase()) {
+            case "json" -> JSON;
+            case "smile" -> SMILE;
+            default -> null;
+        };
+    }
+}
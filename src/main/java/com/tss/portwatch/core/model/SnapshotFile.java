@@ -1,5 +1,8 @@
 package com.tss.portwatch.core.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.tss.portwatch.core.diff.SnapshotDiff;
+
 import java.util.List;
 
 /**
@@ -20,6 +23,15 @@ import java.util.List;
  *   <li>loading previous snapshots to compute diffs</li>
  * </ul>
  * <p>
+ * Snapshots written by current versions list their sockets in canonical key order and set
+ * {@code sorted}; older files lack the field, which then reads as false.
+ * <p>
+ * A snapshot is stored either as a <b>keyframe</b> ({@code sockets} holds the full list) or as a
+ * <b>delta</b>: {@code base} names the previous snapshot file in the same directory and
+ * {@code delta} holds the changes since that snapshot, while {@code sockets} is absent.
+ * {@code depth} counts the deltas since the last keyframe. Delta documents are resolved
+ * transparently by {@code SnapshotIO.read}.
+ * <p>
  * The class is intentionally immutable to ensure snapshot integrity.
  */
 public record SnapshotFile(
@@ -27,8 +39,42 @@ public record SnapshotFile(
         // Metadata associated with this snapshot (machine, OS, timestamp).
         PortWatchMetadata metadata,
 
-        // List of listening sockets captured during the snapshot.
-        List<ListeningSocket> sockets
+        // True if sockets are in canonical key order (see SortedSockets).
+        boolean sorted,
+
+        // List of listening sockets captured during the snapshot (null in delta documents).
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        List<ListeningSocket> sockets,
+
+        // File name of the snapshot this delta applies to (null for keyframes).
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String base,
+
+        // Number of deltas since the last keyframe, this one included (0 for keyframes).
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+        int depth,
+
+        // Changes since the base snapshot (null for keyframes).
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        SnapshotDiff delta
 
 ) {
+
+    /**
+     * Creates a keyframe holding the full socket list.
+     */
+    public SnapshotFile(PortWatchMetadata metadata, boolean sorted, List<ListeningSocket> sockets) {
+        this(metadata, sorted, sockets, null, 0, null);
+    }
+
+    /**
+     * Creates a delta document against a base snapshot file.
+     *
+     * @param base  file name of the base snapshot, in the same directory
+     * @param depth number of deltas since the last keyframe, this one included
+     * @param delta changes since the base snapshot
+     */
+    public static SnapshotFile delta(PortWatchMetadata metadata, String base, int depth, SnapshotDiff delta) {
+        return new SnapshotFile(metadata, true, null, base, depth, delta);
+    }
 }
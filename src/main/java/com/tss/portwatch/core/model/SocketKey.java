@@ -89,7 +89,10 @@ public final class SocketKey {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(localAddress, localPort, protocol);
+        // Same value as Objects.hash(localAddress, localPort, protocol), without the varargs array and boxing.
+        int h = 31 + Objects.hashCode(localAddress);
+        h = 31 * h + localPort;
+        return 31 * h + Objects.hashCode(protocol);
     }
 
     /**
@@ -101,4 +104,96 @@ public final class SocketKey {
     public String toString() {
         return protocol + " " + localAddress + ":" + localPort;
     }
+
+    // -------------------------------------------------------------------------
+    // Canonical ordering
+    // -------------------------------------------------------------------------
+
+    /**
+     * Compares two TCP endpoints in canonical order.
+     *
+     * @see #compare(String, String, int, String, String, int)
+     */
+    public static int compareTcp(String addressA, int portA, String addressB, int portB) {
+        return compare("TCP", addressA, portA, "TCP", addressB, portB);
+    }
+
+    /**
+     * Compares two endpoints in canonical order: the lexicographic order of their
+     * {@link #toString()} representation ({@code "TCP 127.0.0.1:8080"}).
+     * <p>
+     * Diff output and reports have always been sorted by that text. This method gives the same
+     * order without building the strings: the text is compared character by character,
+     * with the port digits derived on the fly. Null values compare as {@code "null"},
+     * as they do in {@link #toString()}.
+     *
+     * @return negative, zero or positive, with the same sign as comparing the two {@code toString()} values
+     */
+    public static int compare(String protocolA, String addressA, int portA,
+                              String protocolB, String addressB, int portB) {
+        if (portA < 0 || portB < 0) {
+            // Not a real port: compare the actual text (sign and digits)
+            return (protocolA + " " + addressA + ":" + portA).compareTo(protocolB + " " + addressB + ":" + portB);
+        }
+
+        String pa = String.valueOf(protocolA);
+        String pb = String.valueOf(protocolB);
+        String aa = String.valueOf(addressA);
+        String ab = String.valueOf(addressB);
+
+        int digitsA = digits(portA);
+        int digitsB = digits(portB);
+        int lenA = pa.length() + aa.length() + 2 + digitsA;
+        int lenB = pb.length() + ab.length() + 2 + digitsB;
+
+        // Common cases: same protocol, so the comparison starts at the address;
+        // same address too, so only the port text differs.
+        int i = 0;
+        if (pa.equals(pb)) {
+            i = pa.length() + 1;
+            if (aa.equals(ab)) {
+                // Same number of digits: text order is numeric order.
+                if (digitsA == digitsB) return Integer.compare(portA, portB);
+                i += aa.length() + 1;
+            }
+        }
+        int n = Math.min(lenA, lenB);
+        for (; i < n; i++) {
+            char ca = charAt(pa, aa, portA, digitsA, i);
+            char cb = charAt(pb, ab, portB, digitsB, i);
+            if (ca != cb) return ca - cb;
+        }
+        return lenA - lenB;
+    }
+
+    /**
+     * Character {@code i} of {@code protocol + " " + address + ":" + port}.
+     */
+    private static char charAt(String protocol, String address, int port, int digits, int i) {
+        if (i < protocol.length()) return protocol.charAt(i);
+        i -= protocol.length();
+        if (i == 0) return ' ';
+        i--;
+
+        if (i < address.length()) return address.charAt(i);
+        i -= address.length();
+        if (i == 0) return ':';
+        i--;
+
+        // Digit i of the port, counted from the most significant one.
+        for (int k = digits - 1 - i; k > 0; k--) port /= 10;
+        return (char) ('0' + port % 10);
+    }
+
+    /**
+     * Number of decimal digits of a non-negative int.
+     */
+    private static int digits(int v) {
+        int d = 1;
+        while (v >= 10) {
+            v /= 10;
+            d++;
+        }
+        return d;
+    }
 }
@@ -0,0 +1,65 @@
+package com.tss.portwatch.core.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of sockets known to be in canonical key order.
+ * <p>
+ * Canonical order is the order of the {@link SocketKey} text ({@code "TCP addr:port"}), which is
+ * also the order of every list in a diff. Snapshots are persisted in that order with a
+ * {@code sorted} flag, and this type carries the flag in memory: when both inputs of a diff
+ * are {@code SortedSockets}, the comparator can walk them with a single merge pass instead of
+ * hashing both sides.
+ * <p>
+ * Sockets sharing a key keep their original relative order (the sort is stable), so
+ * "last entry wins" still holds for duplicates.
+ */
+public final class SortedSockets extends AbstractList<ListeningSocket> implements RandomAccess {
+
+    /**
+     * Canonical socket order (see {@link SocketKey#compare}).
+     */
+    public static final Comparator<ListeningSocket> CANONICAL_ORDER =
+            (x, y) -> SocketKey.compareTcp(x.LocalAddress, x.LocalPort, y.LocalAddress, y.LocalPort);
+
+    private final List<ListeningSocket> sockets;
+
+    private SortedSockets(List<ListeningSocket> sockets) {
+        this.sockets = sockets;
+    }
+
+    /**
+     * Returns the sockets in canonical order. A list that is already a {@code SortedSockets}
+     * is returned as is; any other list is copied and sorted.
+     */
+    public static SortedSockets sort(List<ListeningSocket> sockets) {
+        if (sockets instanceof SortedSockets sorted) return sorted;
+
+        List<ListeningSocket> copy = new ArrayList<>(sockets);
+        copy.sort(CANONICAL_ORDER);
+        return new SortedSockets(copy);
+    }
+
+    /**
+     * Wraps a list that claims to be in canonical order (e.g. a snapshot file with the sorted flag)
+     * without checking it. Consumers that rely on the order must detect violations themselves,
+     * since files can be edited by hand.
+     */
+    public static SortedSockets assumeSorted(List<ListeningSocket> sockets) {
+        return new SortedSockets(sockets);
+    }
+
+    @Override
+    public ListeningSocket get(int index) {
+        return sockets.get(index);
+    }
+
+    @Override
+    public int size() {
+        return sockets.size();
+    }
+}
@@ -0,0 +1,124 @@
+package com.tss.portwatch.core.watch;
+
+import java.time.Duration;
+
+/**
+ * Decides how long watch mode waits between two polls.
+ * <p>
+ * Policy:
+ * <ul>
+ *   <li>after a poll that detected changes, the interval drops to the minimum
+ *       (changes tend to come in bursts: service restarts, deployments)</li>
+ *   <li>while polls detect nothing, the interval doubles up to the maximum</li>
+ *   <li>if a CPU budget is set, the wait is stretched so that collection time stays
+ *       below that percentage of wall time; the budget takes precedence over the maximum</li>
+ * </ul>
+ * <p>
+ * The scheduler also keeps simple metrics: effective interval, polls performed, polls that
+ * detected changes, and skipped polls (polls the minimum cadence would have performed
+ * while the scheduler was backing off).
+ * <p>
+ * Instances are not thread-safe; metrics getters may be read from other threads
+ * (e.g. a shutdown hook) and only need to be approximately current.
+ */
+public final class AdaptivePollScheduler {
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final double cpuBudgetPercent;
+
+    private long plannedMillis;
+    private volatile long effectiveMillis;
+    private volatile long polls;
+    private volatile long changedPolls;
+    private volatile long skippedPolls;
+
+    /**
+     * Creates a scheduler from watch options.
+     *
+     * @param options interval bounds and CPU budget
+     */
+    public AdaptivePollScheduler(WatchOptions options) {
+        this.minMillis = Math.max(1, options.minInterval().toMillis());
+        this.maxMillis = Math.max(minMillis, options.maxInterval().toMillis());
+        this.cpuBudgetPercent = options.cpuBudgetPercent();
+        this.plannedMillis = minMillis;
+        this.effectiveMillis = minMillis;
+    }
+
+    /**
+     * Interval to wait before the very first poll.
+     */
+    public Duration initialDelay() {
+        return Duration.ofMillis(minMillis);
+    }
+
+    /**
+     * Records the outcome of a poll and returns how long to wait before the next one.
+     *
+     * @param changed        whether the poll detected changes (non-empty diff)
+     * @param collectionTime time spent collecting and diffing in that poll
+     * @return wait before the next poll
+     */
+    public Duration next(boolean changed, Duration collectionTime) {
+        polls++;
+
+        if (changed) {
+            changedPolls++;
+            plannedMillis = minMillis;
+        } else {
+            plannedMillis = Math.min(maxMillis, plannedMillis * 2);
+        }
+
+        long effective = plannedMillis;
+
+        // collection / (collection + wait) <= budget  =>  wait >= collection * (100 / budget - 1)
+        if (cpuBudgetPercent > 0 && cpuBudgetPercent < 100) {
+            long collectionMillis = collectionTime.toMillis();
+            long budgetFloor = (long) Math.ceil(collectionMillis * (100.0 / cpuBudgetPercent - 1));
+            effective = Math.max(effective, budgetFloor);
+        }
+
+        skippedPolls += effective / minMillis - 1;
+        effectiveMillis = effective;
+        return Duration.ofMillis(effective);
+    }
+
+    /**
+     * @return wait chosen after the last poll
+     */
+    public Duration effectiveInterval() {
+        return Duration.ofMillis(effectiveMillis);
+    }
+
+    /**
+     * @return number of polls performed
+     */
+    public long polls() {
+        return polls;
+    }
+
+    /**
+     * @return number of polls that detected changes
+     */
+    public long changedPolls() {
+        return changedPolls;
+    }
+
+    /**
+     * @return polls the minimum cadence would have performed but were skipped by backoff or budget
+     */
+    public long skippedPolls() {
+        return skippedPolls;
+    }
+
+    /**
+     * One-line metrics summary for console output.
+     */
+    public String summary() {
+        return "interval=" + effectiveMillis + "ms"
+                + " polls=" + polls
+                + " changed=" + changedPolls
+                + " skipped=" + skippedPolls;
+    }
+}
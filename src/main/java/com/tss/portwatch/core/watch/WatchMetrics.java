@@ -0,0 +1,43 @@
+package com.tss.portwatch.core.watch;
+
+/**
+ * Counters of work avoided by watch mode, reported next to the scheduler metrics.
+ * <p>
+ * Fingerprint hits are polls where the collector found the raw listener table unchanged
+ * and the pipeline stopped before parsing and diffing. Misses are polls that went through
+ * the full pipeline, including those where the collector has no fingerprint support.
+ * <p>
+ * Updated by the watch loop only; getters may be read from other threads
+ * (e.g. a shutdown hook) and only need to be approximately current.
+ */
+public final class WatchMetrics {
+
+    private volatile long fingerprintHits;
+    private volatile long fingerprintMisses;
+
+    /**
+     * Records whether a poll was short-circuited by the table fingerprint.
+     */
+    public void recordFingerprint(boolean hit) {
+        if (hit) {
+            fingerprintHits++;
+        } else {
+            fingerprintMisses++;
+        }
+    }
+
+    public long fingerprintHits() {
+        return fingerprintHits;
+    }
+
+    public long fingerprintMisses() {
+        return fingerprintMisses;
+    }
+
+    /**
+     * One-line metrics summary for console output.
+     */
+    public String summary() {
+        return "fingerprintHits=" + fingerprintHits + " fingerprintMisses=" + fingerprintMisses;
+    }
+}
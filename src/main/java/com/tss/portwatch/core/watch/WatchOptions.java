@@ -0,0 +1,44 @@
+package com.tss.portwatch.core.watch;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the continuous watch mode.
+ * <p>
+ * The poll interval adapts between {@code minInterval} and {@code maxInterval}
+ * (see {@link AdaptivePollScheduler}). When both are equal, polling is fixed-rate.
+ * <p>
+ * Changes can be debounced (see {@link com.tss.portwatch.core.diff.FlapDebouncer}): they are only
+ * reported and persisted after surviving {@code debouncePolls} polls or {@code debounceWindow}.
+ *
+ * @param minInterval      shortest interval between polls, used right after a change
+ * @param maxInterval      longest interval reached while nothing changes
+ * @param cpuBudgetPercent maximum share of wall time spent collecting (0 disables the budget)
+ * @param debouncePolls    polls a change must survive before it is reported (0 if not used)
+ * @param debounceWindow   time a change must survive before it is reported (zero if not used)
+ */
+public record WatchOptions(
+        Duration minInterval,
+        Duration maxInterval,
+        double cpuBudgetPercent,
+        int debouncePolls,
+        Duration debounceWindow
+) {
+
+    /**
+     * Fixed-rate polling without CPU budget.
+     *
+     * @param interval interval between polls
+     * @return watch options with equal min and max intervals
+     */
+    public static WatchOptions fixed(Duration interval) {
+        return new WatchOptions(interval, interval, 0, 0, Duration.ZERO);
+    }
+
+    /**
+     * @return true if changes are debounced
+     */
+    public boolean debounced() {
+        return debouncePolls > 0 || !debounceWindow.isZero();
+    }
+}
@@ -32,6 +32,18 @@ public final class DiffHtmlReportGenerator {
      * @return A full HTML document as a String.
      */
     public static String generateHtml(DiffFile diffFile) {
+        return generateHtml(diffFile, null);
+    }
+
+    /**
+     * Builds a complete HTML document for a given diff payload.
+     *
+     * @param diffFile Diff payload containing metadata and the computed diff.
+     * @param metadata Optional extra metadata. When it carries a previous analysis (range reports),
+     *                 the report shows the analyzed period instead of a single date.
+     * @return A full HTML document as a String.
+     */
+    public static String generateHtml(DiffFile diffFile, ReportMetadata metadata) {
         SnapshotDiff diff = diffFile.diff();
 
         String machineId = safe(diffFile.metadata().machineId());
@@ -95,7 +107,14 @@ public final class DiffHtmlReportGenerator {
         html.append("<ul class=\"meta\">");
         html.append("<li><b>Equipo:</b> ").append(escapeHtml(machineId)).append("</li>");
         html.append("<li><b>Sistema operativo:</b> ").append(escapeHtml(os)).append("</li>");
-        html.append("<li><b>Fecha del análisis:</b> ").append(escapeHtml(humanDate)).append("</li>");
+        if (metadata != null && metadata.previousAnalysis() != null && metadata.currentAnalysis() != null) {
+            DateTimeFormatter human = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+            html.append("<li><b>Periodo analizado:</b> ")
+                    .append(escapeHtml(metadata.previousAnalysis().format(human) + " – " + metadata.currentAnalysis().format(human)))
+                    .append("</li>");
+        } else {
+            html.append("<li><b>Fecha del análisis:</b> ").append(escapeHtml(humanDate)).append("</li>");
+        }
         html.append("</ul>\n");
 
         // Narrative section
@@ -25,11 +25,14 @@ import java.util.List;
  */
 public final class DiffReportGenerator {
 
+    private static final DateTimeFormatter HUMAN = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
     /**
      * Builds a Markdown report for a given diff payload.
      *
      * @param diffFile Diff payload containing metadata and the computed diff.
-     * @param metadata Optional extra metadata. Currently unused by design.
+     * @param metadata Optional extra metadata. When it carries a previous analysis (range reports),
+     *                 the report shows the analyzed period instead of a single date.
      * @return Markdown report as a String.
      */
     public static String generateMarkdown(DiffFile diffFile, ReportMetadata metadata) {
@@ -43,9 +46,17 @@ public final class DiffReportGenerator {
         md.append("# PortWatch — Informe de cambios\n\n");
         md.append("- **Equipo:** ").append(meta.machineId()).append("\n");
         md.append("- **Sistema operativo:** ").append(meta.os()).append("\n");
-        md.append("- **Fecha del análisis:** ")
-                .append(humanTimestamp(meta.timestamp()))
-                .append("\n\n");
+        if (metadata != null && metadata.previousAnalysis() != null && metadata.currentAnalysis() != null) {
+            md.append("- **Periodo analizado:** ")
+                    .append(metadata.previousAnalysis().format(HUMAN))
+                    .append(" – ")
+                    .append(metadata.currentAnalysis().format(HUMAN))
+                    .append("\n\n");
+        } else {
+            md.append("- **Fecha del análisis:** ")
+                    .append(humanTimestamp(meta.timestamp()))
+                    .append("\n\n");
+        }
 
         // Narrative events grouped by type
         md.append("## Eventos detectados\n\n");
@@ -309,7 +320,7 @@ public final class DiffReportGenerator {
     private static String humanTimestamp(String ts) {
         try {
             var dt = LocalDateTime.parse(ts, DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
-            return dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
+            return dt.format(HUMAN);
         } catch (Exception e) {
             return ts;
         }
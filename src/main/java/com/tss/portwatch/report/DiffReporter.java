@@ -120,8 +120,10 @@ public final class DiffReporter {
     /**
      * Formats a {@link ListeningSocket} into a compact single-line string
      * suitable for console output.
+     * <p>
+     * Also used to print the matches of a columnar lookup.
      */
-    private static String formatSocket(ListeningSocket s) {
+    public static String formatSocket(ListeningSocket s) {
         String addrPort = safe(s.LocalAddress) + ":" + s.LocalPort;
         String proc = safe(s.ProcessName) + " (PID " + s.ProcessId + ")";
         String path = (s.Path == null || s.Path.isBlank()) ? "" : " (" + s.Path + ")";